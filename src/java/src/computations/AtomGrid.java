@@ -0,0 +1,155 @@
+package computations;
+
+/**
+ * Uniform grid over circular atoms, so a ray only tests the atoms in the grid cells it actually crosses
+ * instead of every atom on the board. Cells are one circle across, so each atom sits in at most 4 of them,
+ * and the atoms of each cell are kept together in one array (cellStart gives where each cell's run begins).
+ */
+public class AtomGrid {
+    private static final double EPSILON = 1e-9; // a ray starting on a circle (just bounced off it) doesn't hit it again
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double radius;
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellAtoms;
+
+    /**
+     * @param xs Atom centres
+     * @param ys Atom centres
+     * @param radius Radius of every atom's circle
+     */
+    public AtomGrid(double[] xs, double[] ys, double radius) {
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        this.radius = radius;
+        this.cellSize = 2 * radius;
+        double lowX = Double.MAX_VALUE, lowY = Double.MAX_VALUE, highX = -Double.MAX_VALUE, highY = -Double.MAX_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            lowX = Math.min(lowX, xs[i] - radius);
+            lowY = Math.min(lowY, ys[i] - radius);
+            highX = Math.max(highX, xs[i] + radius);
+            highY = Math.max(highY, ys[i] + radius);
+        }
+        if (xs.length == 0) lowX = lowY = highX = highY = 0;
+        minX = lowX;
+        minY = lowY;
+        columns = Math.max(1, (int) Math.ceil((highX - lowX) / cellSize));
+        rows = Math.max(1, (int) Math.ceil((highY - lowY) / cellSize));
+
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < xs.length; i++) { // count each cell's atoms first, then fill them in
+            for (int r = row(ys[i] - radius); r <= row(ys[i] + radius); r++) {
+                for (int c = column(xs[i] - radius); c <= column(xs[i] + radius); c++) cellStart[r * columns + c + 1]++;
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) cellStart[cell + 1] += cellStart[cell];
+        cellAtoms = new int[cellStart[columns * rows]];
+        int[] filled = cellStart.clone();
+        for (int i = 0; i < xs.length; i++) {
+            for (int r = row(ys[i] - radius); r <= row(ys[i] + radius); r++) {
+                for (int c = column(xs[i] - radius); c <= column(xs[i] + radius); c++) cellAtoms[filled[r * columns + c]++] = i;
+            }
+        }
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public double getX(int atom) {
+        return xs[atom];
+    }
+
+    public double getY(int atom) {
+        return ys[atom];
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Finds the first circle a ray runs into from outside (a ray starting inside a circle passes out of it freely)
+     * @param dx Unit direction
+     * @param dy Unit direction
+     * @param hit Set to the distance along the ray of the hit, hit[0]
+     * @return The atom hit, or -1 if the ray hits nothing within maxDistance
+     */
+    public int firstHit(double x, double y, double dx, double dy, double maxDistance, double[] hit) {
+        // clip the ray to the grid's bounds (slab test)
+        double maxX = minX + columns * cellSize, maxY = minY + rows * cellSize;
+        double enter = 0, leave = maxDistance;
+        if (dx != 0) {
+            double t1 = (minX - x) / dx, t2 = (maxX - x) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            leave = Math.min(leave, Math.max(t1, t2));
+        } else if (x < minX || x > maxX) {
+            return -1;
+        }
+        if (dy != 0) {
+            double t1 = (minY - y) / dy, t2 = (maxY - y) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            leave = Math.min(leave, Math.max(t1, t2));
+        } else if (y < minY || y > maxY) {
+            return -1;
+        }
+        if (enter > leave) return -1;
+
+        // step from cell to cell along the ray (Amanatides & Woo)
+        int c = column(x + dx * enter), r = row(y + dy * enter);
+        int stepC = dx > 0 ? 1 : -1, stepR = dy > 0 ? 1 : -1;
+        double nextX = dx == 0 ? Double.MAX_VALUE : ((c + (dx > 0 ? 1 : 0)) * cellSize + minX - x) / dx;
+        double nextY = dy == 0 ? Double.MAX_VALUE : ((r + (dy > 0 ? 1 : 0)) * cellSize + minY - y) / dy;
+        double deltaX = dx == 0 ? Double.MAX_VALUE : cellSize / Math.abs(dx);
+        double deltaY = dy == 0 ? Double.MAX_VALUE : cellSize / Math.abs(dy);
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        while (true) {
+            for (int i = cellStart[r * columns + c]; i < cellStart[r * columns + c + 1]; i++) {
+                double distance = entryDistance(cellAtoms[i], x, y, dx, dy);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = cellAtoms[i];
+                }
+            }
+            double cellLeave = Math.min(nextX, nextY);
+            if (bestDistance <= cellLeave || cellLeave > leave) break; // nothing in a later cell can be closer
+            if (nextX < nextY) {
+                c += stepC;
+                nextX += deltaX;
+            } else {
+                r += stepR;
+                nextY += deltaY;
+            }
+            if (c < 0 || c >= columns || r < 0 || r >= rows) break;
+        }
+        if (best < 0 || bestDistance > maxDistance) return -1;
+        hit[0] = bestDistance;
+        return best;
+    }
+
+    // distance along the ray to where it enters the atom's circle, or MAX_VALUE if it doesn't
+    private double entryDistance(int atom, double x, double y, double dx, double dy) {
+        double ox = x - xs[atom], oy = y - ys[atom];
+        double b = ox * dx + oy * dy;
+        double c = ox * ox + oy * oy - radius * radius;
+        if (c <= EPSILON * radius * radius || b >= 0) return Double.MAX_VALUE; // starting inside (or on) the circle, or heading away from it
+        double discriminant = b * b - c;
+        if (discriminant < 0) return Double.MAX_VALUE;
+        return -b - Math.sqrt(discriminant);
+    }
+
+    private int column(double x) {
+        return Math.clamp((int) Math.floor((x - minX) / cellSize), 0, columns - 1);
+    }
+
+    private int row(double y) {
+        return Math.clamp((int) Math.floor((y - minY) / cellSize), 0, rows - 1);
+    }
+}
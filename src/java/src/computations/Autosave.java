@@ -0,0 +1,308 @@
+package computations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the game being played on disk as it goes, so it can be picked up again if the game is closed or crashes part way through.
+ * The game is kept in the replay encoding (ReplayWriter), split across two files in the autosave directory:
+ * <pre>
+ *   game.snapshot [i32 magic "BBAS"][u8 version][u8 flags][i32 length][replay bytes][i32 crc32 of the replay bytes]
+ *   game.wal      [i32 magic "BBWL"][i32 snapshot length][i32 snapshot crc32], then per action [u16 length][replay bytes][i32 crc32]
+ * </pre>
+ * Each action is appended to the write-ahead log, and every SNAPSHOT_EVERY actions (or after an undo, which can't be appended)
+ * the whole replay is written to a new snapshot, moved into place in one step, and the log is emptied.
+ * The log's header says which snapshot it follows, so a log left over from before a snapshot is never applied twice,
+ * and a record cut off by a crash fails its checksum and is left out along with anything after it.
+ * All the writing is done on one background thread, the game's thread only copies the few bytes of each action.
+ * While the player is being asked whether to resume a saved game, writes are held back (hold, release), so a game started meanwhile can't replace it.
+ * The directory is -Dblackbox.autosave, or "autosave".
+ */
+public class Autosave {
+    public static final int SNAPSHOT_MAGIC = 0x42424153; // "BBAS"
+    public static final int LOG_MAGIC = 0x4242574C; // "BBWL"
+    public static final byte VERSION = 1;
+    public static final int PRACTICE = 1; // flag: the game was a practice game
+    public static final int SNAPSHOT_EVERY = 16;
+    public static final String SNAPSHOT_FILE = "game.snapshot";
+    public static final String LOG_FILE = "game.wal";
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // only used on the writer thread
+    private static FileChannel log;
+    private static Autosave writing; // the game the files belong to, writes for any earlier game are dropped
+    private static boolean held = false;
+    private static final List<Runnable> heldWrites = new ArrayList<>();
+
+    private final Path directory;
+    private final int flags;
+    private int saved = 0; // replay bytes handed to the writer so far, only used on the game's thread
+    private int actionsSinceSnapshot = 0;
+
+    /**
+     * Starts saving a game, replacing whatever was saved before
+     * @param practice Whether the game allows undo, so it can be resumed as a practice game
+     */
+    public Autosave(Path directory, ReplayWriter replay, boolean practice) {
+        this.directory = directory;
+        this.flags = practice ? PRACTICE : 0;
+        snapshot(replay);
+    }
+
+    /**
+     * @return Directory games are autosaved to, -Dblackbox.autosave or "autosave"
+     */
+    public static Path directory() {
+        String property = System.getProperty("blackbox.autosave");
+        return Path.of(property == null || property.isBlank() ? "autosave" : property.trim());
+    }
+
+    /**
+     * Saves the actions written to the replay since the last call, on the game's thread after each action.
+     * Takes a copy of the new bytes and hands them to the writer, nothing else.
+     */
+    public void actionRecorded(ReplayWriter replay) {
+        if (replay.size() <= saved) return;
+        if (++actionsSinceSnapshot >= SNAPSHOT_EVERY) {
+            snapshot(replay); // the log would otherwise grow for the whole game
+            return;
+        }
+        byte[] action = replay.bytesFrom(saved);
+        saved = replay.size();
+        write(() -> append(action));
+    }
+
+    /**
+     * Saves the replay as it now is after it was taken back to an earlier size (undo, redo), which the log can't express
+     */
+    public void rewound(ReplayWriter replay) {
+        snapshot(replay);
+    }
+
+    /**
+     * The game is over, nothing is left to resume
+     */
+    public void finished() {
+        write(() -> {
+            if (writing != this) return;
+            writing = null;
+            deleteFiles(directory);
+        });
+    }
+
+    /**
+     * Waits for everything handed to the writer so far to reach the disk
+     */
+    public static void awaitWrites() throws InterruptedException, ExecutionException, TimeoutException {
+        writer.submit(() -> {}).get(10, TimeUnit.SECONDS); // queued behind every earlier write
+    }
+
+    private void snapshot(ReplayWriter replay) {
+        byte[] bytes = replay.toByteArray();
+        saved = bytes.length;
+        actionsSinceSnapshot = 0;
+        write(() -> writeSnapshot(bytes));
+    }
+
+    // runs on the writer thread in the order asked for, later if writes are being held
+    private static void write(Runnable task) {
+        writer.execute(() -> {
+            if (held) heldWrites.add(task);
+            else task.run();
+        });
+    }
+
+    /**
+     * Holds back every write asked for from now on, until release. Call before offering to resume the saved game.
+     */
+    public static void hold() {
+        writer.execute(() -> held = true);
+    }
+
+    /**
+     * Writes whatever was held back, once the player has resumed the saved game or turned it down (after discard)
+     */
+    public static void release() {
+        writer.execute(() -> {
+            held = false;
+            for (Runnable task : heldWrites) task.run();
+            heldWrites.clear();
+        });
+    }
+
+    private void writeSnapshot(byte[] replay) {
+        try {
+            if (writing != this) closeLog();
+            writing = this;
+            Files.createDirectories(directory);
+            int crc = crc(replay, 0, replay.length);
+            ByteBuffer snapshot = ByteBuffer.allocate(14 + replay.length).order(ByteOrder.BIG_ENDIAN);
+            snapshot.putInt(SNAPSHOT_MAGIC).put(VERSION).put((byte) flags).putInt(replay.length).put(replay).putInt(crc).flip();
+            Path temp = Files.createTempFile(directory, "game", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (snapshot.hasRemaining()) channel.write(snapshot);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (log == null) log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            log.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.BIG_ENDIAN).putInt(LOG_MAGIC).putInt(replay.length).putInt(crc).flip();
+            log.write(header, 0);
+            log.position(12);
+            log.force(false);
+        } catch (IOException e) { // losing the autosave shouldn't interrupt the game
+            System.err.println("Could not autosave: " + e.getMessage());
+            closeLog();
+        }
+    }
+
+    private void append(byte[] action) {
+        if (writing != this || log == null) return;
+        try {
+            ByteBuffer record = ByteBuffer.allocate(6 + action.length).order(ByteOrder.BIG_ENDIAN);
+            record.putShort((short) action.length).put(action).putInt(crc(action, 0, action.length)).flip();
+            while (record.hasRemaining()) log.write(record);
+            log.force(false);
+        } catch (IOException e) {
+            System.err.println("Could not autosave: " + e.getMessage());
+            closeLog();
+        }
+    }
+
+    private static void closeLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException ignored) {
+            // nothing more to save through it
+        }
+        log = null;
+    }
+
+    /**
+     * A game found in the autosave directory that can be carried on with
+     */
+    public static class Saved {
+        private final byte[] replay;
+        private final boolean practice;
+        private final Replayer.Result result;
+
+        Saved(byte[] replay, boolean practice, Replayer.Result result) {
+            this.replay = replay;
+            this.practice = practice;
+            this.result = result;
+        }
+
+        /**
+         * @return The game in the replay encoding
+         */
+        public byte[] getReplay() {
+            return replay;
+        }
+
+        public boolean isPractice() {
+            return practice;
+        }
+
+        /**
+         * @return The layout, seed and every action so far
+         */
+        public Replayer.Result getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Reads the saved game back: the snapshot, then every log record after it up to the first damaged one
+     * @return The game, or null if there's no unfinished game saved
+     */
+    public static Saved load(Path directory) {
+        try {
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (!Files.exists(snapshotFile)) return null;
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile)).order(ByteOrder.BIG_ENDIAN);
+            if (snapshot.remaining() < 14 || snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.get() != VERSION) return null;
+            boolean practice = (snapshot.get() & PRACTICE) != 0;
+            int length = snapshot.getInt();
+            if (length < 0 || snapshot.remaining() != length + 4) return null;
+            byte[] replay = new byte[length];
+            snapshot.get(replay);
+            int crc = snapshot.getInt();
+            if (crc(replay, 0, length) != crc) return null;
+
+            Path logFile = directory.resolve(LOG_FILE);
+            if (Files.exists(logFile)) replay = applyLog(replay, crc, ByteBuffer.wrap(Files.readAllBytes(logFile)).order(ByteOrder.BIG_ENDIAN));
+
+            Replayer.Result result = new Replayer().replay(replay);
+            if (!result.isValid() || result.isFinished()) return null;
+            return new Saved(replay, practice, result);
+        } catch (IOException e) {
+            System.err.println("Could not read the autosave: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // the snapshot with the log's actions after it, if the log follows this snapshot
+    private static byte[] applyLog(byte[] replay, int crc, ByteBuffer log) {
+        if (log.remaining() < 12 || log.getInt() != LOG_MAGIC || log.getInt() != replay.length || log.getInt() != crc) return replay; // an older log
+        ByteBuffer combined = ByteBuffer.allocate(replay.length + log.remaining()).put(replay);
+        while (log.remaining() >= 2) {
+            int length = log.getShort() & 0xFFFF;
+            if (log.remaining() < length + 4) break; // cut off part way through
+            int start = log.position();
+            int expected = log.getInt(start + length);
+            if (crc(log.array(), start, length) != expected) break;
+            combined.put(log.array(), start, length);
+            log.position(start + length + 4);
+        }
+        byte[] result = new byte[combined.position()];
+        combined.flip().get(result);
+        return result;
+    }
+
+    /**
+     * Removes the saved game, once it's been resumed or turned down
+     */
+    public static void discard(Path directory) {
+        writer.execute(() -> {
+            writing = null;
+            closeLog();
+            deleteFiles(directory);
+        });
+    }
+
+    private static void deleteFiles(Path directory) {
+        closeLog();
+        try {
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+            Files.deleteIfExists(directory.resolve(LOG_FILE));
+        } catch (IOException e) {
+            System.err.println("Could not remove the autosave: " + e.getMessage());
+        }
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
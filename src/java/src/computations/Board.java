@@ -1,5 +1,7 @@
 package computations;
 
+import diagnostics.RayTraceEvent;
+
 import java.util.ArrayList;
 
 public class Board {
@@ -46,6 +48,10 @@ public class Board {
         return this.board[i][j];
     }
 
+    public Node getexit(int i) {
+        return this.exit[i];
+    }//returns the exit node with number i + 1
+
     //links each node with all its surrounding 6 nodes or exit nodes
     public void linkboard() {
         int a = 5;//this variable used as the end value of j increases in the 2d array as the value of i increases until middle and starts to decrease as soon as it reaches the mid
@@ -263,6 +269,21 @@ public class Board {
     }
 
     public ArrayList<Integer> iterate(int a) {
+        RayTraceEvent event = new RayTraceEvent();
+        event.begin();
+        ArrayList<Integer> ints = tracePath(a);
+        if (event.shouldCommit()) {//only filled in while a flight recording has the event switched on
+            int last = ints.getLast();
+            event.entry = a;
+            event.steps = ints.size() - 2;//every value except the entry and the final exit (or the -1 marking an absorption)
+            event.exit = last;
+            event.outcome = last == -1 ? "absorbed" : last == a ? "reflected" : "exited";
+            event.commit();
+        }
+        return ints;
+    }
+
+    private ArrayList<Integer> tracePath(int a) {
         ArrayList<Integer> ints = new ArrayList<>();
         Node head = exit[a - 1];//sets the head as the exit
         Node next = head.getSides(0);//gets the node pointed by the head
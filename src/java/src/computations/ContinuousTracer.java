@@ -0,0 +1,270 @@
+package computations;
+
+import entities.HexagonalBox;
+import entities.Ray;
+
+import java.util.List;
+
+/**
+ * Optional continuous version of the ray rules: atoms are circles of influence centred on their hexagonal boxes
+ * and rays are straight lines that bounce off them, rather than stepping from box to box like Board.iterate.
+ * What a ray does when it reaches a circle is up to a Rule, so variant rules can be tried without touching the tracing.
+ * Each bounce only looks up the atoms along the ray in an AtomGrid, so boards with hundreds of atoms stay cheap.
+ * Started with -Dblackbox.continuous=mirror (or turn), see {@link #requested(List)}.
+ */
+public class ContinuousTracer {
+    public static final int MAX_BOUNCES = 1000; // a ray still bouncing after this many is reported as RayTracer.LOOPED
+
+    /**
+     * Decides what a ray does when it reaches an atom's circle of influence
+     */
+    public interface Rule {
+        /**
+         * @param impact How far off centre the ray was aimed, 0 for head on up to 1 for just grazing the circle
+         * @param normalX Unit normal of the circle where it was hit, pointing out
+         * @param normalY Unit normal of the circle where it was hit, pointing out
+         * @param direction The ray's unit direction {x, y}, to be replaced with the new direction
+         * @return False if the atom absorbs the ray
+         */
+        boolean bounce(double impact, double normalX, double normalY, double[] direction);
+    }
+
+    /**
+     * Bounces rays off the circle like a mirror, absorbing the ones aimed closer to the centre than absorbBelow
+     */
+    public static Rule mirror(double absorbBelow) {
+        return (impact, normalX, normalY, direction) -> {
+            if (impact < absorbBelow) return false;
+            double along = direction[0] * normalX + direction[1] * normalY;
+            direction[0] -= 2 * along * normalX;
+            direction[1] -= 2 * along * normalY;
+            return true;
+        };
+    }
+
+    /**
+     * Turns rays away from the atom by a fixed angle, like the hex rules do, absorbing the ones aimed closer to the centre than absorbBelow.
+     * A ray turned less than it needs to clear the circle carries on through it.
+     */
+    public static Rule turn(double degrees, double absorbBelow) {
+        double cos = Math.cos(Math.toRadians(degrees));
+        double sin = Math.sin(Math.toRadians(degrees));
+        return (impact, normalX, normalY, direction) -> {
+            if (impact < absorbBelow) return false;
+            double side = Math.signum(direction[0] * normalY - direction[1] * normalX); // which way is away from the centre
+            double x = direction[0], y = direction[1];
+            direction[0] = x * cos - side * y * sin;
+            direction[1] = y * cos + side * x * sin;
+            return true;
+        };
+    }
+
+    /**
+     * Where a ray ended up, either absorbed at (x, y) or heading off the board from there
+     */
+    public static class Result {
+        private final double x;
+        private final double y;
+        private final double directionX;
+        private final double directionY;
+        private final int bounces;
+        private final boolean absorbed;
+
+        Result(double x, double y, double directionX, double directionY, int bounces, boolean absorbed) {
+            this.x = x;
+            this.y = y;
+            this.directionX = directionX;
+            this.directionY = directionY;
+            this.bounces = bounces;
+            this.absorbed = absorbed;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getDirectionX() {
+            return directionX;
+        }
+
+        public double getDirectionY() {
+            return directionY;
+        }
+
+        public int getBounces() {
+            return bounces;
+        }
+
+        public boolean isAbsorbed() {
+            return absorbed;
+        }
+
+        public boolean isLooped() {
+            return bounces >= MAX_BOUNCES;
+        }
+    }
+
+    private static ContinuousTracer requested;
+
+    private final Rule rule;
+    private final double[] centreX = new double[RayTracer.NUM_CELLS];
+    private final double[] centreY = new double[RayTracer.NUM_CELLS];
+    private final double[] startX = new double[RayTracer.NUM_EXITS + 1]; // indexed by exit number, one box outside the board
+    private final double[] startY = new double[RayTracer.NUM_EXITS + 1];
+    private final double[] headingX = new double[RayTracer.NUM_EXITS + 1];
+    private final double[] headingY = new double[RayTracer.NUM_EXITS + 1];
+    private final double spacing; // distance between neighbouring box centres
+    private final double radius;
+
+    /**
+     * @param boxes The board's hexagonal boxes, in box number order (Game.loadHexagonalBoxes)
+     * @param radius Radius of each atom's circle of influence, as a fraction of the distance between neighbouring boxes
+     */
+    public ContinuousTracer(RayTracer tracer, List<HexagonalBox> boxes, double radius, Rule rule) {
+        this.rule = rule;
+        for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) {
+            centreX[cell] = boxes.get(cell).getX();
+            centreY[cell] = boxes.get(cell).getY();
+        }
+        // the pixel direction of each side, averaged over every pair of neighbouring boxes
+        double[] sideX = new double[6];
+        double[] sideY = new double[6];
+        double totalDistance = 0;
+        int pairs = 0;
+        for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) {
+            for (int side = 0; side < 6; side++) {
+                int neighbour = tracer.neighbour(cell, side);
+                if (neighbour < 0) continue;
+                double dx = centreX[neighbour] - centreX[cell], dy = centreY[neighbour] - centreY[cell];
+                double length = Math.hypot(dx, dy);
+                sideX[side] += dx / length;
+                sideY[side] += dy / length;
+                totalDistance += length;
+                pairs++;
+            }
+        }
+        for (int side = 0; side < 6; side++) {
+            double length = Math.hypot(sideX[side], sideY[side]);
+            sideX[side] /= length;
+            sideY[side] /= length;
+        }
+        spacing = totalDistance / pairs;
+        this.radius = radius * spacing;
+        for (int exit = 1; exit <= RayTracer.NUM_EXITS; exit++) {
+            int cell = tracer.entryCell(exit), side = tracer.entryDirection(exit);
+            headingX[exit] = sideX[side];
+            headingY[exit] = sideY[side];
+            startX[exit] = centreX[cell] - sideX[side] * spacing;
+            startY[exit] = centreY[cell] - sideY[side] * spacing;
+        }
+    }
+
+    /**
+     * @return The tracer asked for with -Dblackbox.continuous (mirror or turn), or null to use the usual hex rules
+     */
+    public static synchronized ContinuousTracer requested(List<HexagonalBox> boxes) {
+        String name = System.getProperty("blackbox.continuous");
+        if (name == null) return null;
+        if (requested == null) {
+            Rule rule = switch (name) {
+                case "turn" -> turn(60, 0.3);
+                case "mirror", "" -> mirror(0.3);
+                default -> throw new IllegalArgumentException("Unknown continuous ray rule " + name + ", expected mirror or turn");
+            };
+            requested = new ContinuousTracer(RayTracer.getInstance(), boxes, 0.9, rule);
+        }
+        return requested;
+    }
+
+    /**
+     * @return The layout's atoms as circles at their box centres
+     */
+    public AtomGrid gridFor(long atoms) {
+        double[] xs = new double[Long.bitCount(atoms)];
+        double[] ys = new double[xs.length];
+        int i = 0;
+        for (long rest = atoms; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            xs[i] = centreX[cell];
+            ys[i++] = centreY[cell];
+        }
+        return new AtomGrid(xs, ys, radius);
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Shoots a ray from one of the board's exits
+     * @param segments Gets the ray's path as segments for drawing, can be null
+     * @return The exit number the ray leaves from, RayTracer.ABSORBED or RayTracer.LOOPED
+     */
+    public int shoot(AtomGrid atoms, int entry, List<Ray> segments) {
+        Result result = trace(atoms, startX[entry], startY[entry], headingX[entry], headingY[entry], segments);
+        if (result.isAbsorbed()) return RayTracer.ABSORBED;
+        if (result.isLooped()) return RayTracer.LOOPED;
+
+        // the exit is the one whose spot outside the board lies on the line the ray leaves along, but neighbouring exits
+        // of two boxes share a spot, so of the exits about as close as the closest, it's the one facing the way the ray is going
+        double closest = Double.MAX_VALUE;
+        for (int candidate = 1; candidate <= RayTracer.NUM_EXITS; candidate++) {
+            double ox = startX[candidate] - result.getX(), oy = startY[candidate] - result.getY();
+            if (ox * result.getDirectionX() + oy * result.getDirectionY() > 0) closest = Math.min(closest, Math.abs(ox * result.getDirectionY() - oy * result.getDirectionX()));
+        }
+        int exit = 0;
+        double bestFacing = -Double.MAX_VALUE;
+        double along = 0;
+        for (int candidate = 1; candidate <= RayTracer.NUM_EXITS; candidate++) {
+            double ox = startX[candidate] - result.getX(), oy = startY[candidate] - result.getY();
+            double ahead = ox * result.getDirectionX() + oy * result.getDirectionY();
+            double off = Math.abs(ox * result.getDirectionY() - oy * result.getDirectionX());
+            double facing = -(headingX[candidate] * result.getDirectionX() + headingY[candidate] * result.getDirectionY());
+            if (ahead > 0 && off <= closest + spacing / 4 && facing > bestFacing) {
+                bestFacing = facing;
+                exit = candidate;
+                along = ahead;
+            }
+        }
+        if (segments != null) addSegment(segments, result.getX(), result.getY(),
+                result.getX() + result.getDirectionX() * along, result.getY() + result.getDirectionY() * along);
+        return exit;
+    }
+
+    /**
+     * Follows a ray until it's absorbed or has nothing left to hit
+     * @param dx Unit direction
+     * @param dy Unit direction
+     * @param segments Gets a segment for each stretch up to the last bounce (or the absorption), can be null
+     */
+    public Result trace(AtomGrid atoms, double x, double y, double dx, double dy, List<Ray> segments) {
+        double[] direction = {dx, dy};
+        double[] hit = new double[1];
+        for (int bounces = 0; bounces < MAX_BOUNCES; bounces++) {
+            int atom = atoms.firstHit(x, y, direction[0], direction[1], Double.MAX_VALUE, hit);
+            if (atom < 0) return new Result(x, y, direction[0], direction[1], bounces, false);
+            double hx = x + direction[0] * hit[0], hy = y + direction[1] * hit[0];
+            if (segments != null) addSegment(segments, x, y, hx, hy);
+            double normalX = (hx - atoms.getX(atom)) / atoms.getRadius(), normalY = (hy - atoms.getY(atom)) / atoms.getRadius();
+            double impact = Math.abs(direction[0] * normalY - direction[1] * normalX); // sine of the angle off the normal
+            if (!rule.bounce(impact, normalX, normalY, direction)) {
+                if (segments != null) addSegment(segments, hx, hy, atoms.getX(atom), atoms.getY(atom));
+                return new Result(atoms.getX(atom), atoms.getY(atom), direction[0], direction[1], bounces, true);
+            }
+            double length = Math.hypot(direction[0], direction[1]); // keep rounding from building up over many bounces
+            direction[0] /= length;
+            direction[1] /= length;
+            x = hx;
+            y = hy;
+        }
+        return new Result(x, y, direction[0], direction[1], MAX_BOUNCES, false);
+    }
+
+    private static void addSegment(List<Ray> segments, double x1, double y1, double x2, double y2) {
+        segments.add(new Ray((int) Math.round(x1), (int) Math.round(y1), (int) Math.round(x2), (int) Math.round(y2)));
+    }
+}
@@ -0,0 +1,74 @@
+package computations;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * All the randomness of one game, derived from a single seed.
+ * The layout and the default player name come from separate splits of the seed,
+ * so changing how one of them is drawn never changes the other.
+ * A game can be replayed exactly by launching with -Dblackbox.seed=seed
+ */
+public class GameSeed {
+    private final long seed;
+    private final SplittableRandom layoutRandom;
+    private final SplittableRandom nameRandom;
+    private int layoutDraws = 0;
+
+    public GameSeed(long seed) {
+        this.seed = seed;
+        SplittableRandom root = new SplittableRandom(seed);
+        this.layoutRandom = root.split();
+        this.nameRandom = root.split();
+    }
+
+    /**
+     * @return The seed from -Dblackbox.seed if it's set, otherwise a fresh one
+     */
+    public static GameSeed newSession() {
+        String property = System.getProperty("blackbox.seed");
+        if (property != null && !property.isBlank()) {
+            try {
+                return new GameSeed(Long.parseLong(property.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid blackbox.seed " + property);
+            }
+        }
+        return new GameSeed(new SplittableRandom().nextLong());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Places atoms uniformly at random, redrawing any box that already holds one
+     * @return The layout as a RayTracer bit mask
+     */
+    public long randomLayout(int numAtoms) {
+        long atoms = 0;
+        while (Long.bitCount(atoms) < numAtoms) {
+            atoms |= 1L << layoutRandom.nextInt(0, RayTracer.NUM_CELLS);
+            layoutDraws++;
+        }
+        return atoms;
+    }
+
+    /**
+     * @return Boxes drawn so far, including ones rejected because they already held an atom
+     */
+    public int getLayoutDraws() {
+        return layoutDraws;
+    }
+
+    /**
+     * @return The generator used for picking layouts (e.g. from a puzzle pack)
+     */
+    public RandomGenerator getLayoutRandom() {
+        return layoutRandom;
+    }
+
+    public String defaultPlayerName() {
+        return "user" + nameRandom.nextInt(99999);
+    }
+}
@@ -0,0 +1,143 @@
+package computations;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Computer setter for hard games: instead of drawing a layout at random it searches for one PuzzleGenerator rates as needing many rays.
+ * Layouts are scored with PuzzleGenerator's rating (a greedy cover of the rays telling them apart from every layout one atom move away)
+ * plus a bonus for each of those layouts no ray can tell apart at all. Layouts with an atom no ray can find are never picked.
+ * Every core runs its own annealing search (move one atom at a time, sometimes accepting a worse layout to get out of dead ends)
+ * until the time budget runs out, and the best layout any of them found wins.
+ */
+public class HardSetter {
+    private static final double START_TEMPERATURE = 1.0;
+    private static final double END_TEMPERATURE = 0.05;
+
+    private final PuzzleGenerator generator;
+    private final int numAtoms;
+    private long budgetNanos = 1_500_000_000L; // leaves room under two seconds for the rest of the game's start
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private double equivalentWeight = 0.5; // worth of each indistinguishable neighbouring layout, in rays
+    private long evaluations = 0;
+
+    public HardSetter(int numAtoms) {
+        this.numAtoms = numAtoms;
+        this.generator = new PuzzleGenerator(0).setNumAtoms(numAtoms);
+    }
+
+    public HardSetter setBudgetMillis(long budgetMillis) {
+        this.budgetNanos = budgetMillis * 1_000_000;
+        return this;
+    }
+
+    public HardSetter setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public HardSetter setEquivalentWeight(double equivalentWeight) {
+        this.equivalentWeight = equivalentWeight;
+        return this;
+    }
+
+    /**
+     * @return Layouts rated by the last pick, across all cores
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return How hard a layout is, or -1 if it can't be used (a ray goes round forever or an atom can't be found)
+     */
+    public double score(long atoms) {
+        int[] equivalent = new int[1];
+        PuzzlePack.Puzzle puzzle = generator.rate(0, atoms, equivalent);
+        if (puzzle == null || puzzle.hasHiddenAtoms()) return -1;
+        return puzzle.getNeighbourCoverRays() + equivalentWeight * equivalent[0];
+    }
+
+    /**
+     * Searches for a hard layout until the time budget runs out
+     * @param random Where each core's search starts from, the result also depends on how far they get in the time
+     * @return The hardest layout found, or a random usable one if the budget ran out before any was found
+     */
+    public long pick(RandomGenerator random) {
+        long deadline = System.nanoTime() + budgetNanos;
+        long[] seeds = new long[parallelism];
+        for (int i = 0; i < parallelism; i++) seeds[i] = random.nextLong();
+        long[][] results = new long[parallelism][]; // {layout, score bits, evaluations}
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, parallelism).parallel().forEach(i -> results[i] = anneal(new SplittableRandom(seeds[i]), deadline))).join();
+        } finally {
+            pool.shutdown();
+        }
+        long best = 0;
+        double bestScore = -1; // a core that ran out of time before finding a usable layout has nothing to offer
+        evaluations = 0;
+        for (long[] result : results) {
+            evaluations += result[2];
+            if (Double.longBitsToDouble(result[1]) > bestScore) {
+                bestScore = Double.longBitsToDouble(result[1]);
+                best = result[0];
+            }
+        }
+        return bestScore >= 0 ? best : usableLayout(random);
+    }
+
+    // any layout that can be played, however long it takes to draw one, since a ray that never comes out would hang the game
+    private long usableLayout(RandomGenerator random) {
+        long atoms;
+        do {
+            atoms = 0;
+            while (Long.bitCount(atoms) < numAtoms) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            evaluations++;
+        } while (score(atoms) < 0);
+        return atoms;
+    }
+
+    private long[] anneal(SplittableRandom random, long deadline) {
+        long start = System.nanoTime();
+        long current;
+        double currentScore;
+        long evaluated = 0;
+        do { // start from any usable layout
+            current = 0;
+            while (Long.bitCount(current) < numAtoms) current |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            currentScore = score(current);
+            evaluated++;
+        } while (currentScore < 0 && System.nanoTime() < deadline);
+        long best = current;
+        double bestScore = currentScore;
+
+        for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+            double progress = (double) (now - start) / Math.max(1, deadline - start);
+            double temperature = START_TEMPERATURE * Math.pow(END_TEMPERATURE / START_TEMPERATURE, progress);
+            int from = nthSetBit(current, random.nextInt(numAtoms));
+            int to = random.nextInt(RayTracer.NUM_CELLS);
+            if (RayTracer.hasAtom(current, to)) continue;
+            long proposal = current & ~(1L << from) | 1L << to;
+            double proposed = score(proposal);
+            evaluated++;
+            if (proposed < 0) continue;
+            if (proposed >= currentScore || random.nextDouble() < Math.exp((proposed - currentScore) / temperature)) {
+                current = proposal;
+                currentScore = proposed;
+                if (currentScore > bestScore) {
+                    best = current;
+                    bestScore = currentScore;
+                }
+            }
+        }
+        return new long[]{best, Double.doubleToLongBits(bestScore), evaluated};
+    }
+
+    private static int nthSetBit(long bits, int n) {
+        for (int i = 0; i < n; i++) bits &= bits - 1;
+        return Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,96 @@
+package computations;
+
+/**
+ * Keeps the outcome of all 54 rays up to date while atoms are added, removed and moved (used by the setter mode).
+ * For every cell it indexes the exits whose current path could be changed by an atom there (see RayTracer.influence),
+ * so an edit only retraces the rays that run through or next to the cells that changed.
+ */
+public class IncrementalTracer {
+    private final RayTracer tracer;
+    private final int[] outcomes = new int[RayTracer.NUM_EXITS];
+    private final long[] influence = new long[RayTracer.NUM_EXITS]; // cells each ray depends on
+    private final long[] exitsByCell = new long[RayTracer.NUM_CELLS]; // reverse index, bit (entry - 1) for each ray that depends on the cell
+    private final int[] path = new int[RayTracer.MAX_PATH];
+    private long atoms = 0;
+    private int lastRetraced = 0;
+
+    public IncrementalTracer(RayTracer tracer) {
+        this.tracer = tracer;
+        retrace((1L << RayTracer.NUM_EXITS) - 1);
+    }
+
+    public long getAtoms() {
+        return atoms;
+    }
+
+    public boolean hasAtom(int cell) {
+        return RayTracer.hasAtom(atoms, cell);
+    }
+
+    /**
+     * @return The exit number the ray from entry leaves at, RayTracer.ABSORBED or RayTracer.LOOPED
+     */
+    public int getOutcome(int entry) {
+        return outcomes[entry - 1];
+    }
+
+    /**
+     * @return Bit (entry - 1) is set for every ray an atom in this cell could change
+     */
+    public long exitsDependingOn(int cell) {
+        return exitsByCell[cell];
+    }
+
+    /**
+     * @return How many rays the last edit traced again
+     */
+    public int getLastRetraced() {
+        return lastRetraced;
+    }
+
+    /**
+     * @return Bit (entry - 1) set for every ray whose outcome changed
+     */
+    public long toggle(int cell) {
+        return setLayout(atoms ^ (1L << cell));
+    }
+
+    /**
+     * Moves an atom, the same as removing it and adding it somewhere else but with only one update
+     * @return Bit (entry - 1) set for every ray whose outcome changed
+     */
+    public long move(int from, int to) {
+        if (!hasAtom(from) || hasAtom(to)) throw new IllegalArgumentException("Can only move an atom to an empty box");
+        return setLayout(atoms & ~(1L << from) | 1L << to);
+    }
+
+    /**
+     * Switches to any layout, retracing only the rays that depend on a cell that changed
+     * @return Bit (entry - 1) set for every ray whose outcome changed
+     */
+    public long setLayout(long newAtoms) {
+        long changedCells = atoms ^ newAtoms;
+        long affected = 0;
+        for (long rest = changedCells; rest != 0; rest &= rest - 1) affected |= exitsByCell[Long.numberOfTrailingZeros(rest)];
+        atoms = newAtoms;
+        return retrace(affected);
+    }
+
+    private long retrace(long entries) {
+        long changed = 0;
+        lastRetraced = Long.bitCount(entries);
+        for (long rest = entries; rest != 0; rest &= rest - 1) {
+            int index = Long.numberOfTrailingZeros(rest);
+            long bit = 1L << index;
+            for (long cells = influence[index]; cells != 0; cells &= cells - 1) exitsByCell[Long.numberOfTrailingZeros(cells)] &= ~bit;
+
+            int length = tracer.tryTracePath(atoms, index + 1, path); // one walk gives both the outcome and the cells it depends on
+            int outcome = length > 0 ? path[length - 1] : RayTracer.LOOPED;
+            if (outcome != outcomes[index]) changed |= bit;
+            outcomes[index] = outcome;
+            influence[index] = tracer.influence(path, length);
+            for (long cells = influence[index]; cells != 0; cells &= cells - 1) exitsByCell[Long.numberOfTrailingZeros(cells)] |= bit;
+        }
+        return changed;
+    }
+}
@@ -1,12 +1,18 @@
 package computations;
 
+import diagnostics.LeaderboardIOEvent;
+import diagnostics.Metrics;
+
+import java.awt.EventQueue;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class LeaderBoardData {
-    // linked hash map ensures there is order when writing to the txt file and map list holds the name and score
+    // linked hash map keeps players in the order they first appeared and map list holds the name and score
     private static final LinkedHashMap<String, Integer> scoresLinkedHashMap = new LinkedHashMap<>();
-    private static List<Map.Entry<String, Integer>> sortedScores = new ArrayList<>();
+    private static volatile List<Map.Entry<String, Integer>> sortedScores = new ArrayList<>();
     public LinkedHashMap<String, Integer> getScoresLinkedHashMap() {
         return scoresLinkedHashMap;
     }
@@ -16,68 +22,138 @@ public class LeaderBoardData {
 
     public void readAndSort() throws IOException {
         LeaderBoardData leaderBoardData = new LeaderBoardData();
-        leaderBoardData.readTXTFile();
+        leaderBoardData.readScores();
         sortedScores = leaderBoardData.sortScores();
     }
 
-    public void readTXTFile() throws IOException { // reads in txt file and saves it to the linked hash map
-        File file = new File("scores.txt");
-        if (!file.exists()) file.createNewFile();
-        Scanner scanner = new Scanner(file);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            String[] column = line.split(",");
-            String name = column[0]; // name will always be the 1st column
-            int score = Integer.parseInt(column[1]); // score will always be the 2nd column parsed
-            scoresLinkedHashMap.put(name, score);
-        }
+    // reads each player's latest score out of the binary archive and saves it to the linked hash map
+    public void readScores() throws IOException {
+        fillScoresMap(await(readLatestScoresAsync()));
     }
 
     // I used lists, as they maintain order as they're inserted.
     // lists allow for sorting based on the integer part of the linked-hashmap
     public List<Map.Entry<String, Integer>> sortScores() {
+        LeaderboardIOEvent event = new LeaderboardIOEvent();
+        event.begin();
         List<Map.Entry<String, Integer>> sortedEntries = new ArrayList<>(scoresLinkedHashMap.entrySet());
         sortedEntries.sort(Comparator.comparingInt(Map.Entry::getValue));
+        if (event.shouldCommit()) {
+            event.operation = "sort";
+            event.records = sortedEntries.size();
+            event.commit();
+        }
         return sortedEntries;
     }
 
+    // scores.txt is now just a readable export of the leaderboard, the history itself lives in scores.bin
     public void writeTXTFile(List<Map.Entry<String, Integer>> sortedEntry) {
-        try (PrintWriter printWriter = new PrintWriter(new FileWriter("scores.txt"))) {
-            for (Map.Entry<String, Integer> entry : sortedEntry) printWriter.println(entry.getKey() + "," + entry.getValue());
-        }
+        try { await(writeTXTFileAsync(sortedEntry)); }
         catch (IOException e) { System.out.println("Error writing the file!"); }
     }
 
+    // queued on the score writer, which batches it with any other pending scores into one fsynced write
     public static void storeScore(String name, int score) {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("scores.txt", true))) {
-            bufferedWriter.write(name + "," + score);
-            bufferedWriter.newLine();
-        }
-        catch (IOException e) {
-            System.err.println("Error storing score: " + e.getMessage());
-            e.printStackTrace();
-        }
+        timed(ScoreWriter.getInstance().append(name, score)).whenComplete((ignored, e) -> {
+            if (e != null) {
+                System.err.println("Error storing score: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
     }
 
     public static void checkFormat() throws IOException {
-        File file = new File("scores.txt");
-        if (!file.exists()) file.createNewFile();
-        BufferedReader bufferedReader = new BufferedReader(new FileReader("scores.txt"));
-        int numOfLines = 0;
-        String line;
-        while ((line = bufferedReader.readLine()) != null) if (!line.isEmpty()) numOfLines++;
-        bufferedReader.close();
-        if (numOfLines < 5) {
-            FileWriter fileWriter = new FileWriter("scores.txt", false);
-            fileWriter.write("user1,100\nuser2,100\nuser3,100\nuser4,100\nuser5,100\n");
-            fileWriter.close();
-        }
+        await(checkFormatAsync());
     }
 
     public static void clearTheLeaderboard() throws IOException {
-        sortedScores.clear();
-        FileWriter fileWriter = new FileWriter("scores.txt", false);
-        fileWriter.write("user1,100\nuser2,100\nuser3,100\nuser4,100\nuser5,100\n");
-        fileWriter.close();
+        await(clearTheLeaderboardAsync());
+    }
+
+    /**
+     * Does everything the leaderboard screen needs (checkFormat, readAndSort, writeTXTFile) on the score writer's thread
+     * @return A future holding the sorted scores, the calling thread is never blocked
+     */
+    public static CompletableFuture<List<Map.Entry<String, Integer>>> loadLeaderboardAsync() {
+        return checkFormatAsync()
+                .thenCompose(ignored -> readLatestScoresAsync())
+                .thenCompose(latestScores -> {
+                    fillScoresMap(latestScores);
+                    List<Map.Entry<String, Integer>> sorted = new LeaderBoardData().sortScores();
+                    sortedScores = sorted;
+                    return writeTXTFileAsync(sorted).thenApply(ignored -> sorted);
+                });
+    }
+
+    // makes sure there are at least 5 players to show, topping up with placeholder users without losing any history
+    public static CompletableFuture<Void> checkFormatAsync() {
+        return timed(ScoreWriter.getInstance().rewrite(archive -> {
+            if (archive.rankedScores(5).size() >= 5) return null; // leave the file untouched if it's already filled in
+            List<Map.Entry<String, Integer>> history = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            archive.forEachScore((playerId, score) -> {
+                history.add(new AbstractMap.SimpleEntry<>(archive.getName(playerId), score));
+                names.add(archive.getName(playerId));
+            });
+            for (int i = 1; names.size() < 5; i++) {
+                if (names.add("user" + i)) history.add(new AbstractMap.SimpleEntry<>("user" + i, 100));
+            }
+            return history;
+        }));
+    }
+
+    public static CompletableFuture<Void> clearTheLeaderboardAsync() {
+        sortedScores = new ArrayList<>();
+        return timed(ScoreWriter.getInstance().rewrite(archive -> defaultScores()));
+    }
+
+    public static CompletableFuture<Void> writeTXTFileAsync(List<Map.Entry<String, Integer>> sortedEntry) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : sortedEntry) lines.add(entry.getKey() + "," + entry.getValue());
+        return timed(ScoreWriter.getInstance().exportText(lines));
+    }
+
+    // score records are scanned in place, so only one name per player is ever decoded
+    private static CompletableFuture<List<Map.Entry<String, Integer>>> readLatestScoresAsync() {
+        return timed(ScoreWriter.getInstance().read(archive -> {
+            int[] latest = archive.latestScores();
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+            for (int playerId = 0; playerId < latest.length; playerId++) {
+                if (latest[playerId] != ScoreArchive.NO_SCORE) entries.add(new AbstractMap.SimpleEntry<>(archive.getName(playerId), latest[playerId]));
+            }
+            return entries;
+        }));
+    }
+
+    // every trip to the score writer is timed, queue wait included, for the leaderboard I/O metric
+    private static <T> CompletableFuture<T> timed(CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        return future.whenComplete((value, e) -> Metrics.leaderboardIoTime().recordSince(start));
+    }
+
+    private static void fillScoresMap(List<Map.Entry<String, Integer>> latestScores) {
+        synchronized (scoresLinkedHashMap) {
+            scoresLinkedHashMap.clear();
+            for (Map.Entry<String, Integer> entry : latestScores) scoresLinkedHashMap.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static List<Map.Entry<String, Integer>> defaultScores() {
+        List<Map.Entry<String, Integer>> defaults = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) defaults.add(new AbstractMap.SimpleEntry<>("user" + i, 100));
+        return defaults;
+    }
+
+    // waits on a queued file operation, unwrapping any I/O failure so callers keep their IOException handling
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        if (EventQueue.isDispatchThread()) { // a slow disk would freeze the whole UI, use the async versions instead
+            throw new IllegalStateException("Blocking leaderboard I/O called on the Event Dispatch Thread");
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw e;
+        }
     }
-}
\ No newline at end of file
+}
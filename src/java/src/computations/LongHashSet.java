@@ -0,0 +1,92 @@
+package computations;
+
+import java.util.Arrays;
+
+/**
+ * Set of longs without boxing, open addressing with linear probing.
+ * Long.MIN_VALUE marks an empty slot so it can't be stored.
+ */
+public class LongHashSet {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] slots;
+    private int size = 0;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expected) {
+        slots = new long[Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(long key) {
+        int mask = slots.length - 1;
+        for (int i = slot(key, mask); slots[i] != EMPTY; i = (i + 1) & mask) if (slots[i] == key) return true;
+        return false;
+    }
+
+    /**
+     * @return False if the key was already there
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) throw new IllegalArgumentException("Long.MIN_VALUE can't be stored");
+        int mask = slots.length - 1;
+        int i = slot(key, mask);
+        for (; slots[i] != EMPTY; i = (i + 1) & mask) if (slots[i] == key) return false;
+        slots[i] = key;
+        if (++size * 2 > slots.length) grow();
+        return true;
+    }
+
+    /**
+     * @return False if the key wasn't there
+     */
+    public boolean remove(long key) {
+        int mask = slots.length - 1;
+        int i = slot(key, mask);
+        while (slots[i] != key) {
+            if (slots[i] == EMPTY) return false;
+            i = (i + 1) & mask;
+        }
+        // shift later keys of the same run back so every key stays reachable from its slot
+        for (int next = (i + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(slots[next], mask);
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                slots[i] = slots[next];
+                i = next;
+            }
+        }
+        slots[i] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (long key : old) {
+            if (key == EMPTY) continue;
+            int i = slot(key, mask);
+            while (slots[i] != EMPTY) i = (i + 1) & mask;
+            slots[i] = key;
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+}
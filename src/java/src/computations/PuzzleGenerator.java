@@ -0,0 +1,221 @@
+package computations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Builds packs of seeded, rated puzzles.
+ * Each candidate layout comes from its own seed, so a pack is the same whatever order the cores finish in, and any puzzle can be regenerated from its seed.
+ * <p>
+ * The rating is an upper-bound proxy for difficulty, not the expected number of rays a solver needs to pin the layout down:
+ * every layout one atom move away has a set of rays that would tell it apart, and the rating is the size of a greedy cover of those sets,
+ * with every ray chosen up front without looking at any outcome. That's at least as many rays as the smallest such cover, which is at least
+ * as many as a solver choosing each ray from the last outcome needs to rule those neighbours out.
+ * Layouts two or more moves away are never considered, so the rays it counts don't necessarily pin the layout down.
+ * Neighbours that no ray can tell apart make the puzzle ambiguous, and atoms whose removal changes no ray are hidden.
+ * A puzzle that isn't flagged ambiguous hasn't been checked to have a unique solution: it can still share every outcome with a layout
+ * two or more moves away.
+ * Layouts where a ray would go round in circles forever are always thrown away.
+ */
+public class PuzzleGenerator {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L; // golden ratio increment, spreads neighbouring candidates apart
+    private static final int BATCH_SIZE = 4096;
+
+    private final RayTracer tracer;
+    private final long seed;
+    private int numAtoms = 6;
+    private int minRays = 0;
+    private int maxRays = Integer.MAX_VALUE;
+    private boolean allowHiddenAtoms = false;
+    private boolean allowAmbiguous = false;
+
+    public PuzzleGenerator(long seed) {
+        this(RayTracer.getInstance(), seed);
+    }
+
+    public PuzzleGenerator(RayTracer tracer, long seed) {
+        this.tracer = tracer;
+        this.seed = seed;
+    }
+
+    public PuzzleGenerator setNumAtoms(int numAtoms) {
+        this.numAtoms = numAtoms;
+        return this;
+    }
+
+    /**
+     * Only keep puzzles whose neighbour cover rating is between min and max rays (inclusive)
+     */
+    public PuzzleGenerator setRayRange(int minRays, int maxRays) {
+        this.minRays = minRays;
+        this.maxRays = maxRays;
+        return this;
+    }
+
+    public PuzzleGenerator setAllowHiddenAtoms(boolean allowHiddenAtoms) {
+        this.allowHiddenAtoms = allowHiddenAtoms;
+        return this;
+    }
+
+    public PuzzleGenerator setAllowAmbiguous(boolean allowAmbiguous) {
+        this.allowAmbiguous = allowAmbiguous;
+        return this;
+    }
+
+    /**
+     * @return The layout candidate number i is built from
+     */
+    public long candidateSeed(long i) {
+        return seed + i * SEED_STEP;
+    }
+
+    /**
+     * @return A layout of numAtoms atoms drawn uniformly from the board
+     */
+    public long layout(long candidateSeed) {
+        SplittableRandom random = new SplittableRandom(candidateSeed);
+        long atoms = 0;
+        while (Long.bitCount(atoms) < numAtoms) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+        return atoms;
+    }
+
+    /**
+     * Builds puzzles from consecutive candidates in parallel, keeping those that pass the filters in candidate order
+     * @param count Number of puzzles wanted
+     * @param maxCandidates Stops early after this many candidates, so impossible filters can't run forever
+     */
+    public List<PuzzlePack.Puzzle> build(int count, long maxCandidates) {
+        List<PuzzlePack.Puzzle> puzzles = new ArrayList<>(count);
+        for (long start = 0; puzzles.size() < count && start < maxCandidates; start += BATCH_SIZE) {
+            long batchStart = start;
+            int batchSize = (int) Math.min(BATCH_SIZE, maxCandidates - start);
+            PuzzlePack.Puzzle[] batch = IntStream.range(0, batchSize).parallel()
+                    .mapToObj(i -> rate(candidateSeed(batchStart + i)))
+                    .toArray(PuzzlePack.Puzzle[]::new);
+            for (PuzzlePack.Puzzle puzzle : batch) {
+                if (puzzle != null && accepts(puzzle) && puzzles.size() < count) puzzles.add(puzzle);
+            }
+        }
+        return puzzles;
+    }
+
+    public boolean accepts(PuzzlePack.Puzzle puzzle) {
+        return puzzle.getNeighbourCoverRays() >= minRays && puzzle.getNeighbourCoverRays() <= maxRays
+                && (allowHiddenAtoms || !puzzle.hasHiddenAtoms())
+                && (allowAmbiguous || !puzzle.isAmbiguous());
+    }
+
+    /**
+     * Rates the layout built from a seed
+     * @return The rated puzzle, or null if a ray would never leave the board
+     */
+    public PuzzlePack.Puzzle rate(long candidateSeed) {
+        return rate(candidateSeed, layout(candidateSeed), null);
+    }
+
+    /**
+     * Rates any layout, such as one found by a search rather than drawn from its seed
+     * @param equivalent If given, equivalent[0] is set to the number of layouts one atom move away that no ray can tell apart
+     * @return The rated puzzle, or null if a ray would never leave the board
+     */
+    public PuzzlePack.Puzzle rate(long candidateSeed, long atoms, int[] equivalent) {
+        int[] outcomes = new int[RayTracer.NUM_EXITS];
+        long[] touched = new long[RayTracer.NUM_EXITS]; // cells whose atoms could change each ray
+        RayPathCache paths = new RayPathCache(tracer, atoms); // rays that come out elsewhere give the reverse ray for free
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+            outcomes[entry - 1] = paths.getOutcome(entry);
+            if (outcomes[entry - 1] == RayTracer.LOOPED) return null;
+            touched[entry - 1] = paths.getInfluence(entry);
+        }
+
+        int flags = 0;
+        for (long rest = atoms; rest != 0; rest &= rest - 1) {
+            long removed = rest & -rest;
+            if (distinguishingRays(atoms & ~removed, removed, outcomes, touched) == 0) flags |= PuzzlePack.HIDDEN_ATOMS;
+        }
+
+        // every layout with one atom moved somewhere else, as the set of rays that tell it apart
+        long[] neighbours = new long[Long.bitCount(atoms) * (RayTracer.NUM_CELLS - Long.bitCount(atoms))];
+        int numNeighbours = 0;
+        int numEquivalent = 0;
+        long empty = ~atoms & ((1L << RayTracer.NUM_CELLS) - 1);
+        for (long rest = atoms; rest != 0; rest &= rest - 1) {
+            long removed = rest & -rest;
+            for (long free = empty; free != 0; free &= free - 1) {
+                long added = free & -free;
+                long rays = distinguishingRays(atoms & ~removed | added, removed | added, outcomes, touched);
+                if (rays == 0) numEquivalent++;
+                else neighbours[numNeighbours++] = rays;
+            }
+        }
+        if (numEquivalent > 0) flags |= PuzzlePack.AMBIGUOUS;
+        if (equivalent != null) equivalent[0] = numEquivalent;
+        return new PuzzlePack.Puzzle(candidateSeed, atoms, greedyCover(neighbours, numNeighbours), flags);
+    }
+
+    // rays only need tracing again if they pass next to a cell that changed
+    private long distinguishingRays(long layout, long changed, int[] outcomes, long[] touched) {
+        long rays = 0;
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+            if ((touched[entry - 1] & changed) != 0 && tracer.trace(layout, entry) != outcomes[entry - 1]) rays |= 1L << (entry - 1);
+        }
+        return rays;
+    }
+
+    // repeatedly takes the ray that tells apart the most layouts that haven't been ruled out yet, an upper bound on the smallest cover
+    private static int greedyCover(long[] sets, int numSets) {
+        int remaining = numSets;
+        int rays = 0;
+        while (remaining > 0) {
+            int bestRay = 0;
+            int bestCount = -1;
+            for (int ray = 0; ray < RayTracer.NUM_EXITS; ray++) {
+                int count = 0;
+                for (int i = 0; i < remaining; i++) if ((sets[i] >>> ray & 1L) != 0) count++;
+                if (count > bestCount) {
+                    bestCount = count;
+                    bestRay = ray;
+                }
+            }
+            for (int i = 0; i < remaining; ) { // drops the covered sets by swapping them to the end
+                if ((sets[i] >>> bestRay & 1L) != 0) sets[i] = sets[--remaining];
+                else i++;
+            }
+            rays++;
+        }
+        return rays;
+    }
+
+    /**
+     * Builds a pack file: PuzzleGenerator out.bbp count [seed] [minRays] [maxRays] [--allow-hidden] [--allow-ambiguous]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PuzzleGenerator out.bbp count [seed] [minRays] [maxRays] [--allow-hidden] [--allow-ambiguous]");
+            System.exit(1);
+        }
+        List<String> positional = new ArrayList<>();
+        boolean allowHidden = false;
+        boolean allowAmbiguous = false;
+        for (String arg : args) {
+            if (arg.equals("--allow-hidden")) allowHidden = true;
+            else if (arg.equals("--allow-ambiguous")) allowAmbiguous = true;
+            else positional.add(arg);
+        }
+        int count = Integer.parseInt(positional.get(1));
+        long seed = positional.size() > 2 ? Long.parseLong(positional.get(2)) : System.nanoTime();
+        PuzzleGenerator generator = new PuzzleGenerator(seed).setAllowHiddenAtoms(allowHidden).setAllowAmbiguous(allowAmbiguous)
+                .setRayRange(positional.size() > 3 ? Integer.parseInt(positional.get(3)) : 0,
+                        positional.size() > 4 ? Integer.parseInt(positional.get(4)) : Integer.MAX_VALUE);
+
+        long start = System.nanoTime();
+        List<PuzzlePack.Puzzle> puzzles = generator.build(count, (long) count * 1000 + 100_000);
+        PuzzlePack.write(Path.of(positional.get(0)), generator.numAtoms, puzzles);
+        System.out.printf("Wrote %d puzzles to %s in %.1fs%n", puzzles.size(), positional.get(0), (System.nanoTime() - start) / 1e9);
+        if (puzzles.size() < count) System.out.println("Ran out of candidates, the filters may be too strict");
+    }
+}
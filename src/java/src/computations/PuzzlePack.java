@@ -0,0 +1,182 @@
+package computations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A pack of pre-generated, rated puzzles (see PuzzleGenerator).
+ * The file is a 12 byte header followed by fixed size records, so any puzzle can be read straight out of the mapped file:
+ * <pre>
+ *   HEADER [i32 magic "BBPK"][u16 version][u16 atoms per puzzle][i32 puzzle count]
+ *   PUZZLE [i64 seed][i64 atom layout][u8 neighbour cover rays][u8 flags]
+ * </pre>
+ * The game picks puzzles from a pack instead of placing atoms at random when launched with -Dblackbox.puzzles=pack.bbp
+ */
+public class PuzzlePack {
+    public static final int MAGIC = 0x4242504B; // "BBPK"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int RECORD_SIZE = 18;
+    public static final int HIDDEN_ATOMS = 1; // flag: at least one atom doesn't change the outcome of any ray
+    public static final int AMBIGUOUS = 2; // flag: moving one atom gives a layout no ray can tell apart (layouts further away aren't checked)
+
+    private static volatile PuzzlePack requested;
+    private static volatile boolean requestedLoaded = false;
+
+    private final ByteBuffer buffer;
+    private final int numAtoms;
+    private final int size;
+
+    /**
+     * A single rated layout
+     */
+    public static class Puzzle {
+        private final long seed;
+        private final long atoms;
+        private final int neighbourCoverRays;
+        private final int flags;
+
+        public Puzzle(long seed, long atoms, int neighbourCoverRays, int flags) {
+            this.seed = seed;
+            this.atoms = atoms;
+            this.neighbourCoverRays = neighbourCoverRays;
+            this.flags = flags;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return The layout as a RayTracer bit mask
+         */
+        public long getAtoms() {
+            return atoms;
+        }
+
+        /**
+         * @return Size of the greedy cover of rays telling this layout apart from every layout one atom move away (see PuzzleGenerator),
+         * an upper-bound proxy for difficulty rather than the expected number of rays needed to solve it
+         */
+        public int getNeighbourCoverRays() {
+            return neighbourCoverRays;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+
+        public boolean hasHiddenAtoms() {
+            return (flags & HIDDEN_ATOMS) != 0;
+        }
+
+        /**
+         * @return Whether a layout one atom move away gives the same outcome for every ray. False doesn't mean the solution is unique.
+         */
+        public boolean isAmbiguous() {
+            return (flags & AMBIGUOUS) != 0;
+        }
+
+        /**
+         * @return Hexagonal box numbers (1-61) holding an atom, in increasing order
+         */
+        public ArrayList<Integer> getBoxNumbers() {
+            ArrayList<Integer> boxNumbers = new ArrayList<>();
+            for (long rest = atoms; rest != 0; rest &= rest - 1) boxNumbers.add(Long.numberOfTrailingZeros(rest) + 1);
+            return boxNumbers;
+        }
+
+        @Override
+        public String toString() {
+            return "Puzzle" + getBoxNumbers() + " coverRays=" + neighbourCoverRays + (hasHiddenAtoms() ? " hidden" : "") + (isAmbiguous() ? " ambiguous" : "");
+        }
+    }
+
+    private PuzzlePack(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IllegalStateException("Not a puzzle pack");
+        if (buffer.getShort(4) != VERSION) throw new IllegalStateException("Unsupported puzzle pack version " + buffer.getShort(4));
+        this.numAtoms = buffer.getShort(6) & 0xFFFF;
+        this.size = buffer.getInt(8);
+        if ((long) HEADER_SIZE + (long) size * RECORD_SIZE > buffer.limit()) throw new IllegalStateException("Puzzle pack is truncated");
+    }
+
+    /**
+     * Maps a pack file into memory
+     */
+    public static PuzzlePack open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PuzzlePack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The pack named by -Dblackbox.puzzles, or null if there isn't one or it can't be read
+     */
+    public static PuzzlePack requested() {
+        if (!requestedLoaded) {
+            synchronized (PuzzlePack.class) {
+                if (!requestedLoaded) {
+                    String file = System.getProperty("blackbox.puzzles");
+                    if (file != null && !file.isBlank()) {
+                        try {
+                            PuzzlePack pack = open(Path.of(file));
+                            if (pack.size() > 0) requested = pack;
+                        } catch (IOException | RuntimeException e) { // falls back to random layouts rather than stopping the game
+                            System.err.println("Could not load puzzle pack " + file + ": " + e.getMessage());
+                        }
+                    }
+                    requestedLoaded = true;
+                }
+            }
+        }
+        return requested;
+    }
+
+    /**
+     * Writes a pack, replacing any file already there only once the new one is complete
+     */
+    public static void write(Path file, int numAtoms, List<Puzzle> puzzles) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + puzzles.size() * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) numAtoms).putInt(puzzles.size());
+        for (Puzzle puzzle : puzzles) {
+            buffer.putLong(puzzle.getSeed()).putLong(puzzle.getAtoms());
+            buffer.put((byte) Math.min(puzzle.getNeighbourCoverRays(), 255)).put((byte) puzzle.getFlags());
+        }
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNumAtoms() {
+        return numAtoms;
+    }
+
+    public Puzzle get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        return new Puzzle(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.get(offset + 16) & 0xFF, buffer.get(offset + 17) & 0xFF);
+    }
+
+    public Puzzle pick(RandomGenerator random) {
+        return get(random.nextInt(size));
+    }
+}
@@ -0,0 +1,152 @@
+package computations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Remembers the path of every ray traced on one layout. A ray that comes out at another exit is stored under both ends,
+ * because shot back from that exit it retraces the same boxes in reverse, so evaluating the whole board only traces about half the exits.
+ * Paths are only stored reversed when RayTracer.traceReversiblePath has checked every box on the way, and with
+ * -Dblackbox.checkReversibility each reversed path is also compared against Board.iterate before it's used.
+ * Not thread safe, use one per thread.
+ */
+public class RayPathCache {
+    private static final int[] LOOPS = new int[0]; // stands in for the path of a ray that never leaves the board
+
+    private final RayTracer tracer;
+    private final int[][] paths = new int[RayTracer.NUM_EXITS + 1][]; // indexed by entry exit number, null until known
+    private final int[] buffer = new int[RayTracer.MAX_PATH];
+    private boolean selfCheck = Boolean.getBoolean("blackbox.checkReversibility");
+    private Board checkBoard; // the layout on a Board for the self check, built the first time it's needed
+    private long atoms;
+    private int traced = 0;
+    private int reversed = 0;
+
+    public RayPathCache(RayTracer tracer, long atoms) {
+        this.tracer = tracer;
+        this.atoms = atoms;
+    }
+
+    /**
+     * Moves the cache to another layout, forgetting every path if it's different
+     */
+    public void setLayout(long atoms) {
+        if (atoms == this.atoms) return;
+        this.atoms = atoms;
+        Arrays.fill(paths, null);
+        checkBoard = null;
+        traced = 0;
+        reversed = 0;
+    }
+
+    public long getAtoms() {
+        return atoms;
+    }
+
+    /**
+     * Compares every reversed path with Board.iterate, throwing an IllegalStateException if one doesn't match
+     */
+    public RayPathCache setSelfCheck(boolean selfCheck) {
+        this.selfCheck = selfCheck;
+        return this;
+    }
+
+    /**
+     * @return The path in the same form as Board.iterate, shared with the cache so it mustn't be changed
+     * @throws IllegalStateException If the ray never leaves the board
+     */
+    public int[] getPath(int entry) {
+        int[] path = lookup(entry);
+        if (path == LOOPS) throw new IllegalStateException("Ray from " + entry + " never leaves the board");
+        return path;
+    }
+
+    /**
+     * @return The path as a list, exactly what Board.iterate would return
+     */
+    public ArrayList<Integer> getPathList(int entry) {
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int value : getPath(entry)) list.add(value);
+        return list;
+    }
+
+    /**
+     * @return The exit number the ray from entry leaves at, RayTracer.ABSORBED or RayTracer.LOOPED
+     */
+    public int getOutcome(int entry) {
+        int[] path = lookup(entry);
+        return path == LOOPS ? RayTracer.LOOPED : path[path.length - 1];
+    }
+
+    /**
+     * Same cells as RayTracer.influence, worked out from the cached path
+     * @return Mask of the cells whose atoms decide where the ray goes, or every cell if it never leaves the board
+     */
+    public long getInfluence(int entry) {
+        int[] path = lookup(entry);
+        if (path == LOOPS) return (1L << RayTracer.NUM_CELLS) - 1;
+        long mask = 0;
+        for (int i = 1; i < path.length - 1; i++) if (path[i] > 0) mask |= tracer.neighbourhood(path[i] - 1);
+        return mask;
+    }
+
+    /**
+     * Works out every ray, tracing only the ones not already known from the other end
+     * @param outcomes Filled so that outcomes[entry - 1] is the exit number, ABSORBED or LOOPED
+     */
+    public void traceAll(int[] outcomes) {
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) outcomes[entry - 1] = getOutcome(entry);
+    }
+
+    /**
+     * @return Rays actually traced on this layout
+     */
+    public int getTraced() {
+        return traced;
+    }
+
+    /**
+     * @return Rays stored from the other end instead of being traced
+     */
+    public int getReversed() {
+        return reversed;
+    }
+
+    private int[] lookup(int entry) {
+        if (paths[entry] == null) trace(entry);
+        return paths[entry];
+    }
+
+    private void trace(int entry) {
+        traced++;
+        int length = tracer.traceReversiblePath(atoms, entry, buffer);
+        if (length == 0) {
+            paths[entry] = LOOPS;
+            return;
+        }
+        int[] path = Arrays.copyOf(buffer, Math.abs(length));
+        paths[entry] = path;
+        int exit = path[path.length - 1];
+        if (length < 0 || exit == entry || paths[exit] != null) return;
+
+        int[] back = new int[path.length];
+        for (int i = 0; i < path.length; i++) back[i] = path[path.length - 1 - i];
+        if (selfCheck) check(exit, back);
+        paths[exit] = back;
+        reversed++;
+    }
+
+    private void check(int exit, int[] back) {
+        if (checkBoard == null) {
+            checkBoard = new Lists().createboard();
+            for (long rest = atoms; rest != 0; rest &= rest - 1) checkBoard.setrandom(checkBoard, Long.numberOfTrailingZeros(rest) + 1);
+        }
+        ArrayList<Integer> expected = checkBoard.iterate(exit);
+        boolean matches = expected.size() == back.length;
+        for (int i = 0; matches && i < back.length; i++) matches = expected.get(i) == back[i];
+        if (!matches) {
+            throw new IllegalStateException("Ray from " + exit + " doesn't retrace the ray from " + back[back.length - 1]
+                    + " on layout " + Long.toHexString(atoms) + ": expected " + expected + " but reversed " + Arrays.toString(back));
+        }
+    }
+}
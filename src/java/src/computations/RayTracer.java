@@ -0,0 +1,281 @@
+package computations;
+
+import java.util.Collection;
+
+/**
+ * Allocation-free version of Board.iterate for bulk work (puzzle generation, simulations, solvers).
+ * The board's links are flattened into int tables once, and a layout of atoms is a single long
+ * with bit (boxNumber - 1) set for every hexagonal box that holds an atom.
+ * Rays follow exactly the same deflection rules as Board.iterate, so results are interchangeable.
+ */
+public class RayTracer {
+    public static final int NUM_CELLS = 61;
+    public static final int NUM_EXITS = 54;
+    public static final int ABSORBED = -1; // same marker Board.iterate puts at the end of an absorbed path
+    public static final int LOOPED = -2; // the ray goes round in circles, Board.iterate would never return
+    public static final int MAX_STEPS = NUM_CELLS * 6; // a ray in the same box heading the same way twice is going round in circles
+    public static final int MAX_PATH = MAX_STEPS + 3;
+    private static final int HIT = -1;
+
+    private static final RayTracer standard = new RayTracer(new Lists().createboard());
+
+    // neighbours[cell * 6 + side] is the neighbouring cell index, or -(exit number) if that side is an exit
+    private final int[] neighbours = new int[NUM_CELLS * 6];
+    private final int[] entryCell = new int[NUM_EXITS + 1]; // indexed by exit number
+    private final int[] entryDirection = new int[NUM_EXITS + 1];
+    private final long[] neighbourhood = new long[NUM_CELLS]; // each cell plus the cells around it
+
+    public RayTracer(Board board) {
+        int a = 5;
+        int t = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < a; j++) {
+                Node node = board.getnode(i, j);
+                for (int side = 0; side < 6; side++) {
+                    Node neighbour = node.getSides(side);
+                    neighbours[(node.getNodeValue() - 1) * 6 + side] = neighbour.isexit() ? -neighbour.getNodeValue() : neighbour.getNodeValue() - 1;
+                }
+            }
+            if (a < 9 && t == 0) {
+                a++;
+            } else {
+                a--;
+                t = 1;
+            }
+        }
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            long mask = 1L << cell;
+            for (int side = 0; side < 6; side++) if (neighbours[cell * 6 + side] >= 0) mask |= 1L << neighbours[cell * 6 + side];
+            neighbourhood[cell] = mask;
+        }
+        for (int exit = 1; exit <= NUM_EXITS; exit++) {
+            Node exitNode = board.getexit(exit - 1);
+            entryCell[exit] = exitNode.getSides(0).getNodeValue() - 1;
+            entryDirection[exit] = exitNode.getnext();
+        }
+    }
+
+    /**
+     * @return A tracer for the standard 61 box board
+     */
+    public static RayTracer getInstance() {
+        return standard;
+    }
+
+    /**
+     * @param boxNumbers Hexagonal box numbers (1-61) holding an atom
+     * @return The layout as a bit mask
+     */
+    public static long layoutOf(Collection<Integer> boxNumbers) {
+        long atoms = 0;
+        for (int boxNumber : boxNumbers) atoms |= 1L << (boxNumber - 1);
+        return atoms;
+    }
+
+    public static boolean hasAtom(long atoms, int cell) {
+        return (atoms >>> cell & 1L) != 0;
+    }
+
+    /**
+     * @param cell Cell index (box number - 1)
+     * @param side Side 0-5, same numbering as Node.getSides
+     * @return The neighbouring cell index, or -(exit number) if that side of the box is an exit
+     */
+    public int neighbour(int cell, int side) {
+        return neighbours[cell * 6 + side];
+    }
+
+    /**
+     * @return Mask of the cell and the (up to 6) cells around it
+     */
+    public long neighbourhood(int cell) {
+        return neighbourhood[cell];
+    }
+
+    /**
+     * @return Cell index a ray shot from this exit enters first
+     */
+    public int entryCell(int entry) {
+        return entryCell[entry];
+    }
+
+    /**
+     * @return Side (0-5) a ray shot from this exit heads towards
+     */
+    public int entryDirection(int entry) {
+        return entryDirection[entry];
+    }
+
+    /**
+     * Traces one ray
+     * @param atoms Layout bit mask
+     * @param entry Exit number the ray is shot from (1-54)
+     * @return The exit number it leaves from, ABSORBED, or LOOPED if it never leaves
+     */
+    public int trace(long atoms, int entry) {
+        int cell = entryCell[entry];
+        if (hasAtom(atoms, cell)) return ABSORBED;
+        int n = entryDirection[entry];
+        for (int steps = 0; steps < MAX_STEPS; steps++) {
+            n = turn(atoms, cell, n);
+            if (n == HIT) return ABSORBED;
+            int next = neighbours[cell * 6 + n];
+            if (next < 0) return -next;
+            cell = next;
+        }
+        return LOOPED;
+    }
+
+    /**
+     * Traces one ray and records its path in the same form Board.iterate returns:
+     * the entry, every box number visited, then the exit number (or the atom's box number followed by -1)
+     * @param path Buffer of at least MAX_PATH ints
+     * @return Number of ints written, path[length - 1] is the exit number or ABSORBED
+     * @throws IllegalStateException If the ray never leaves the board
+     */
+    public int tracePath(long atoms, int entry, int[] path) {
+        int length = tryTracePath(atoms, entry, path);
+        if (length == 0) throw new IllegalStateException("Ray from " + entry + " never leaves the board");
+        return length;
+    }
+
+    /**
+     * Traces one ray like tracePath, for rays that might go round forever
+     * @param path Buffer of at least MAX_PATH ints
+     * @return Number of ints written, or 0 if the ray never leaves the board
+     */
+    public int tryTracePath(long atoms, int entry, int[] path) {
+        int length = 0;
+        int cell = entryCell[entry];
+        path[length++] = entry;
+        if (hasAtom(atoms, cell)) {//absorbed straight away
+            path[length++] = cell + 1;
+            path[length++] = ABSORBED;
+            return length;
+        }
+        int n = entryDirection[entry];
+        for (int steps = 0; steps < MAX_STEPS; steps++) {
+            int direction = turn(atoms, cell, n);
+            path[length++] = cell + 1;
+            if (direction == HIT) {
+                path[length++] = neighbours[cell * 6 + n] + 1;
+                path[length++] = ABSORBED;
+                return length;
+            }
+            n = direction;
+            int next = neighbours[cell * 6 + n];
+            if (next < 0) {
+                path[length++] = -next;
+                return length;
+            }
+            cell = next;
+        }
+        return 0;
+    }
+
+    /**
+     * Traces one ray like tracePath and also checks, box by box, that a ray shot back from the exit would follow
+     * the same path in reverse. That's true of most rays but not all: a ray that passes into a box holding an atom
+     * (the rules let it when atoms sit both ahead and behind) can't be retraced, and absorbed rays have no exit to come back from.
+     * @param path Buffer of at least MAX_PATH ints
+     * @return Number of ints written, negated if the path can't be reversed, or 0 if the ray never leaves the board
+     */
+    public int traceReversiblePath(long atoms, int entry, int[] path) {
+        int length = 0;
+        int cell = entryCell[entry];
+        path[length++] = entry;
+        if (hasAtom(atoms, cell)) {
+            path[length++] = cell + 1;
+            path[length++] = ABSORBED;
+            return -length;
+        }
+        boolean reversible = true;
+        int n = entryDirection[entry];
+        for (int steps = 0; steps < MAX_STEPS; steps++) {
+            int sides = atomSides(atoms, cell);
+            int direction = deflect(sides, n);
+            path[length++] = cell + 1;
+            if (direction == HIT) {
+                path[length++] = neighbours[cell * 6 + n] + 1;
+                path[length++] = ABSORBED;
+                return -length;
+            }
+            reversible &= deflect(sides, (direction + 3) % 6) == (n + 3) % 6; // coming the other way it must turn back onto the way in
+            n = direction;
+            int next = neighbours[cell * 6 + n];
+            if (next < 0) {
+                path[length++] = -next;
+                reversible &= entryCell[-next] == cell && entryDirection[-next] == (n + 3) % 6;
+                return reversible ? length : -length;
+            }
+            reversible &= !hasAtom(atoms, next);
+            cell = next;
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the cells whose atoms decide where a ray goes: every box it passes through and the boxes around them.
+     * Adding or removing an atom anywhere else can't change the ray.
+     * @param path Buffer of at least MAX_PATH ints, overwritten
+     * @return Mask of those cells, or every cell if the ray never leaves the board
+     */
+    public long influence(long atoms, int entry, int[] path) {
+        return influence(path, tryTracePath(atoms, entry, path));
+    }
+
+    /**
+     * Same as influence, for a ray already traced with tryTracePath
+     * @param length What tryTracePath returned
+     */
+    public long influence(int[] path, int length) {
+        if (length == 0) return (1L << NUM_CELLS) - 1;
+        long mask = 0;
+        for (int i = 1; i < length - 1; i++) if (path[i] > 0) mask |= neighbourhood[path[i] - 1];
+        return mask;
+    }
+
+    /**
+     * Traces every entry
+     * @param outcomes Filled so that outcomes[entry - 1] is the exit number, ABSORBED or LOOPED
+     */
+    public void traceAll(long atoms, int[] outcomes) {
+        for (int entry = 1; entry <= NUM_EXITS; entry++) outcomes[entry - 1] = trace(atoms, entry);
+    }
+
+    // the deflection rules of Board.iterate, with the neighbouring atoms as a mask of sides instead of a list
+    private int turn(long atoms, int cell, int n) {
+        return deflect(atomSides(atoms, cell), n);
+    }
+
+    private int atomSides(long atoms, int cell) {
+        int base = cell * 6;
+        int sides = 0;
+        for (int i = 0; i < 6; i++) {
+            int neighbour = neighbours[base + i];
+            if (neighbour >= 0 && hasAtom(atoms, neighbour)) sides |= 1 << i;
+        }
+        return sides;
+    }
+
+    static int deflect(int sides, int n) { // also used by SparseHexBoard
+        int numAtoms = Integer.bitCount(sides);
+        if (numAtoms == 1) {
+            if ((sides & 1 << n) != 0) return HIT;
+            if ((sides & 1 << (n + 1) % 6) != 0) return (n - 1 + 6) % 6;
+            if ((sides & 1 << (n - 1 + 6) % 6) != 0) return (n + 1) % 6;
+            if ((sides & (1 << (n + 2) % 6 | 1 << (n - 2 + 6) % 6)) != 0) return (n + 3) % 6;
+        } else if (numAtoms == 2) {
+            boolean ahead = (sides & 1 << n) != 0;
+            boolean left = (sides & 1 << (n + 1) % 6) != 0;
+            boolean right = (sides & 1 << (n - 1 + 6) % 6) != 0;
+            if ((sides & (1 << (n + 2) % 6 | 1 << (n - 2 + 6) % 6)) != 0) return (n + 3) % 6;
+            if (left && ahead) return (n - 2 + 6) % 6;
+            if (right && ahead) return (n + 2) % 6;
+            if (right && left) return (n + 3) % 6;
+        } else if (numAtoms > 3) {//same threshold as Board.iterate, three atoms leave the direction alone
+            return (n + 3) % 6;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,153 @@
+package computations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Records one game as a compact replay stream, a header followed by one record per player action.
+ * Numbers are unsigned LEB128 varints, so a typical ray takes 3-6 bytes:
+ * <pre>
+ *   HEADER [i32 magic "BBRP"][u8 version][u8 source][i64 seed][i64 atom layout][u8 atoms]
+ *   RAY    [1][entry][exit + 1, 0 if absorbed][marker colour rgb + 1, only for rays that pass through, 0 if none was picked]
+ *   GUESS  [2][box number][1 if correct else 0]
+ *   END    [3][score][name length][utf-8 name]
+ * </pre>
+ * The layout is stored as well as the seed so games from puzzle packs replay without the pack.
+ */
+public class ReplayWriter {
+    public static final int MAGIC = 0x42425250; // "BBRP"
+    public static final byte VERSION = 1;
+    public static final int SOURCE_SEED = 0; // layout was drawn from the seed by GameSeed.randomLayout
+    public static final int SOURCE_PACK = 1; // layout was picked from a puzzle pack
+    public static final int SOURCE_HARD = 2; // layout was searched for by HardSetter, which depends on timing so only the layout is reproducible
+    public static final int HEADER_SIZE = 23;
+    public static final byte RAY = 1;
+    public static final byte GUESS = 2;
+    public static final byte END = 3;
+    public static final int NO_COLOUR = -1;
+
+    private final Bytes bytes = new Bytes();
+    private final long seed;
+
+    public ReplayWriter(long seed, long atoms, int numAtoms, int source) {
+        this.seed = seed;
+        writeInt(MAGIC);
+        bytes.write(VERSION);
+        bytes.write(source);
+        writeLong(seed);
+        writeLong(atoms);
+        bytes.write(numAtoms);
+    }
+
+    public synchronized void rayFired(int entry, int exit, int colourRgb) {
+        bytes.write(RAY);
+        writeVarint(entry);
+        writeVarint(exit == RayTracer.ABSORBED ? 0 : exit + 1);
+        if (exit != RayTracer.ABSORBED && exit != entry) writeVarint(colourRgb == NO_COLOUR ? 0 : (colourRgb & 0xFFFFFF) + 1);
+    }
+
+    public synchronized void guessMade(int boxNumber, boolean correct) {
+        bytes.write(GUESS);
+        writeVarint(boxNumber);
+        bytes.write(correct ? 1 : 0);
+    }
+
+    public synchronized void gameEnded(int score, String playerName) {
+        bytes.write(END);
+        writeVarint(score);
+        byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+        writeVarint(name.length);
+        bytes.writeBytes(name);
+    }
+
+    /**
+     * @return Bytes written so far, a point setSize can come back to
+     */
+    public synchronized int size() {
+        return bytes.size();
+    }
+
+    /**
+     * Goes back to an earlier size, dropping the actions since, or forward again to a size it had provided nothing was written since going back.
+     * Used by undo and redo in practice games.
+     */
+    public synchronized void setSize(int size) {
+        bytes.setSize(size);
+    }
+
+    /**
+     * @return A copy of the bytes from an offset to the end, the actions written since size() was that offset
+     */
+    public synchronized byte[] bytesFrom(int offset) {
+        return Arrays.copyOfRange(bytes.buffer(), offset, bytes.size());
+    }
+
+    public synchronized byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Writes the replay to replayDirectory/seed.bbr
+     * @return The file written
+     */
+    public Path save(Path replayDirectory) throws IOException {
+        Files.createDirectories(replayDirectory);
+        Path file = replayDirectory.resolve(Long.toHexString(seed) + ".bbr");
+        Path temp = Files.createTempFile(replayDirectory, "replay", ".tmp");
+        try {
+            Files.write(temp, toByteArray());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+
+    /**
+     * @return Directory replays are saved to, -Dblackbox.replays or "replays"
+     */
+    public static Path replayDirectory() {
+        return Path.of(System.getProperty("blackbox.replays", "replays"));
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+    }
+
+    private void writeInt(int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) bytes.write(value >>> shift);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    // a byte stream that keeps what's past its size, so it can be moved back and forth
+    private static class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(64);
+        }
+
+        void setSize(int size) {
+            count = size;
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
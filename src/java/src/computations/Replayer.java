@@ -0,0 +1,266 @@
+package computations;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Replays games recorded by ReplayWriter without any windows, tracing every ray again with RayTracer.
+ * Each replay is checked against the rules (layout matches its seed, rays exit where they were recorded,
+ * no entry is used twice, guesses are marked correctly, the recorded score adds up) and rescored with any scoring rule,
+ * so old games can be reprocessed when the scoring changes.
+ */
+public class Replayer {
+    private final RayTracer tracer;
+    private final ScoringRule scoringRule;
+
+    /**
+     * Turns a finished game's counts into a score (lower is better)
+     */
+    public interface ScoringRule {
+        int score(int markersUsed, int incorrectGuesses, int raysFired);
+    }
+
+    public static final ScoringRule STANDARD_SCORING = (markersUsed, incorrectGuesses, raysFired) -> markersUsed + incorrectGuesses * 5; // same as Game.getScore
+
+    /**
+     * What a replay contained, and the first rule it broke if it isn't valid
+     */
+    public static class Result {
+        private long seed;
+        private long atoms;
+        private int raysFired;
+        private int markersUsed;
+        private int guesses;
+        private int incorrectGuesses;
+        private int actions;
+        private int recordedScore = -1;
+        private int score;
+        private String playerName;
+        private String problem;
+        private int source;
+        private final int[] rayEntries = new int[RayTracer.NUM_EXITS]; // in the order they were fired
+        private final int[] rayColours = new int[RayTracer.NUM_EXITS];
+        private final int[] guessedBoxes = new int[RayTracer.NUM_CELLS];
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public long getAtoms() {
+            return atoms;
+        }
+
+        public int getRaysFired() {
+            return raysFired;
+        }
+
+        public int getMarkersUsed() {
+            return markersUsed;
+        }
+
+        public int getGuesses() {
+            return guesses;
+        }
+
+        public int getIncorrectGuesses() {
+            return incorrectGuesses;
+        }
+
+        public int getActions() {
+            return actions;
+        }
+
+        /**
+         * @return The score saved when the game ended, or -1 if the game wasn't finished
+         */
+        public int getRecordedScore() {
+            return recordedScore;
+        }
+
+        /**
+         * @return The score under the replayer's scoring rule
+         */
+        public int getScore() {
+            return score;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        /**
+         * @return ReplayWriter.SOURCE_SEED, SOURCE_PACK or SOURCE_HARD
+         */
+        public int getSource() {
+            return source;
+        }
+
+        /**
+         * @return Entry of the i'th ray fired
+         */
+        public int getRayEntry(int i) {
+            return rayEntries[i];
+        }
+
+        /**
+         * @return RGB (without alpha) of the markers picked for the i'th ray, or ReplayWriter.NO_COLOUR if it has none or none was picked
+         */
+        public int getRayColour(int i) {
+            return rayColours[i];
+        }
+
+        /**
+         * @return Box number of the i'th guess
+         */
+        public int getGuessedBox(int i) {
+            return guessedBoxes[i];
+        }
+
+        public boolean isFinished() {
+            return recordedScore >= 0;
+        }
+
+        public boolean isValid() {
+            return problem == null;
+        }
+
+        public String getProblem() {
+            return problem;
+        }
+    }
+
+    public Replayer() {
+        this(RayTracer.getInstance(), STANDARD_SCORING);
+    }
+
+    public Replayer(RayTracer tracer, ScoringRule scoringRule) {
+        this.tracer = tracer;
+        this.scoringRule = scoringRule;
+    }
+
+    public Result replay(byte[] replay) {
+        return replay(ByteBuffer.wrap(replay));
+    }
+
+    public Result replay(ByteBuffer replay) {
+        ByteBuffer buffer = replay.slice().order(ByteOrder.BIG_ENDIAN);
+        Result result = new Result();
+        try {
+            if (buffer.remaining() < ReplayWriter.HEADER_SIZE || buffer.getInt() != ReplayWriter.MAGIC) return fail(result, "Not a replay");
+            if (buffer.get() != ReplayWriter.VERSION) return fail(result, "Unsupported replay version");
+            int source = buffer.get();
+            result.source = source;
+            result.seed = buffer.getLong();
+            result.atoms = buffer.getLong();
+            int numAtoms = buffer.get() & 0xFF;
+            if (Long.bitCount(result.atoms) != numAtoms) return fail(result, "Layout doesn't have " + numAtoms + " atoms");
+            if (source == ReplayWriter.SOURCE_SEED && new GameSeed(result.seed).randomLayout(numAtoms) != result.atoms) return fail(result, "Layout doesn't match the seed");
+
+            long usedEntries = 0; // entries and exits can only be shot from once
+            long guessedBoxes = 0;
+            while (buffer.hasRemaining()) {
+                byte tag = buffer.get();
+                result.actions++;
+                if (tag == ReplayWriter.RAY) {
+                    if (result.guesses > 0 || result.isFinished()) return fail(result, "Ray fired after guessing started");
+                    int entry = readVarint(buffer);
+                    int recordedExit = readVarint(buffer) - 1;
+                    if (entry < 1 || entry > RayTracer.NUM_EXITS) return fail(result, "Entry " + entry + " doesn't exist");
+                    if ((usedEntries >>> entry & 1L) != 0) return fail(result, "Entry " + entry + " was already used");
+                    int exit = tracer.trace(result.atoms, entry);
+                    if (exit != recordedExit) return fail(result, "Ray from " + entry + " should leave at " + exit + " not " + recordedExit);
+                    usedEntries |= 1L << entry;
+                    result.rayEntries[result.raysFired] = entry;
+                    result.rayColours[result.raysFired] = ReplayWriter.NO_COLOUR;
+                    result.raysFired++;
+                    if (exit == RayTracer.ABSORBED || exit == entry) {
+                        result.markersUsed++;
+                    } else {
+                        int colour = readVarint(buffer); // only used for drawing
+                        if (colour != 0) result.rayColours[result.raysFired - 1] = colour - 1;
+                        usedEntries |= 1L << exit;
+                        result.markersUsed += 2;
+                    }
+                } else if (tag == ReplayWriter.GUESS) {
+                    if (result.isFinished()) return fail(result, "Guess made after the game ended");
+                    int boxNumber = readVarint(buffer);
+                    boolean recordedCorrect = buffer.get() != 0;
+                    if (boxNumber < 1 || boxNumber > RayTracer.NUM_CELLS) return fail(result, "Box " + boxNumber + " doesn't exist");
+                    if ((guessedBoxes >>> (boxNumber - 1) & 1L) != 0) return fail(result, "Box " + boxNumber + " was guessed twice");
+                    if (++result.guesses > numAtoms) return fail(result, "More guesses than atoms");
+                    guessedBoxes |= 1L << (boxNumber - 1);
+                    result.guessedBoxes[result.guesses - 1] = boxNumber;
+                    boolean correct = RayTracer.hasAtom(result.atoms, boxNumber - 1);
+                    if (correct != recordedCorrect) return fail(result, "Guess " + boxNumber + " was marked wrongly");
+                    if (!correct) result.incorrectGuesses++;
+                } else if (tag == ReplayWriter.END) {
+                    if (result.isFinished()) return fail(result, "Game ended twice");
+                    result.recordedScore = readVarint(buffer);
+                    byte[] name = new byte[readVarint(buffer)];
+                    buffer.get(name);
+                    result.playerName = new String(name, StandardCharsets.UTF_8);
+                    int standardScore = STANDARD_SCORING.score(result.markersUsed, result.incorrectGuesses, result.raysFired);
+                    if (result.recordedScore != standardScore) return fail(result, "Recorded score " + result.recordedScore + " should be " + standardScore);
+                } else {
+                    return fail(result, "Unknown action " + tag);
+                }
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return fail(result, "Replay is truncated");
+        }
+        result.score = scoringRule.score(result.markersUsed, result.incorrectGuesses, result.raysFired);
+        return result;
+    }
+
+    /**
+     * Replays every .bbr file in a directory in parallel
+     */
+    public List<Result> replayDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".bbr")).toList().parallelStream().map(file -> {
+                try {
+                    return replay(Files.readAllBytes(file));
+                } catch (IOException e) {
+                    Result result = new Result();
+                    return fail(result, "Could not read " + file + ": " + e.getMessage());
+                }
+            }).toList();
+        }
+    }
+
+    private static Result fail(Result result, String problem) {
+        result.problem = problem;
+        return result;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new BufferUnderflowException(); // more than 5 bytes can't be an int, treat it as a damaged replay
+    }
+
+    /**
+     * Checks and rescores a directory of replays: Replayer replays/
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = args.length > 0 ? Path.of(args[0]) : ReplayWriter.replayDirectory();
+        long start = System.nanoTime();
+        List<Result> results = new Replayer().replayDirectory(directory);
+        long elapsed = System.nanoTime() - start;
+        long actions = results.stream().mapToLong(Result::getActions).sum();
+        long invalid = results.stream().filter(result -> !result.isValid()).count();
+        for (Result result : results) if (!result.isValid()) System.out.println(Long.toHexString(result.getSeed()) + ": " + result.getProblem());
+        System.out.printf("Replayed %d games (%d actions, %d invalid) in %.2fs%n", results.size(), actions, invalid, elapsed / 1e9);
+    }
+}
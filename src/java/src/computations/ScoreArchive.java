@@ -0,0 +1,288 @@
+package computations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of the binary score history (scores.bin).
+ * The file is an 8 byte header followed by a stream of records:
+ * <pre>
+ *   NAME  [1][u16 length][utf-8 bytes]    gives the next player id (0, 1, 2, ...)
+ *   SCORE [2][i32 player id][i32 score]
+ * </pre>
+ * A player's name is only written the first time they appear, so every score after that is a fixed 9 byte record.
+ * The file is memory-mapped and walked in place, and names are only decoded when they're actually asked for.
+ * A mapping is only released when the garbage collector gets round to it, and on Windows a live mapping stops the file being renamed over
+ * or truncated, so ScoreWriter reads the archive into the heap (read, readTail) wherever it's about to do either.
+ */
+public class ScoreArchive {
+    public static final int MAGIC = 0x42425343; // "BBSC"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final byte NAME_RECORD = 1;
+    public static final byte SCORE_RECORD = 2;
+    public static final int SCORE_RECORD_SIZE = 9;
+    public static final int NO_SCORE = Integer.MIN_VALUE; // marks a player id that never got a score
+
+    private static final ScoreArchive EMPTY = new ScoreArchive(emptyFile());
+
+    private final ByteBuffer buffer;
+    private int[] nameOffsets = new int[16]; // position of each name's length field
+    private int nameCount = 0;
+    private long scoreCount = 0;
+    private int validLength = HEADER_SIZE; // end of the last complete record
+
+    /**
+     * Visits a single score record without creating any objects for it
+     */
+    public interface ScoreVisitor {
+        void visit(int playerId, int score);
+    }
+
+    ScoreArchive(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        checkHeader(this.buffer);
+        indexNames();
+    }
+
+    /**
+     * Maps an archive file into memory, an archive that doesn't exist yet reads as empty
+     */
+    public static ScoreArchive open(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) return EMPTY;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // mappings outlive the channel, and a single buffer covers ~238 million scores
+            return new ScoreArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Copies an archive file into the heap instead of mapping it, so nothing holds on to the file once this returns
+     */
+    public static ScoreArchive read(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) return EMPTY;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ScoreArchive(read(channel, 0, ByteBuffer.allocate(size(channel, 0))));
+        }
+    }
+
+    /**
+     * Reads only the records from a position onwards, such as the ones another process appended since the file was last read.
+     * Names in the result are numbered from 0 and valid lengths count from HEADER_SIZE, as if the records started a file of their own.
+     * @param from Where a record starts, at or after HEADER_SIZE
+     */
+    public static ScoreArchive readTail(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size(channel, from)).put(emptyFile());
+        return new ScoreArchive(read(channel, from, buffer));
+    }
+
+    private static int size(FileChannel channel, long from) throws IOException {
+        long size = channel.size() - from;
+        if (size > Integer.MAX_VALUE - HEADER_SIZE) throw new IOException("Score archive is too large: " + size + " bytes");
+        return (int) Math.max(0, size);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break; // shortened since size(), it just reads as shorter
+            position += read;
+        }
+        return buffer.flip();
+    }
+
+    // one pass to find where each name starts, score records are skipped over without being read
+    private void indexNames() {
+        int position = HEADER_SIZE;
+        int limit = buffer.limit();
+        while (position < limit) {
+            byte tag = buffer.get(position);
+            if (tag == SCORE_RECORD) {
+                if (position + SCORE_RECORD_SIZE > limit) break; // torn final record from a crash mid-write
+                scoreCount++;
+                position += SCORE_RECORD_SIZE;
+            } else if (tag == NAME_RECORD) {
+                if (position + 3 > limit) break;
+                int length = buffer.getShort(position + 1) & 0xFFFF;
+                if (position + 3 + length > limit) break;
+                if (nameCount == nameOffsets.length) nameOffsets = Arrays.copyOf(nameOffsets, nameCount * 2);
+                nameOffsets[nameCount++] = position + 1;
+                position += 3 + length;
+            } else {
+                throw new IllegalStateException("Corrupted score archive at byte " + position);
+            }
+        }
+        validLength = position;
+    }
+
+    public void forEachScore(ScoreVisitor visitor) {
+        int position = HEADER_SIZE;
+        int limit = buffer.limit();
+        while (position < limit) {
+            byte tag = buffer.get(position);
+            if (tag == SCORE_RECORD) {
+                if (position + SCORE_RECORD_SIZE > limit) return;
+                visitor.visit(buffer.getInt(position + 1), buffer.getInt(position + 5));
+                position += SCORE_RECORD_SIZE;
+            } else {
+                if (position + 3 > limit) return;
+                position += 3 + (buffer.getShort(position + 1) & 0xFFFF);
+            }
+        }
+    }
+
+    public int getValidLength() {
+        return validLength;
+    }
+
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    public long getScoreCount() {
+        return scoreCount;
+    }
+
+    public String getName(int playerId) {
+        int offset = nameOffsets[playerId];
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The latest score for every player id, or NO_SCORE for players who don't have one
+     */
+    public int[] latestScores() {
+        int[] latest = new int[nameCount];
+        Arrays.fill(latest, NO_SCORE);
+        forEachScore((playerId, score) -> latest[playerId] = score);
+        return latest;
+    }
+
+    /**
+     * Each player's latest score from lowest to highest, ties kept in the order players first appeared (same as the old text file).
+     * Only the names that make it into the result are decoded.
+     * @param limit Maximum number of entries to return
+     */
+    public List<Map.Entry<String, Integer>> rankedScores(int limit) {
+        int[] latest = latestScores();
+        long[] keys = new long[nameCount];
+        int numRanked = 0;
+        for (int playerId = 0; playerId < nameCount; playerId++) {
+            // score in the high half and id in the low half, so sorting the longs sorts by score then by first appearance
+            if (latest[playerId] != NO_SCORE) keys[numRanked++] = ((long) latest[playerId] << 32) | playerId;
+        }
+        Arrays.sort(keys, 0, numRanked);
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, numRanked); i++) {
+            int playerId = (int) keys[i];
+            ranked.add(new AbstractMap.SimpleEntry<>(getName(playerId), latest[playerId]));
+        }
+        return ranked;
+    }
+
+    public List<Map.Entry<String, Integer>> rankedScores() {
+        return rankedScores(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encodes a whole archive holding the given scores in order
+     */
+    public static byte[] encode(List<Map.Entry<String, Integer>> scores) {
+        Encoder encoder = new Encoder();
+        encoder.bytes.writeBytes(emptyFile().array());
+        for (Map.Entry<String, Integer> entry : scores) encoder.add(entry.getKey(), entry.getValue());
+        return encoder.bytes.toByteArray();
+    }
+
+    /**
+     * Reads an old scores.txt ("name,score" per line) into score entries, skipping lines that don't parse
+     */
+    public static List<Map.Entry<String, Integer>> parseText(List<String> lines) {
+        List<Map.Entry<String, Integer>> scores = new ArrayList<>();
+        for (String line : lines) {
+            String[] column = line.split(",");
+            if (column.length != 2) continue;
+            try {
+                scores.add(new AbstractMap.SimpleEntry<>(column[0], Integer.parseInt(column[1].trim())));
+            } catch (NumberFormatException ignored) {
+                // a damaged line shouldn't stop the rest of the history from migrating
+            }
+        }
+        return scores;
+    }
+
+    private static ByteBuffer emptyFile() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+        return header;
+    }
+
+    private static void checkHeader(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IllegalStateException("Not a score archive");
+        if (buffer.getShort(4) != VERSION) throw new IllegalStateException("Unsupported score archive version " + buffer.getShort(4));
+    }
+
+    /**
+     * Builds the records for new scores, interning each player name so it's only ever written once
+     */
+    static class Encoder {
+        private final HashMap<String, Integer> playerIds = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        void add(String name, int score) {
+            Integer playerId = playerIds.get(name);
+            if (playerId == null) {
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                if (nameBytes.length > 0xFFFF) throw new IllegalArgumentException("Player name is too long");
+                playerId = playerIds.size();
+                playerIds.put(name, playerId);
+                bytes.write(NAME_RECORD);
+                bytes.write(nameBytes.length >>> 8);
+                bytes.write(nameBytes.length);
+                bytes.writeBytes(nameBytes);
+            }
+            ByteBuffer record = ByteBuffer.allocate(SCORE_RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+            record.put(SCORE_RECORD).putInt(playerId).putInt(score);
+            bytes.writeBytes(record.array());
+        }
+
+        // picks up names already in the file (possibly written by another process) so they aren't defined twice
+        void learnNames(ScoreArchive archive) {
+            for (int playerId = playerIds.size(); playerId < archive.getNameCount(); playerId++) {
+                playerIds.put(archive.getName(playerId), playerId);
+            }
+        }
+
+        // picks up names from records read with readTail, which come after every name already known
+        void learnTailNames(ScoreArchive tail) {
+            for (int i = 0; i < tail.getNameCount(); i++) playerIds.put(tail.getName(i), playerIds.size());
+        }
+
+        void reset() {
+            playerIds.clear();
+            bytes.reset();
+        }
+
+        byte[] drain() {
+            byte[] pending = bytes.toByteArray();
+            bytes.reset();
+            return pending;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package computations;
+
+import diagnostics.LatencyHistogram;
+import diagnostics.LeaderboardIOEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single writer for the score history.
+ * Every read and write is queued and handled in order by one background thread, so a JVM only ever touches the file from one place.
+ * Appends that pile up while the disk is busy are written and fsynced together as one group commit.
+ * A lock file next to the scores file keeps several JVMs (e.g. on a shared kiosk) from writing at the same time,
+ * and whole-file rewrites go through a temp file that is atomically renamed over the original.
+ * Scores are kept in the binary {@link ScoreArchive} format; an old scores.txt is migrated into it the first time it's opened.
+ */
+public class ScoreWriter {
+    // file locks belong to the whole JVM, so writers on the same file inside one JVM also have to take turns
+    private static final ConcurrentHashMap<Path, Object> fileMonitors = new ConcurrentHashMap<>();
+    private static final int MAX_BATCH = 4096;
+
+    private final Path archiveFile;
+    private final Path textFile; // legacy text scores, migrated once and then only used as a human-readable export
+    private final Path lockFile;
+    private final Object fileMonitor;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    // the writer thread's picture of the archive, re-learned whenever another process has changed the file
+    private final ScoreArchive.Encoder encoder = new ScoreArchive.Encoder();
+    private Object knownFileKey = null;
+    private FileTime knownModified = null; // for telling the file apart on file systems without file keys
+    private long knownSize = -1;
+    private boolean migrated = false;
+
+    private volatile long groupCommits = 0; // only written by the writer thread
+    private volatile long appendsWritten = 0;
+    private final EnumMap<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class); // queue wait + disk time, as the caller sees it
+
+    private ScoreWriter(Path archiveFile, Path textFile) {
+        this.archiveFile = archiveFile.toAbsolutePath().normalize();
+        this.textFile = textFile.toAbsolutePath().normalize();
+        this.lockFile = this.archiveFile.resolveSibling(this.archiveFile.getFileName() + ".lock");
+        this.fileMonitor = fileMonitors.computeIfAbsent(lockFile, p -> new Object());
+        for (Kind kind : Kind.values()) latencies.put(kind, new LatencyHistogram("score " + kind.name().toLowerCase()));
+
+        writerThread = new Thread(this::runWriter, "score-writer");
+        writerThread.setDaemon(true); // the shutdown hook drains the queue, so the thread itself never keeps the game alive
+        writerThread.start();
+    }
+
+    /**
+     * Starts a writer for a scores file, which drains its queue when the JVM shuts down
+     * @param textFile Legacy text scores, migrated into the archive the first time it's opened
+     */
+    public static ScoreWriter open(Path archiveFile, Path textFile) {
+        ScoreWriter writer = new ScoreWriter(archiveFile, textFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "score-writer-shutdown"));
+        return writer;
+    }
+
+    public static ScoreWriter getInstance() {
+        return DefaultWriter.instance;
+    }
+
+    public Path getArchiveFile() {
+        return archiveFile;
+    }
+
+    /**
+     * Queues a score to be appended to the history
+     * @return A future that completes once the record has been fsynced to disk
+     */
+    public CompletableFuture<Void> append(String name, int score) {
+        Request request = new Request(Kind.APPEND, name, score, null, null, null);
+        submit(request);
+        return request.result;
+    }
+
+    /**
+     * Queues a read of the archive, taken under a shared lock and ordered after every earlier append from this JVM
+     * @param reader Function given a memory-mapped view of the archive
+     * @return A future holding whatever the reader returned
+     */
+    public <T> CompletableFuture<T> read(Function<ScoreArchive, T> reader) {
+        AtomicReference<T> value = new AtomicReference<>();
+        Request request = new Request(Kind.READ, null, 0, archive -> value.set(reader.apply(archive)), null, null);
+        submit(request);
+        return request.result.thenApply(ignored -> value.get());
+    }
+
+    /**
+     * Queues a rewrite of the whole archive, taken under an exclusive lock so nothing can slip in between reading and replacing it
+     * @param transform Given the current archive, returns the scores the new archive should hold (or null to leave it alone)
+     * @return A future that completes once the new file has been renamed into place
+     */
+    public CompletableFuture<Void> rewrite(Function<ScoreArchive, List<Map.Entry<String, Integer>>> transform) {
+        Request request = new Request(Kind.REWRITE, null, 0, null, transform, null);
+        submit(request);
+        return request.result;
+    }
+
+    /**
+     * Queues a replacement of the human-readable scores.txt export
+     */
+    public CompletableFuture<Void> exportText(List<String> lines) {
+        Request request = new Request(Kind.EXPORT, null, 0, null, null, List.copyOf(lines));
+        submit(request);
+        return request.result;
+    }
+
+    /**
+     * Blocks until everything queued before this call has reached the disk
+     */
+    public void flush() {
+        read(archive -> null).join();
+    }
+
+    /**
+     * Stops accepting work and waits for the queue to drain
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        queue.add(Request.STOP);
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getGroupCommits() {
+        return groupCommits;
+    }
+
+    public long getAppendsWritten() {
+        return appendsWritten;
+    }
+
+    public LatencyHistogram getAppendLatency() {
+        return latencies.get(Kind.APPEND);
+    }
+
+    public LatencyHistogram getReadLatency() {
+        return latencies.get(Kind.READ);
+    }
+
+    public LatencyHistogram getRewriteLatency() {
+        return latencies.get(Kind.REWRITE);
+    }
+
+    public LatencyHistogram getExportLatency() {
+        return latencies.get(Kind.EXPORT);
+    }
+
+    private void submit(Request request) {
+        if (closed) {
+            request.result.completeExceptionally(new IllegalStateException("Score writer has been closed"));
+            return;
+        }
+        long submittedAt = System.nanoTime();
+        LatencyHistogram latency = latencies.get(request.kind);
+        request.result.whenComplete((value, e) -> latency.recordSince(submittedAt));
+        queue.add(request);
+    }
+
+    private void runWriter() {
+        List<Request> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // only close() stops the writer, so anything queued is never dropped
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            if (batch.contains(Request.STOP)) {
+                stopping = true;
+                queue.drainTo(batch); // late requests still get written
+                batch.remove(Request.STOP);
+            }
+            processBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void processBatch(List<Request> batch) {
+        // the first batch may need to migrate scores.txt, so it always takes the exclusive lock
+        boolean shared = migrated && batch.stream().allMatch(r -> r.kind == Kind.READ);
+        synchronized (fileMonitor) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, shared); // released when the channel closes, or below
+                if (!shared) migrateTextScores();
+                List<Request> pendingAppends = new ArrayList<>();
+                for (Request request : batch) {
+                    if (request.kind == Kind.APPEND) {
+                        pendingAppends.add(request);
+                        continue;
+                    }
+                    commitAppends(pendingAppends); // keep the order the requests were queued in
+                    try {
+                        run(request);
+                        request.result.complete(null);
+                    } catch (Exception e) {
+                        request.result.completeExceptionally(e);
+                    }
+                }
+                commitAppends(pendingAppends);
+                lock.release();
+            } catch (IOException | RuntimeException e) {
+                for (Request request : batch) request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void run(Request request) throws IOException {
+        LeaderboardIOEvent event = new LeaderboardIOEvent();
+        event.begin();
+        long records;
+        switch (request.kind) {
+            case READ:
+                ScoreArchive archive = ScoreArchive.open(archiveFile);
+                request.reader.accept(archive);
+                records = archive.getScoreCount();
+                break;
+            case REWRITE:
+                List<Map.Entry<String, Integer>> scores = request.transform.apply(ScoreArchive.read(archiveFile)); // not mapped, it's about to be renamed over
+                if (scores != null) replaceFile(archiveFile, ScoreArchive.encode(scores));
+                records = scores == null ? 0 : scores.size();
+                break;
+            default:
+                StringBuilder stringBuilder = new StringBuilder();
+                for (String line : request.lines) stringBuilder.append(line).append('\n');
+                replaceFile(textFile, stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+                records = request.lines.size();
+        }
+        commitEvent(event, request.kind, records);
+    }
+
+    private static void commitEvent(LeaderboardIOEvent event, Kind kind, long records) {
+        if (event.shouldCommit()) {
+            event.operation = kind.name().toLowerCase();
+            event.records = records;
+            event.commit();
+        }
+    }
+
+    // one-time import of the old "name,score" text file, skipped as soon as an archive exists
+    private void migrateTextScores() throws IOException {
+        if (!Files.exists(archiveFile)) {
+            List<String> lines = Files.exists(textFile) ? Files.readAllLines(textFile, StandardCharsets.UTF_8) : List.of();
+            replaceFile(archiveFile, ScoreArchive.encode(ScoreArchive.parseText(lines)));
+        }
+        migrated = true;
+    }
+
+    // writes every queued append in one go and fsyncs once for the whole group
+    private void commitAppends(List<Request> appends) {
+        if (appends.isEmpty()) return;
+        LeaderboardIOEvent event = new LeaderboardIOEvent();
+        event.begin();
+        try (FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            catchUp(channel);
+            for (Request request : appends) encoder.add(request.name, request.score);
+            ByteBuffer buffer = ByteBuffer.wrap(encoder.drain());
+            long position = channel.size();
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            channel.force(true);
+            knownSize = position;
+            if (knownFileKey == null) knownModified = Files.getLastModifiedTime(archiveFile);
+            groupCommits++;
+            appendsWritten += appends.size();
+            commitEvent(event, Kind.APPEND, appends.size());
+            for (Request request : appends) request.result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            knownSize = -1; // whatever the encoder thinks it wrote can't be trusted now
+            for (Request request : appends) request.result.completeExceptionally(e);
+        }
+        appends.clear();
+    }
+
+    // re-learns the interned names if another process appended to or replaced the archive since our last commit.
+    // Read into the heap rather than mapped, since a torn record may have to be truncated.
+    private void catchUp(FileChannel channel) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(archiveFile, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        long size = channel.size();
+        // without a file key a replaced file can't be told from an appended one, but an unchanged size and time means nobody touched it
+        boolean sameFile = knownSize >= 0 && (fileKey != null ? fileKey.equals(knownFileKey) : attributes.lastModifiedTime().equals(knownModified));
+        if (sameFile && size == knownSize) return;
+        if (sameFile && size > knownSize) { // only appended to, so only the new records need reading
+            ScoreArchive tail = ScoreArchive.readTail(channel, knownSize);
+            long validLength = knownSize + tail.getValidLength() - ScoreArchive.HEADER_SIZE;
+            if (validLength < size) channel.truncate(validLength); // drop a torn record left by a crash
+            encoder.learnTailNames(tail);
+            return;
+        }
+        ScoreArchive archive = ScoreArchive.read(archiveFile);
+        if (archive.getValidLength() < size) channel.truncate(archive.getValidLength());
+        encoder.reset();
+        encoder.learnNames(archive);
+        knownFileKey = fileKey;
+    }
+
+    // writes the new contents next to the file and renames it over the original so readers never see half a file
+    private void replaceFile(Path file, byte[] contents) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(contents);
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (file.equals(archiveFile)) knownSize = -1; // the encoder has to re-learn names from the new file
+    }
+
+    private enum Kind { APPEND, READ, REWRITE, EXPORT }
+
+    // only started the first time the game actually touches the scores
+    private static final class DefaultWriter {
+        static final ScoreWriter instance = open(Path.of("scores.bin"), Path.of("scores.txt"));
+    }
+
+    private static final class Request {
+        static final Request STOP = new Request(Kind.READ, null, 0, null, null, null);
+
+        final Kind kind;
+        final String name; // appends only
+        final int score;
+        final Consumer<ScoreArchive> reader; // reads
+        final Function<ScoreArchive, List<Map.Entry<String, Integer>>> transform; // rewrites
+        final List<String> lines; // exports
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Request(Kind kind, String name, int score, Consumer<ScoreArchive> reader,
+                Function<ScoreArchive, List<Map.Entry<String, Integer>>> transform, List<String> lines) {
+            this.kind = kind;
+            this.name = name;
+            this.score = score;
+            this.reader = reader;
+            this.transform = transform;
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package computations;
+
+import java.util.Arrays;
+
+/**
+ * Hexagonal board of any size that only stores its atoms, for boards far too big for Board's linked nodes.
+ * Cells use axial coordinates (q, r): row r from -radius at the top to radius at the bottom, q increasing to the right,
+ * with sides numbered like Node.getSides (0 up-left, then clockwise).
+ * A box only changes a ray's direction if one of its neighbours holds an atom, so those boxes are kept in a sorted index
+ * for every line along each of the three axes. A ray jumps straight along its line to the next such box (or off the board),
+ * so tracing costs one lookup per deflection rather than one step per box.
+ * Deflections follow the same rules as Board.iterate, a radius 4 board gives the same results as the standard one.
+ */
+public class SparseHexBoard {
+    private static final int[] DQ = {0, 1, 1, 0, -1, -1};
+    private static final int[] DR = {-1, -1, 0, 1, 1, 0};
+    private static final int[] AXIS = {1, 2, 0, 1, 2, 0}; // 0: along a row, 1: r changes, 2: q and r change
+    private static final int[] STEP = {-1, 1, 1, 1, -1, -1}; // which way the position along the line moves
+    private static final int[] NONE = new int[0];
+
+    /**
+     * Where a ray ended up
+     */
+    public static class Trace {
+        private final int q;
+        private final int r;
+        private final int side;
+        private final boolean absorbed;
+        private final boolean looped;
+        private final int interactions;
+        private final long boxesPassed;
+
+        Trace(int q, int r, int side, boolean absorbed, boolean looped, int interactions, long boxesPassed) {
+            this.q = q;
+            this.r = r;
+            this.side = side;
+            this.absorbed = absorbed;
+            this.looped = looped;
+            this.interactions = interactions;
+            this.boxesPassed = boxesPassed;
+        }
+
+        /**
+         * @return The box the ray left the board from (or was absorbed in)
+         */
+        public int getQ() {
+            return q;
+        }
+
+        public int getR() {
+            return r;
+        }
+
+        /**
+         * @return The side of that box the ray left through, -1 if absorbed or looped
+         */
+        public int getSide() {
+            return side;
+        }
+
+        public boolean isAbsorbed() {
+            return absorbed;
+        }
+
+        public boolean isLooped() {
+            return looped;
+        }
+
+        /**
+         * @return Boxes next to an atom the ray passed through, each one a single lookup
+         */
+        public int getInteractions() {
+            return interactions;
+        }
+
+        /**
+         * @return Boxes the ray crossed, the cost of tracing it one box at a time
+         */
+        public long getBoxesPassed() {
+            return boxesPassed;
+        }
+    }
+
+    private final int radius;
+    private final LongHashSet atoms = new LongHashSet();
+    private final LongHashSet nearAtoms = new LongHashSet(); // boxes with at least one neighbouring atom
+    private final int[][][] lines = new int[3][][]; // lines[axis][line + radius] = sorted positions of boxes near an atom
+    private final int[][] lineSizes = new int[3][];
+
+    public SparseHexBoard(int radius) {
+        this.radius = radius;
+        for (int axis = 0; axis < 3; axis++) {
+            lines[axis] = new int[2 * radius + 1][];
+            Arrays.fill(lines[axis], NONE);
+            lineSizes[axis] = new int[2 * radius + 1];
+        }
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return Number of boxes on the board
+     */
+    public long getNumCells() {
+        return 3L * radius * (radius + 1) + 1;
+    }
+
+    public int getNumAtoms() {
+        return atoms.size();
+    }
+
+    public boolean isOnBoard(int q, int r) {
+        return Math.abs(q) <= radius && Math.abs(r) <= radius && Math.abs(q + r) <= radius;
+    }
+
+    public boolean hasAtom(int q, int r) {
+        return atoms.contains(key(q, r));
+    }
+
+    /**
+     * @return False if there was already an atom there
+     */
+    public boolean addAtom(int q, int r) {
+        if (!isOnBoard(q, r)) throw new IllegalArgumentException("(" + q + ", " + r + ") isn't on a board of radius " + radius);
+        if (!atoms.add(key(q, r))) return false;
+        for (int side = 0; side < 6; side++) {
+            int nq = q + DQ[side], nr = r + DR[side];
+            if (isOnBoard(nq, nr) && nearAtoms.add(key(nq, nr))) index(nq, nr, true);
+        }
+        return true;
+    }
+
+    /**
+     * @return False if there wasn't an atom there
+     */
+    public boolean removeAtom(int q, int r) {
+        if (!atoms.remove(key(q, r))) return false;
+        for (int side = 0; side < 6; side++) {
+            int nq = q + DQ[side], nr = r + DR[side];
+            if (isOnBoard(nq, nr) && atomSides(nq, nr) == 0 && nearAtoms.remove(key(nq, nr))) index(nq, nr, false);
+        }
+        return true;
+    }
+
+    /**
+     * Shoots a ray into a box from outside the board
+     * @param direction Side (0-5) the ray is heading towards as it enters
+     */
+    public Trace trace(int q, int r, int direction) {
+        if (!isOnBoard(q, r)) throw new IllegalArgumentException("(" + q + ", " + r + ") isn't on a board of radius " + radius);
+        if (hasAtom(q, r)) return new Trace(q, r, -1, true, false, 0, 1);
+        int n = direction;
+        int interactions = 0;
+        long boxesPassed = 1;
+        long maxInteractions = 6L * nearAtoms.size() + 1; // more than that and the ray has been in the same box heading the same way twice
+        while (true) {
+            if (!nearAtoms.contains(key(q, r))) { // nothing can turn the ray until the next box near an atom
+                int axis = AXIS[n];
+                int line = line(axis, q, r);
+                int position = position(axis, q, r);
+                int next = nextOnLine(axis, line, position, STEP[n]);
+                boolean leaves = next == Integer.MIN_VALUE;
+                if (leaves) next = STEP[n] > 0 ? Math.min(radius, radius - line) : Math.max(-radius, -radius - line);
+                boxesPassed += Math.abs(next - position);
+                q = axis == 1 ? line : next;
+                r = axis == 0 ? line : axis == 1 ? next : -next - line;
+                if (leaves) return new Trace(q, r, n, false, false, interactions, boxesPassed);
+                continue;
+            }
+            if (++interactions > maxInteractions) return new Trace(q, r, -1, false, true, interactions, boxesPassed);
+            n = RayTracer.deflect(atomSides(q, r), n);
+            if (n < 0) return new Trace(q, r, -1, true, false, interactions, boxesPassed);
+            if (!isOnBoard(q + DQ[n], r + DR[n])) return new Trace(q, r, n, false, false, interactions, boxesPassed);
+            q += DQ[n];
+            r += DR[n];
+            boxesPassed++;
+        }
+    }
+
+    // the same mask of neighbouring atoms as RayTracer.turn works from
+    private int atomSides(int q, int r) {
+        int sides = 0;
+        for (int side = 0; side < 6; side++) if (atoms.contains(key(q + DQ[side], r + DR[side]))) sides |= 1 << side;
+        return sides;
+    }
+
+    // the position of the next box near an atom along the line, or MIN_VALUE if there isn't one before the edge
+    private int nextOnLine(int axis, int line, int position, int step) {
+        int[] positions = lines[axis][line + radius];
+        int size = lineSizes[axis][line + radius];
+        int found = Arrays.binarySearch(positions, 0, size, position);
+        int next = found >= 0 ? found + step : step > 0 ? -found - 1 : -found - 2;
+        return next >= 0 && next < size ? positions[next] : Integer.MIN_VALUE;
+    }
+
+    private void index(int q, int r, boolean add) {
+        for (int axis = 0; axis < 3; axis++) {
+            int line = line(axis, q, r) + radius;
+            int position = position(axis, q, r);
+            int[] positions = lines[axis][line];
+            int size = lineSizes[axis][line];
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (add) {
+                at = -at - 1;
+                if (size == positions.length) positions = lines[axis][line] = Arrays.copyOf(positions, Math.max(4, size * 2));
+                System.arraycopy(positions, at, positions, at + 1, size - at);
+                positions[at] = position;
+                lineSizes[axis][line]++;
+            } else {
+                System.arraycopy(positions, at + 1, positions, at, size - at - 1);
+                lineSizes[axis][line]--;
+            }
+        }
+    }
+
+    // which line of the axis the box is on: its row, its q, or -(q + r)
+    private static int line(int axis, int q, int r) {
+        return axis == 0 ? r : axis == 1 ? q : -q - r;
+    }
+
+    // where the box is along that line
+    private static int position(int axis, int q, int r) {
+        return axis == 1 ? r : q;
+    }
+
+    private static long key(int q, int r) {
+        return (long) q << 32 | (r & 0xFFFFFFFFL);
+    }
+}
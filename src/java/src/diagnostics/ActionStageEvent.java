@@ -0,0 +1,30 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for one stage of a player's action, from the stage before it finished to this one finishing
+ */
+@Name("blackbox.ActionStage")
+@Label("Action Stage")
+@Category({"Blackbox", "Latency"})
+@Description("One step between a player's input and the frame that shows it")
+@Enabled(false)
+@StackTrace(false)
+public class ActionStageEvent extends Event {
+    @Label("Action Id")
+    @Description("The blackbox.PlayerAction this stage belongs to")
+    public long actionId;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Stage")
+    @Description("What had just finished when the stage ended")
+    public String stage;
+
+    @Label("Player Wait")
+    @Description("Time within the stage spent waiting on the player in dialogs")
+    @Timespan(Timespan.NANOSECONDS)
+    public long playerWait;
+}
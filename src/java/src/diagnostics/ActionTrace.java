@@ -0,0 +1,146 @@
+package diagnostics;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times a player's action from the input arriving to the first frame painted after it was handled, stage by stage.
+ * Code along the way marks a stage when it finishes (the input validated, the ray traced, ...), and the time since the stage before
+ * is recorded in a histogram per action and stage, "shootRay.traced" for example, exported over JMX with the rest of Metrics.
+ * The whole action goes into "shootRay.response" and is also a blackbox.PlayerAction JFR event, with each stage a blackbox.ActionStage
+ * event carrying the same id, so a recording shows every action as a span with its stages under it.
+ * Time in dialogs waiting on the player (the marker colour, an error message) is timed separately and left out of the response,
+ * which is the part the game is responsible for.
+ * Everything is on the Event Dispatch Thread, so none of it is synchronised.
+ */
+public class ActionTrace {
+    public static final String SHOOT_RAY = "shootRay";
+    public static final String GUESS = "guess";
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ArrayList<ActionTrace> pending = new ArrayList<>(); // handled, waiting for a paint
+    private static ActionTrace current; // being handled, the one stages are marked on
+    private static long nextId = 1;
+
+    private final long id;
+    private final String action;
+    private final long start;
+    private long stageStart;
+    private long waitStart = 0; // set while a dialog is open
+    private long stageWait = 0;
+    private long playerWait = 0;
+    private final PlayerActionEvent event = new PlayerActionEvent();
+    private ActionStageEvent stageEvent = new ActionStageEvent();
+
+    private ActionTrace(String action, long start) {
+        this.id = nextId++;
+        this.action = action;
+        this.start = start;
+        this.stageStart = start;
+        event.begin();
+        stageEvent.begin();
+    }
+
+    /**
+     * Starts timing an action, call first thing in the input's listener
+     * @param action What the player did, SHOOT_RAY or GUESS
+     * @param eventWhen The input event's getWhen(), so the time it spent queued before the listener ran is counted as well (to the millisecond)
+     */
+    public static void begin(String action, long eventWhen) {
+        long now = System.nanoTime();
+        long queued = Math.max(0, System.currentTimeMillis() - eventWhen) * 1_000_000L;
+        if (queued > 1_000_000_000L) queued = 0; // an event made up by the code, or a clock change, rather than a real wait
+        if (current != null) handled(); // an action that never said it was done
+        current = new ActionTrace(action, now - queued);
+        current.mark("queued", now); // JFR can only start spans from now, so this stage is only in the histograms and the response
+    }
+
+    /**
+     * Marks the end of a stage of the action being handled, if there is one
+     * @param stage What just finished, used in the histogram's name
+     */
+    public static void stage(String stage) {
+        if (current != null) current.mark(stage, System.nanoTime());
+    }
+
+    /**
+     * A dialog waiting on the player is about to open, call playerWaitEnded once it's closed
+     */
+    public static void playerWaitStarted() {
+        if (current != null && current.waitStart == 0) current.waitStart = System.nanoTime();
+    }
+
+    public static void playerWaitEnded() {
+        if (current == null || current.waitStart == 0) return;
+        long waited = System.nanoTime() - current.waitStart;
+        current.stageWait += waited;
+        current.playerWait += waited;
+        current.waitStart = 0;
+    }
+
+    /**
+     * The listener has finished and asked for a repaint, the action is done once that paint completes
+     */
+    public static void handled() {
+        if (current == null) return;
+        if (current.waitStart != 0) playerWaitEnded();
+        current.mark("repaintRequested", System.nanoTime());
+        pending.add(current);
+        current = null;
+    }
+
+    /**
+     * A frame has been painted, finishing every action handled before it. Called at the end of paintComponent.
+     */
+    public static void painted() {
+        if (pending.isEmpty()) return;
+        long now = System.nanoTime();
+        for (ActionTrace trace : pending) trace.finish(now);
+        pending.clear();
+    }
+
+    /**
+     * @return The histogram for an action's stage, or its "response", made the first time it's asked for
+     */
+    public static LatencyHistogram histogram(String action, String stage) {
+        return histograms.computeIfAbsent(action + "." + stage, name -> {
+            LatencyHistogram histogram = new LatencyHistogram(name);
+            Metrics.addHistogram(histogram);
+            return histogram;
+        });
+    }
+
+    private void mark(String stage, long now) {
+        long open = waitStart == 0 ? 0 : now - waitStart; // a dialog still open counts up to now, the rest of it goes to the next stage
+        long waited = stageWait + open;
+        playerWait += open;
+        if (waitStart != 0) waitStart = now;
+        histogram(action, stage).record(now - stageStart - waited);
+        if (stageEvent.shouldCommit()) {
+            stageEvent.actionId = id;
+            stageEvent.action = action;
+            stageEvent.stage = stage;
+            stageEvent.playerWait = waited;
+            stageEvent.commit();
+        }
+        stageEvent = new ActionStageEvent();
+        stageEvent.begin();
+        stageStart = now;
+        stageWait = 0;
+    }
+
+    private void finish(long now) {
+        mark("painted", now);
+        long response = now - start - playerWait; // time the game took, not the player picking a colour or reading a dialog
+        histogram(action, "response").record(response);
+        Metrics.inputToRepaintTime().record(response);
+        if (event.shouldCommit()) {
+            event.actionId = id;
+            event.action = action;
+            event.response = response;
+            event.playerWait = playerWait;
+            event.commit();
+        }
+    }
+}
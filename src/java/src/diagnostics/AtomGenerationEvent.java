@@ -0,0 +1,21 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for placing a game's atoms
+ */
+@Name("blackbox.AtomGeneration")
+@Label("Atom Generation")
+@Category({"Blackbox", "Engine"})
+@Description("Atoms being placed on the board at the start of a game")
+@Enabled(false)
+@StackTrace(false)
+public class AtomGenerationEvent extends Event {
+    @Label("Atoms")
+    public int atoms;
+
+    @Label("Attempts")
+    @Description("Random boxes tried, including ones rejected because they already held an atom")
+    public int attempts;
+}
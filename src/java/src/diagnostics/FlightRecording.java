@@ -0,0 +1,40 @@
+package diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Starts a flight recording for the whole session when the game is launched with -Dblackbox.jfr=file.jfr,
+ * using the bundled Profiling/blackbox.jfc profile. A running game can also be recorded with jcmd and the same profile.
+ */
+public class FlightRecording {
+    public static final String PROFILE = "/Profiling/blackbox.jfc";
+
+    public static void startIfRequested() {
+        String destination = System.getProperty("blackbox.jfr");
+        if (destination == null || destination.isBlank()) return;
+        try {
+            Recording recording = new Recording(loadProfile());
+            recording.setName("Blackbox+ session");
+            recording.setDestination(Path.of(destination));
+            recording.setDumpOnExit(true); // written out when the game exits, however it exits
+            recording.start();
+        } catch (Exception e) { // a broken recording setup shouldn't stop anyone from playing
+            System.err.println("Could not start flight recording: " + e.getMessage());
+        }
+    }
+
+    public static Configuration loadProfile() throws Exception {
+        try (InputStream inputStream = Objects.requireNonNull(FlightRecording.class.getResourceAsStream(PROFILE));
+             Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+}
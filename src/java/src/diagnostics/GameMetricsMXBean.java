@@ -0,0 +1,18 @@
+package diagnostics;
+
+/**
+ * JMX view of the game's counters, registered as blackbox:type=GameMetrics
+ */
+public interface GameMetricsMXBean {
+    long getRaysFired();
+
+    long getRaysDeflected();
+
+    long getRaysAbsorbed();
+
+    long getRaysReflected();
+
+    long getActiveSessions();
+
+    long getSessionsStarted();
+}
@@ -0,0 +1,23 @@
+package diagnostics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}, registered as blackbox:type=Latency,name=...
+ * Times are in milliseconds.
+ */
+public interface HistogramMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,21 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for leaderboard reads, sorts and writes
+ */
+@Name("blackbox.LeaderboardIO")
+@Label("Leaderboard I/O")
+@Category({"Blackbox", "Persistence"})
+@Description("A read, sort or write of the score history")
+@Enabled(false)
+@StackTrace(false)
+public class LeaderboardIOEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Records")
+    @Description("Scores read, sorted or written")
+    public long records;
+}
@@ -0,0 +1,131 @@
+package diagnostics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics for the game, exported over JMX so dashboards can scrape them locally.
+ * Everything is recorded with striped {@link LongAdder}s, so recording never takes a lock on a hot path.
+ */
+public class Metrics {
+    private static final LongAdder raysDeflected = new LongAdder(); // went straight through or was deflected out another exit
+    private static final LongAdder raysAbsorbed = new LongAdder();
+    private static final LongAdder raysReflected = new LongAdder();
+    private static final LongAdder activeSessions = new LongAdder();
+    private static final LongAdder sessionsStarted = new LongAdder();
+
+    private static final LatencyHistogram traceTime = new LatencyHistogram("traceTime");
+    private static final LatencyHistogram shootRayTime = new LatencyHistogram("shootRayTime");
+    private static final LatencyHistogram renderTime = new LatencyHistogram("renderTime");
+    private static final LatencyHistogram inputToRepaintTime = new LatencyHistogram("inputToRepaintTime");
+    private static final LatencyHistogram leaderboardIoTime = new LatencyHistogram("leaderboardIoTime");
+
+    private static final List<LatencyHistogram> added = new ArrayList<>(); // histograms made while the game runs, like ActionTrace's stages
+
+    private static boolean registered = false;
+
+    /**
+     * Registers the MBeans with the platform MBean server, safe to call more than once
+     */
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Counters(), new ObjectName("blackbox:type=GameMetrics"));
+            for (LatencyHistogram histogram : new LatencyHistogram[]{traceTime, shootRayTime, renderTime, inputToRepaintTime, leaderboardIoTime}) {
+                registerHistogram(server, histogram);
+            }
+            for (LatencyHistogram histogram : added) registerHistogram(server, histogram);
+        } catch (Exception e) { // metrics are optional, the game runs fine without them
+            System.err.println("Could not register metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exports a histogram made after startup, straight away if the MBeans are already registered, otherwise along with the rest
+     */
+    public static synchronized void addHistogram(LatencyHistogram histogram) {
+        added.add(histogram);
+        if (!registered) return;
+        try {
+            registerHistogram(ManagementFactory.getPlatformMBeanServer(), histogram);
+        } catch (Exception e) {
+            System.err.println("Could not register metrics MBean " + histogram.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void registerHistogram(MBeanServer server, LatencyHistogram histogram) throws Exception {
+        server.registerMBean(new Histogram(histogram), new ObjectName("blackbox:type=Latency,name=" + histogram.getName()));
+    }
+
+    /**
+     * @param status The ray's outcome as reported by the game ("absorbed", "reflected" or "normal/deflected")
+     */
+    public static void rayFired(String status) {
+        switch (status) {
+            case "absorbed" -> raysAbsorbed.increment();
+            case "reflected" -> raysReflected.increment();
+            default -> raysDeflected.increment();
+        }
+    }
+
+    public static void sessionStarted() {
+        sessionsStarted.increment();
+        activeSessions.increment();
+    }
+
+    public static void sessionEnded() {
+        activeSessions.decrement();
+    }
+
+    public static LatencyHistogram traceTime() {
+        return traceTime;
+    }
+
+    public static LatencyHistogram shootRayTime() {
+        return shootRayTime;
+    }
+
+    public static LatencyHistogram renderTime() {
+        return renderTime;
+    }
+
+    public static LatencyHistogram inputToRepaintTime() {
+        return inputToRepaintTime;
+    }
+
+    public static LatencyHistogram leaderboardIoTime() {
+        return leaderboardIoTime;
+    }
+
+    private static class Counters implements GameMetricsMXBean {
+        @Override public long getRaysFired() { return raysDeflected.sum() + raysAbsorbed.sum() + raysReflected.sum(); }
+        @Override public long getRaysDeflected() { return raysDeflected.sum(); }
+        @Override public long getRaysAbsorbed() { return raysAbsorbed.sum(); }
+        @Override public long getRaysReflected() { return raysReflected.sum(); }
+        @Override public long getActiveSessions() { return activeSessions.sum(); }
+        @Override public long getSessionsStarted() { return sessionsStarted.sum(); }
+    }
+
+    private static class Histogram implements HistogramMXBean {
+        private final LatencyHistogram histogram;
+
+        Histogram(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override public long getCount() { return histogram.getCount(); }
+        @Override public double getMeanMillis() { return histogram.getMeanNanos() / 1e6; }
+        @Override public double getP50Millis() { return histogram.getPercentileNanos(50) / 1e6; }
+        @Override public double getP90Millis() { return histogram.getPercentileNanos(90) / 1e6; }
+        @Override public double getP99Millis() { return histogram.getPercentileNanos(99) / 1e6; }
+        @Override public double getP999Millis() { return histogram.getPercentileNanos(99.9) / 1e6; }
+        @Override public double getMaxMillis() { return histogram.getMaxNanos() / 1e6; }
+        @Override public void reset() { histogram.reset(); }
+    }
+}
@@ -0,0 +1,30 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event spanning a player's action, from the input arriving to the first frame painted after it was handled
+ */
+@Name("blackbox.PlayerAction")
+@Label("Player Action")
+@Category({"Blackbox", "Latency"})
+@Description("An input from the player through to the frame that shows it, the stages are blackbox.ActionStage events with the same id")
+@Enabled(false)
+@StackTrace(false)
+public class PlayerActionEvent extends Event {
+    @Label("Action Id")
+    public long actionId;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Response")
+    @Description("Input to paint, less the time spent waiting on the player in dialogs")
+    @Timespan(Timespan.NANOSECONDS)
+    public long response;
+
+    @Label("Player Wait")
+    @Description("Time spent in dialogs opened by the action, waiting on the player")
+    @Timespan(Timespan.NANOSECONDS)
+    public long playerWait;
+}
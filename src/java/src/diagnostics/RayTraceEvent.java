@@ -0,0 +1,28 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a single ray traced through the board by Board.iterate
+ */
+@Name("blackbox.RayTrace")
+@Label("Ray Trace")
+@Category({"Blackbox", "Engine"})
+@Description("One ray traced through the hexagonal board")
+@Enabled(false)
+@StackTrace(false)
+public class RayTraceEvent extends Event {
+    @Label("Entry")
+    public int entry;
+
+    @Label("Steps")
+    @Description("Number of hexagonal boxes the ray stepped through")
+    public int steps;
+
+    @Label("Exit")
+    @Description("Exit number the ray left through, or -1 if it was absorbed")
+    public int exit;
+
+    @Label("Outcome")
+    public String outcome;
+}
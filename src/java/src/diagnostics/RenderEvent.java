@@ -0,0 +1,23 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for one pass of Game.render
+ */
+@Name("blackbox.Render")
+@Label("Render")
+@Category({"Blackbox", "Rendering"})
+@Description("One frame of the game board being drawn")
+@Enabled(false)
+@StackTrace(false)
+public class RenderEvent extends Event {
+    @Label("Layers Drawn")
+    public int layersDrawn;
+
+    @Label("Rays Drawn")
+    public int raysDrawn;
+
+    @Label("Markers Drawn")
+    public int markersDrawn;
+}
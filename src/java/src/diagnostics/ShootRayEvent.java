@@ -0,0 +1,30 @@
+package diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event covering Game.shootRay end to end, including the marker colour dialog
+ */
+@Name("blackbox.ShootRay")
+@Label("Shoot Ray")
+@Category({"Blackbox", "Engine"})
+@Description("A player's ray, from tracing to markers being placed")
+@Enabled(false)
+@StackTrace(false)
+public class ShootRayEvent extends Event {
+    @Label("Entry")
+    public int entry;
+
+    @Label("Exit")
+    @Description("Exit number the ray left through, or -1 if it was absorbed")
+    public int exit;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Path Segments")
+    public int segments;
+
+    @Label("Markers Placed")
+    public int markersPlaced;
+}
@@ -0,0 +1,84 @@
+package entities;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Every marker on the board, grouped by colour so each colour is set up once and all its markers drawn together.
+ * Positions are kept as x, y pairs in one int array per colour instead of a Marker object each.
+ * The batch of every marker is logged in the order they were added, so setSize can take the last ones away and put them back for undo and redo.
+ */
+public class MarkerBatches {
+    private Color[] colours = new Color[4];
+    private int[][] positions = new int[4][]; // positions[colour] = x0, y0, x1, y1, ... top left corners like Marker.getX
+    private int[] counts = new int[4];
+    private int numColours = 0;
+    private int size = 0;
+    private int[] order = new int[16]; // order[i] = batch of the i'th marker added
+
+    /**
+     * @param x Centre of the marker, the same as Marker's constructor takes
+     * @param colour Colour to draw it in
+     */
+    public void add(int x, int y, Color colour) {
+        int batch = batchOf(colour);
+        int[] batchPositions = positions[batch];
+        if (2 * counts[batch] + 2 > batchPositions.length) batchPositions = positions[batch] = Arrays.copyOf(batchPositions, batchPositions.length * 2);
+        batchPositions[2 * counts[batch]] = x - 5; // same offset as Marker
+        batchPositions[2 * counts[batch] + 1] = y - 5;
+        counts[batch]++;
+        if (size == order.length) order = Arrays.copyOf(order, size * 2);
+        order[size++] = batch;
+    }
+
+    /**
+     * Goes back to the first markers, or forward again to a size it had before, provided none were added since going back.
+     * Takes time for the markers taken away or put back, and nothing else.
+     */
+    public void setSize(int markers) {
+        for (; size > markers; size--) counts[order[size - 1]]--;
+        for (; size < markers; size++) counts[order[size]]++;
+    }
+
+    // the index of the colour's batch, adding one if it's new
+    private int batchOf(Color colour) {
+        for (int batch = 0; batch < numColours; batch++) if (colours[batch].equals(colour)) return batch;
+        if (numColours == colours.length) {
+            colours = Arrays.copyOf(colours, numColours * 2);
+            positions = Arrays.copyOf(positions, numColours * 2);
+            counts = Arrays.copyOf(counts, numColours * 2);
+        }
+        colours[numColours] = colour;
+        positions[numColours] = new int[8];
+        return numColours++;
+    }
+
+    /**
+     * @return Number of markers of every colour
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getNumColours() {
+        return numColours;
+    }
+
+    public Color getColour(int batch) {
+        return colours[batch];
+    }
+
+    /**
+     * @return Markers in the batch
+     */
+    public int getCount(int batch) {
+        return counts[batch];
+    }
+
+    /**
+     * @return x, y pairs of the batch's markers, only the first 2 x getCount(batch) are used
+     */
+    public int[] getPositions(int batch) {
+        return positions[batch];
+    }
+}
@@ -0,0 +1,136 @@
+package entities;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * Every ray path drawn on the board, kept as plain int arrays rather than an object per segment.
+ * Points of all the paths sit one after another in xs and ys, with starts[p] the first point of path p,
+ * so memory grows with the number of points and nothing else. A segment that doesn't start where the last one ended
+ * begins a new stroke within the same path (marked in moves).
+ * Each path is turned into a Path2D the first time it's drawn after it's finished, and drawn with that from then on.
+ * Since paths are only ever appended, a size is a snapshot: setSize goes back to an earlier one and forward again for undo and redo.
+ */
+public class RayPaths {
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private long[] moves = new long[1]; // bit i is set when point i starts a new stroke rather than continuing the last
+    private int numPoints = 0;
+    private int[] starts = new int[8]; // one more than the paths, so starts[size()] is where the next path begins
+    private int numPaths = 0;
+    private Path2D.Float[] shapes = new Path2D.Float[8];
+
+    /**
+     * Starts a new path, the one before it is finished
+     */
+    public void beginPath() {
+        if (numPaths + 2 > starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+        if (numPaths == shapes.length) shapes = Arrays.copyOf(shapes, shapes.length * 2);
+        shapes[numPaths] = null; // left over from a path that was undone
+        numPaths++;
+        starts[numPaths] = numPoints;
+    }
+
+    /**
+     * Goes back to the first paths, or forward again to a size it had before, provided no path was begun since going back.
+     * Nothing is copied or freed, the points past the size are kept for going forward again.
+     */
+    public void setSize(int paths) {
+        numPaths = paths;
+        numPoints = starts[paths];
+    }
+
+    /**
+     * Adds a segment to the path begun last, joined to the segment before it if that ended where this one starts
+     */
+    public void addSegment(int x1, int y1, int x2, int y2) {
+        if (numPaths == 0) throw new IllegalStateException("beginPath has to be called first");
+        int pathStart = starts[numPaths - 1];
+        if (numPoints == pathStart || xs[numPoints - 1] != x1 || ys[numPoints - 1] != y1) addPoint(x1, y1, true);
+        addPoint(x2, y2, false);
+        shapes[numPaths - 1] = null; // the path has changed since it was last drawn
+    }
+
+    private void addPoint(int x, int y, boolean move) {
+        if (numPoints == xs.length) {
+            xs = Arrays.copyOf(xs, xs.length * 2);
+            ys = Arrays.copyOf(ys, ys.length * 2);
+        }
+        if (numPoints >>> 6 == moves.length) moves = Arrays.copyOf(moves, moves.length * 2);
+        if (move) moves[numPoints >>> 6] |= 1L << numPoints;
+        else moves[numPoints >>> 6] &= ~(1L << numPoints); // the point may have belonged to an undone path
+        xs[numPoints] = x;
+        ys[numPoints] = y;
+        numPoints++;
+        starts[numPaths] = numPoints;
+    }
+
+    /**
+     * @return Number of paths
+     */
+    public int size() {
+        return numPaths;
+    }
+
+    /**
+     * @return Points in every path together
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * @return Segments in the path, the same as the number of segments added to it
+     */
+    public int getNumSegments(int path) {
+        int segments = 0;
+        for (int point = starts[path]; point < starts[path + 1]; point++) if (!isMove(point)) segments++;
+        return segments;
+    }
+
+    /**
+     * @return Index of the path's first point, its points run up to the next path's first (getStart(size()) is getNumPoints())
+     */
+    public int getStart(int path) {
+        return starts[path];
+    }
+
+    public int getX(int point) {
+        return xs[point];
+    }
+
+    public int getY(int point) {
+        return ys[point];
+    }
+
+    /**
+     * @return Whether the point starts a new stroke instead of continuing the one before
+     */
+    public boolean isMove(int point) {
+        return (moves[point >>> 6] >>> point & 1L) != 0;
+    }
+
+    /**
+     * @return The path as a shape, made once and kept until the path changes
+     */
+    public Path2D getShape(int path) {
+        Path2D.Float shape = shapes[path];
+        if (shape == null) {
+            shape = new Path2D.Float(Path2D.WIND_NON_ZERO, starts[path + 1] - starts[path]);
+            for (int point = starts[path]; point < starts[path + 1]; point++) {
+                if (isMove(point)) shape.moveTo(xs[point], ys[point]);
+                else shape.lineTo(xs[point], ys[point]);
+            }
+            shapes[path] = shape;
+        }
+        return shape;
+    }
+
+    /**
+     * Draws every path with the Graphics' current colour and stroke, one draw call per path
+     */
+    public void draw(Graphics2D g) {
+        for (int path = 0; path < numPaths; path++) g.draw(getShape(path));
+    }
+}
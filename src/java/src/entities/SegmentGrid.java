@@ -0,0 +1,129 @@
+package entities;
+
+import java.util.Arrays;
+
+/**
+ * Finds which ray path is under a point (the mouse) without checking every segment.
+ * The board is split into square cells, and each segment is listed in every cell that its bounding box, grown by the pick radius, touches.
+ * A pick then only has to look at the segments listed in the cell under the point.
+ * Paths are added as they're fired, so the index never has to be rebuilt.
+ */
+public class SegmentGrid {
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final double pickRadius;
+    private final int[][] cells; // cells[cell] = (end point of a segment in RayPaths, its path) pairs
+    private final int[] counts;
+    private int numSegments = 0;
+    private int numPaths = 0;
+
+    /**
+     * @param width Width of the area paths are drawn in (the board's 1280)
+     * @param cellSize Width and height of a cell, a little more than a typical segment works well
+     * @param pickRadius How far from a segment a point can be and still pick it
+     */
+    public SegmentGrid(int width, int height, int cellSize, double pickRadius) {
+        this.cellSize = cellSize;
+        this.columns = (width + cellSize - 1) / cellSize;
+        this.rows = (height + cellSize - 1) / cellSize;
+        this.pickRadius = pickRadius;
+        this.cells = new int[columns * rows][];
+        this.counts = new int[columns * rows];
+    }
+
+    /**
+     * Lists every segment of a path, call once it's finished
+     */
+    public void addPath(RayPaths paths, int path) {
+        index(paths, path, true);
+        numPaths = Math.max(numPaths, path + 1);
+    }
+
+    /**
+     * Takes the last paths out of the index, or puts them back, to match RayPaths.setSize for undo and redo.
+     * The paths' points are still in RayPaths either way, so this takes time for their segments and nothing else.
+     */
+    public void setSize(RayPaths paths, int size) {
+        for (; numPaths > size; numPaths--) index(paths, numPaths - 1, false);
+        for (; numPaths < size; numPaths++) index(paths, numPaths, true);
+    }
+
+    // adds every segment of a path to the cells near it, or takes them out again (they're the last entries in those cells, as it's the last path)
+    private void index(RayPaths paths, int path, boolean adding) {
+        for (int point = paths.getStart(path) + 1; point < paths.getStart(path + 1); point++) {
+            if (paths.isMove(point)) continue;
+            int x1 = paths.getX(point - 1), y1 = paths.getY(point - 1), x2 = paths.getX(point), y2 = paths.getY(point);
+            int left = column(Math.min(x1, x2) - pickRadius), right = column(Math.max(x1, x2) + pickRadius);
+            int top = row(Math.min(y1, y2) - pickRadius), bottom = row(Math.max(y1, y2) + pickRadius);
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    if (distanceToCell(x1, y1, x2, y2, column, row) > pickRadius) continue; // long diagonal segments miss most of their box
+                    if (adding) add(row * columns + column, point, path);
+                    else counts[row * columns + column]--;
+                }
+            }
+            numSegments += adding ? 1 : -1;
+        }
+    }
+
+    /**
+     * @return The path with a segment nearest the point, if it's within the pick radius, otherwise -1.
+     * When paths overlap, the one fired last wins, since it's drawn on top.
+     */
+    public int pick(RayPaths paths, double x, double y) {
+        if (x < 0 || y < 0 || x >= columns * cellSize || y >= rows * cellSize) return -1;
+        int cell = row(y) * columns + column(x);
+        int best = -1;
+        double bestDistance = pickRadius * pickRadius;
+        int[] entries = cells[cell];
+        for (int i = 0; i < counts[cell]; i++) {
+            int point = entries[2 * i];
+            double distance = distanceSquared(x, y, paths.getX(point - 1), paths.getY(point - 1), paths.getX(point), paths.getY(point));
+            if (distance < bestDistance || distance == bestDistance && entries[2 * i + 1] > best) {
+                bestDistance = distance;
+                best = entries[2 * i + 1];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Segments indexed so far
+     */
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    private void add(int cell, int point, int path) {
+        int[] entries = cells[cell];
+        if (entries == null) entries = cells[cell] = new int[8];
+        else if (2 * counts[cell] + 2 > entries.length) entries = cells[cell] = Arrays.copyOf(entries, entries.length * 2);
+        entries[2 * counts[cell]] = point;
+        entries[2 * counts[cell] + 1] = path;
+        counts[cell]++;
+    }
+
+    private int column(double x) {
+        return Math.clamp((int) Math.floor(x / cellSize), 0, columns - 1);
+    }
+
+    private int row(double y) {
+        return Math.clamp((int) Math.floor(y / cellSize), 0, rows - 1);
+    }
+
+    // a lower bound on how close the segment comes to the cell: its distance from the centre less the half diagonal, so no nearby cell is skipped
+    private double distanceToCell(int x1, int y1, int x2, int y2, int column, int row) {
+        double half = cellSize / 2.0;
+        double centreX = column * cellSize + half, centreY = row * cellSize + half;
+        return Math.max(0, Math.sqrt(distanceSquared(centreX, centreY, x1, y1, x2, y2)) - half * Math.sqrt(2));
+    }
+
+    private static double distanceSquared(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double length = dx * dx + dy * dy;
+        double t = length == 0 ? 0 : Math.clamp(((x - x1) * dx + (y - y1) * dy) / length, 0, 1);
+        double nearX = x1 + t * dx - x, nearY = y1 + t * dy - y;
+        return nearX * nearX + nearY * nearY;
+    }
+}
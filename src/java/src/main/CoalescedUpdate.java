@@ -0,0 +1,41 @@
+package main;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an update of the UI once on the Event Dispatch Thread however many times it's asked for before then,
+ * so a burst of game events (a scripted game firing every ray at once, a ray placing two markers) becomes one label update and one repaint.
+ * Can be asked for from any thread.
+ */
+public class CoalescedUpdate {
+    private final Runnable update;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private int runs = 0;
+
+    /**
+     * @param update Brings the UI up to date with the game, run on the EDT
+     */
+    public CoalescedUpdate(Runnable update) {
+        this.update = update;
+    }
+
+    /**
+     * Makes sure the update runs after everything already queued on the EDT, unless it's already going to
+     */
+    public void request() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        EventQueue.invokeLater(() -> {
+            scheduled.set(false); // anything that changes during the update gets another one
+            runs++;
+            update.run();
+        });
+    }
+
+    /**
+     * @return Times the update has run, only read on the EDT
+     */
+    public int getRuns() {
+        return runs;
+    }
+}
@@ -1,86 +1,213 @@
 package main;
 
+import computations.AtomGrid;
+import computations.Autosave;
 import computations.Board;
+import computations.ContinuousTracer;
+import computations.GameSeed;
+import computations.HardSetter;
 import computations.Lists;
+import computations.PuzzlePack;
+import computations.RayTracer;
+import computations.ReplayWriter;
+import computations.Replayer;
+import diagnostics.ActionTrace;
+import diagnostics.AtomGenerationEvent;
+import diagnostics.Metrics;
+import diagnostics.RenderEvent;
+import diagnostics.ShootRayEvent;
 import entities.*;
+import simulation.AtomProbabilities;
+import simulation.Observations;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
- * Controls Blackbox's game logic and state
+ * Controls Blackbox's game logic and state.
+ * Its screen and window are built along with it, but nothing is shown until start is called on the finished game.
  */
-public class Game {
+public final class Game {
     // Application Variables
     private final GameWindow gameWindow;
     private final GameScreen gameScreen;
 
     // Game Variables
-    private static final Image bgImage = (new ImageIcon(Objects.requireNonNull(Game.class.getResource("/Board Layouts/yellow-clear-all.png"))).getImage());
+    public static final String BACKGROUND = "/Board Layouts/yellow-clear-all.png";
+    public static final String NUMBERED_BOARD = "/Board Layouts/transparent-hexagon-numbered.PNG";
+    private static final Image bgImage = Navigator.image(BACKGROUND).getImage(); // shared with the setter, and preloaded from the start screen
     private static final Image boardCover = (new ImageIcon(Objects.requireNonNull(Game.class.getResource("/Board Layouts/yellow-clear-background.png"))).getImage());
-    private static final Image boardBoxNumber = (new ImageIcon(Objects.requireNonNull(Game.class.getResource("/Board Layouts/transparent-hexagon-numbered.PNG"))).getImage());
-
-    private static final Random rand = new Random();
+    private static final BasicStroke RAY_STROKE = new BasicStroke(5);
+    private static final BasicStroke PICKED_RAY_STROKE = new BasicStroke(9, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Color PICKED_RAY_COLOUR = new Color(255, 200, 0);
+    private static final Font PICKED_RAY_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font PROBABILITY_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final int PROBABILITY_MAX_ALPHA = 180; // a box sure to hold an atom is shaded this much
+    private static final Color[] PROBABILITY_COLOURS = new Color[PROBABILITY_MAX_ALPHA + 1]; // every shade, by alpha
+    private static final String[] PERCENTAGES = new String[101];
+    private static Polygon[] probabilityHexagons; // the outline of every box, built the first time the overlay is drawn
+    static {
+        for (int alpha = 0; alpha <= PROBABILITY_MAX_ALPHA; alpha++) PROBABILITY_COLOURS[alpha] = new Color(220, 40, 40, alpha);
+        for (int percent = 0; percent <= 100; percent++) PERCENTAGES[percent] = percent + "%";
+    }
+    private static final Image boardBoxNumber = Navigator.image(NUMBERED_BOARD).getImage();
+    private static final int LAYER_BACKGROUND = 0; // the sprite atlas' full-board layers
+    private static final int LAYER_COVER = 1;
+    private static final int LAYER_NUMBERS = 2;
+    private final SpriteAtlas sprites = new SpriteAtlas(new Image[]{bgImage, boardCover, boardBoxNumber}, Atom.getAtomImage()); // pre-scaled for the current view
+
+    private final GameSeed gameSeed; // every random choice in this game comes from here
+    private ReplayWriter replay; // started once the atoms are placed
+    private Autosave autosave; // keeps the game on disk until it ends, null while a resumed game is being put back
     private int numIncorrectGuesses = 0;
     private int numMarkersUsed = 0;
 
     private final ArrayList<HexagonalBox> hexagonalBoxes; // Arraylist that contains all the hexagonal boxes
     private final ArrayList<Atom> atomList; // Arraylist that contains all the atoms
-    private final ArrayList<Marker> markersList = new ArrayList<>(); // Arraylist that contains all the markers and their colour and coords
-    private final ArrayList<ArrayList<Ray>> rayPathList = new ArrayList<>(); // Arraylist that contains a list of each Ray and their own paths
+    private final MarkerBatches markers = new MarkerBatches(); // every marker's coords, grouped by colour
+    private final RayPaths rayPaths = new RayPaths(); // the points of each ray's path in flat arrays
+    private final SegmentGrid rayIndex = new SegmentGrid(SpriteAtlas.BOARD_WIDTH, SpriteAtlas.BOARD_HEIGHT, 32, 8); // finds the ray under the mouse
+    private int hoveredRay = -1; // path under the mouse, -1 for none
+    private int pinnedRay = -1; // path clicked on, stays highlighted until clicked again
     private ArrayList<ExitPoint> exitPointsList = new ArrayList<>(); // Arraylist that contains the coordinates of each exit point
     private final ArrayList<Integer> atomBoxNumbers = new ArrayList<>(); // Arraylist that stores the hexagonal box numbers that contain an atom
     private final Board raySystem = (new Lists()).createboard(); // instance of the Board class, used to handle the path of any ray
+    private final ContinuousTracer continuousRays; // replaces raySystem when started with -Dblackbox.continuous
+    private AtomGrid atomCircles; // the atoms for continuousRays, built on the first ray
+    private final Observations firedRays = new Observations(); // every ray so far and where it came out, for the probability overlay
+    private AtomProbabilities atomProbabilities; // started the first time the probability overlay is shown
 
     // Game Settings
-    private final int NUM_OF_ATOMS = 6;
+    private static final int NUM_OF_ATOMS = 6;
     private Boolean seeAtomsAndRays = false; // debug setting to show internal atoms (default: false)
     private Boolean enableNumberedBoard = false; // debug setting to show a version of the board with numbered boxes
-    private String playerName = "user" + rand.nextInt(99999);
+    private boolean showAtomProbabilities = false; // shades each box by how likely it is to hold an atom, given the rays so far (F2)
+    private String playerName;
+    private boolean sessionEnded = false;
+    private boolean sessionClosed = false; // no longer counted as active, whether it ended or was left
+    private final long hardLayout; // picked by HardSetter to take many rays to solve, 0 to draw one at random
+    private final boolean practice; // rays and guesses can be undone, and the game isn't saved or put on the leaderboard
+    private final GameHistory history = new GameHistory(); // what the game looked like after each action, for undo and redo
+    private final int[] guesses = new int[NUM_OF_ATOMS]; // box numbers guessed so far, in order
+    private int numGuesses = 0;
+    private final GameEvents events = new GameEvents(); // rays, markers, guesses and the end of the game, for the UI and anything else to follow
+    private Supplier<Color> markerColours; // asked for the colour of each deflected ray's markers, null keeps the default
 
     /**
      * Default constructor that creates the game's window and screen
      * Additionally initialises the atoms, exit points and hexagonal box lists
      */
     public Game() {
+        this(false);
+    }
+
+    /**
+     * @param practice Whether rays and guesses can be undone (the game is then kept off the leaderboard and isn't saved as a replay)
+     */
+    public Game(boolean practice) {
+        this(GameSeed.newSession(), 0, practice, null);
+    }
+
+    /**
+     * Starts a hard game
+     * @param gameSeed The seed the layout was picked from
+     * @param hardLayout From pickHardLayout(gameSeed)
+     */
+    public Game(GameSeed gameSeed, long hardLayout) {
+        this(gameSeed, hardLayout, false, null);
+    }
+
+    /**
+     * Carries on with a game that was autosaved before it ended
+     * @param saved From Autosave.load
+     */
+    public Game(Autosave.Saved saved) {
+        this(new GameSeed(saved.getResult().getSeed()), 0, saved.isPractice(), saved);
+    }
+
+    private Game(GameSeed gameSeed, long hardLayout, boolean practice, Autosave.Saved resumed) {
+        this.gameSeed = gameSeed;
+        this.hardLayout = hardLayout;
+        this.practice = practice;
+        playerName = gameSeed.defaultPlayerName();
         gameScreen = new GameScreen(this); // creates a new screen
         gameWindow = new GameWindow(gameScreen, this); // creates a new window
+        markerColours = gameWindow::askMarkerColor;
         gameScreen.setFocusable(true); // used if we have input, so if we accidentally minimise, we can just click the window again to refocus
         gameScreen.requestFocus();
 
         hexagonalBoxes = loadHexagonalBoxes();
-        atomList = generateAtoms();
+        continuousRays = ContinuousTracer.requested(hexagonalBoxes);
+        atomList = generateAtoms(resumed);
         exitPointsList = loadExitPointCoords();
+        recordHistory(); // the empty board, as far back as undo goes
+        if (resumed != null) resume(resumed.getResult());
+        if (continuousRays == null) autosave = new Autosave(Autosave.directory(), replay, practice); // continuous games can't be checked when they're loaded
+        Metrics.sessionStarted();
+    }
+
+    /**
+     * Asks for the player's name and shows the game, once it's fully built so the EDT can't paint it half done, and carries on with a resumed game's guesses
+     */
+    public void start() {
+        gameWindow.askPlayerName();
+        Navigator.getInstance().show(Navigator.GAME, gameWindow); // the previous game (if any) is let go once another screen replaces this one
+        if (numGuesses > 0) gameWindow.resumeGuessing();
+    }
+
+    /**
+     * Searches for a layout that takes as many rays to solve as HardSetter can find. This runs for HardSetter's whole time budget, so keep it off the EDT.
+     * @return The layout to start a hard game with
+     */
+    public static long pickHardLayout(GameSeed gameSeed) {
+        return new HardSetter(NUM_OF_ATOMS).pick(gameSeed.getLayoutRandom());
     }
 
     /**
      * Method to handle the drawing of the game's visuals
-     * @param g A graphics instance to be drawn
+     * @param g A graphics instance to be drawn, already transformed so the board is 1280x720 (see GameScreen.getLayoutTransform)
      */
     public void render(Graphics g) {
+        RenderEvent renderEvent = new RenderEvent();
+        renderEvent.begin();
+        int layersDrawn = 3; // background, atoms and rays are always drawn, even if the cover hides them afterwards
+
         // draw background board
-        g.drawImage(bgImage, 0, 0, 1280, 720, null);
+        Graphics2D g2d = (Graphics2D) g;
+        sprites.begin(g2d);
+        sprites.drawLayer(LAYER_BACKGROUND);
         if (atomList != null) { // draw atoms
-            for (Atom atom : atomList) g.drawImage(Atom.getAtomImage(), atom.getX(), atom.getY(), 50, 50, null);
+            for (Atom atom : atomList) sprites.drawAtom(atom.getX(), atom.getY());
         } else {
             JOptionPane.showMessageDialog(null, "Error: AtomList arraylist is null.", null, JOptionPane.ERROR_MESSAGE);
             System.exit(-1);
         }
-        Graphics2D g2d = (Graphics2D) g;
-        for (ArrayList<Ray> rayPath : rayPathList) for (Ray ray : rayPath) { // draw rays
-                g2d.setStroke(new BasicStroke(5));
-                g2d.setColor(Color.WHITE);
-                g2d.drawLine(ray.getX1(), ray.getY1(), ray.getX2(), ray.getY2());
-            }
+        sprites.end();
+        g2d.setStroke(RAY_STROKE); // draw rays, one shape per path
+        g2d.setColor(Color.WHITE);
+        rayPaths.draw(g2d);
+        if (seeAtomsAndRays) drawPickedRay(g2d);
         // hide internal atoms and rays if setting is false
-        if (!seeAtomsAndRays) g.drawImage(boardCover, 0, 0, 1280, 720, null);
-        if (enableNumberedBoard) g.drawImage(boardBoxNumber, 0, 0, 1280, 720, null);
-        for (Marker marker : markersList) { // draw markers
-            g2d.setColor(marker.getMarkerColour());
-            g2d.fillOval(marker.getX(), marker.getY(), 12, 12);
+        if (!seeAtomsAndRays) { sprites.begin(g2d); sprites.drawLayer(LAYER_COVER); sprites.end(); layersDrawn++; }
+        if (showAtomProbabilities) { drawAtomProbabilities(g2d); layersDrawn++; }
+        sprites.begin(g2d);
+        if (enableNumberedBoard) { sprites.drawLayer(LAYER_NUMBERS); layersDrawn++; }
+        for (int batch = 0; batch < markers.getNumColours(); batch++) { // draw markers, a colour at a time
+            if (markers.getCount(batch) == 0) continue; // all of its markers were undone
+            sprites.drawMarkers(markers.getColour(batch), markers.getPositions(batch), markers.getCount(batch));
+        }
+        sprites.end();
+        layersDrawn++;
+
+        if (renderEvent.shouldCommit()) {
+            renderEvent.layersDrawn = layersDrawn;
+            renderEvent.raysDrawn = rayPaths.size();
+            renderEvent.markersDrawn = markers.size();
+            renderEvent.commit();
         }
     }
 
@@ -90,8 +217,18 @@ public class Game {
      * @param entry An exit number (represented by the arrow on the board)
      */
     public void shootRay(int entry) {
-        ArrayList<Integer> boxNumList = raySystem.iterate(entry);
-        ArrayList<Ray> newRayPath = new ArrayList<>();
+        ShootRayEvent shootRayEvent = new ShootRayEvent();
+        shootRayEvent.begin();
+        long shootStart = System.nanoTime();
+        int markersBefore = numMarkersUsed;
+
+        rayPaths.beginPath();
+        ArrayList<Integer> boxNumList = continuousRays == null ? raySystem.iterate(entry) : shootContinuousRay(entry);
+        long traceNanos = System.nanoTime() - shootStart;
+        Metrics.traceTime().record(traceNanos);
+        ActionTrace.stage("traced");
+        // every box but the entry and the exit (or the -1 of an absorption), the continuous rules count bounces instead
+        gameScreen.getHud().rayTraced(traceNanos, continuousRays == null ? boxNumList.size() - 2 : rayPaths.getNumSegments(rayPaths.size() - 1) - 1);
 
         // Absorbed Ray Case
         boolean isRayAbsorbed = boxNumList.contains(-1);
@@ -100,83 +237,179 @@ public class Game {
         // Reflected Ray Case
         boolean isRayReflected = boxNumList.getFirst().equals(boxNumList.getLast());
 
-        ExitPoint startPoint = exitPointsList.get(boxNumList.getFirst() - 1);
-        newRayPath.add(new Ray(
-                startPoint.getX(),
-                startPoint.getY(),
-                hexagonalBoxes.get(boxNumList.get(1) - 1).getX(),
-                hexagonalBoxes.get(boxNumList.get(1) - 1).getY()));
-
-        int i;
-        for (i = 1; i < pathLength - 2; i++) {
-            newRayPath.add(new Ray(
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
-                    hexagonalBoxes.get(boxNumList.get(i + 1) - 1).getX(),
-                    hexagonalBoxes.get(boxNumList.get(i + 1) - 1).getY()));
-        }
+        if (continuousRays == null) { // the continuous rules have already added the segments
+            ExitPoint startPoint = exitPointsList.get(boxNumList.getFirst() - 1);
+            rayPaths.addSegment(
+                    startPoint.getX(),
+                    startPoint.getY(),
+                    hexagonalBoxes.get(boxNumList.get(1) - 1).getX(),
+                    hexagonalBoxes.get(boxNumList.get(1) - 1).getY());
+
+            int i;
+            for (i = 1; i < pathLength - 2; i++) {
+                rayPaths.addSegment(
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
+                        hexagonalBoxes.get(boxNumList.get(i + 1) - 1).getX(),
+                        hexagonalBoxes.get(boxNumList.get(i + 1) - 1).getY());
+            }
 
-        // set final ray towards atom for absorption case
-        if (isRayAbsorbed) {
-            newRayPath.add(new Ray(
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getY()));
-            boxNumList.remove(boxNumList.getLast());
-        } else { // in all other cases, set the final ray towards the exit point
-            ExitPoint endPoint = exitPointsList.get(boxNumList.getLast() - 1);
-            newRayPath.add(new Ray(
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
-                    hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
-                    endPoint.getX(),
-                    endPoint.getY()));
-            // this is to make sure a ray can't be shot from the final exit point
-            gameWindow.addVisitedBox(boxNumList.getLast());
+            // set final ray towards atom for absorption case
+            if (isRayAbsorbed) {
+                rayPaths.addSegment(
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getY());
+                boxNumList.remove(boxNumList.getLast());
+            } else { // in all other cases, set the final ray towards the exit point
+                ExitPoint endPoint = exitPointsList.get(boxNumList.getLast() - 1);
+                rayPaths.addSegment(
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getX(),
+                        hexagonalBoxes.get(boxNumList.get(i) - 1).getY(),
+                        endPoint.getX(),
+                        endPoint.getY());
+            }
         }
 
         /* Marker Cases */
+        String status;
         // Normal case - Ray goes straight through with no reflection of absorption
         if (!isRayAbsorbed && !isRayReflected) {
             // User can choose the colour of the marker
-            Color colorChoice = gameWindow.askMarkerColor();
-
-            // Marker at first entry point of ray path
-            int startX = exitPointsList.get(boxNumList.getFirst() - 1).getX();
-            int startY = exitPointsList.get(boxNumList.getFirst() - 1).getY();
-            markersList.add(new Marker(startX, startY, colorChoice));
+            Color colorChoice = markerColours.get();
 
-            // Marker at last entry point of ray path
-            int endX = exitPointsList.get(boxNumList.getLast() - 1).getX();
-            int endY = exitPointsList.get(boxNumList.getLast() - 1).getY();
-            markersList.add(new Marker(endX, endY, colorChoice));
+            // Markers at the first and last entry points of the ray path, no choice keeps the chooser's starting colour
+            placeMarker(boxNumList.getFirst(), colorChoice == null ? Color.MAGENTA : colorChoice);
+            placeMarker(boxNumList.getLast(), colorChoice == null ? Color.MAGENTA : colorChoice);
 
             numMarkersUsed += 2; // add 2 markers to the counter
-            gameWindow.setLastRayStatus("normal/deflected");
+            status = "normal/deflected";
+            replay.rayFired(entry, boxNumList.getLast(), colorChoice == null ? ReplayWriter.NO_COLOUR : colorChoice.getRGB());
         }
         // Absorbed case - Ray absorbed by atom
         else if (isRayAbsorbed) {
             // Black (Gray) marker at first entry point of ray path
-            int startX = exitPointsList.get(boxNumList.getFirst() - 1).getX();
-            int startY = exitPointsList.get(boxNumList.getFirst() - 1).getY();
-            markersList.add(new Marker(startX, startY, Color.GRAY));
+            placeMarker(boxNumList.getFirst(), Color.GRAY);
 
             numMarkersUsed++; // increment marker counter
-            gameWindow.setLastRayStatus("absorbed");
+            status = "absorbed";
+            replay.rayFired(entry, RayTracer.ABSORBED, ReplayWriter.NO_COLOUR);
         }
         // Reflected case = Ray deflects and exits at the same point of entry
         else {
             // White marker at first entry point of ray path
-            int startX = exitPointsList.get(boxNumList.getFirst() - 1).getX();
-            int startY = exitPointsList.get(boxNumList.getFirst() - 1).getY();
-            markersList.add(new Marker(startX, startY, Color.WHITE));
+            placeMarker(boxNumList.getFirst(), Color.WHITE);
 
             numMarkersUsed++; // increment marker counter
-            gameWindow.setLastRayStatus("reflected");
+            status = "reflected";
+            replay.rayFired(entry, entry, ReplayWriter.NO_COLOUR);
         }
 
-        // Add the newly created ray path to a path list
-        rayPathList.add(newRayPath);
+        int exit = isRayAbsorbed ? RayTracer.ABSORBED : boxNumList.getLast();
+        firedRays.add(entry, exit);
+        rayIndex.addPath(rayPaths, rayPaths.size() - 1); // same index as its observation in firedRays
+        if (atomProbabilities != null) atomProbabilities.rayFired(entry, exit); // the overlay catches up in the background
+
+        Metrics.rayFired(status);
+        Metrics.shootRayTime().recordSince(shootStart);
+        recordHistory();
+        events.publish(new GameEvents.RayFired(entry, exit, status, getScore()));
+
+        if (shootRayEvent.shouldCommit()) {
+            shootRayEvent.entry = entry;
+            shootRayEvent.exit = isRayAbsorbed ? -1 : boxNumList.getLast();
+            shootRayEvent.outcome = status;
+            shootRayEvent.segments = rayPaths.getNumSegments(rayPaths.size() - 1);
+            shootRayEvent.markersPlaced = numMarkersUsed - markersBefore;
+            shootRayEvent.commit();
+        }
+    }
+
+    // puts a marker next to an exit, for anything showing the board to pick up
+    private void placeMarker(int exitNumber, Color colour) {
+        ExitPoint exitPoint = exitPointsList.get(exitNumber - 1);
+        markers.add(exitPoint.getX(), exitPoint.getY(), colour);
+        events.publish(new GameEvents.MarkerPlaced(exitNumber, colour));
+    }
+
+    // draws the hovered (or pinned) ray over the others, with where it went in and came out
+    private void drawPickedRay(Graphics2D g2d) {
+        int ray = hoveredRay != -1 ? hoveredRay : pinnedRay;
+        if (ray == -1) return;
+        g2d.setStroke(PICKED_RAY_STROKE);
+        g2d.setColor(PICKED_RAY_COLOUR);
+        g2d.draw(rayPaths.getShape(ray));
+        int exit = firedRays.getExit(ray);
+        String label = firedRays.getEntry(ray) + " \u2192 " + (exit == RayTracer.ABSORBED ? "absorbed" : exit == firedRays.getEntry(ray) ? "reflected" : exit);
+        g2d.setFont(PICKED_RAY_FONT);
+        int start = rayPaths.getStart(ray);
+        g2d.drawString(label, rayPaths.getX(start) + 12, rayPaths.getY(start) - 12);
+    }
+
+    /**
+     * Highlights the ray under the mouse. Rays can only be picked while they're shown, so it gives nothing away during play.
+     * @param x Mouse position in board coordinates (1280x720)
+     * @return Whether the highlight changed and the board needs repainting
+     */
+    public boolean hover(double x, double y) {
+        int ray = seeAtomsAndRays ? rayIndex.pick(rayPaths, x, y) : -1;
+        if (ray == hoveredRay) return false;
+        hoveredRay = ray;
+        return true;
+    }
+
+    /**
+     * Pins the ray under the mouse so it stays highlighted, or unpins it if it's already pinned
+     * @param x Mouse position in board coordinates (1280x720)
+     * @return Whether the highlight changed
+     */
+    public boolean pick(double x, double y) {
+        int ray = seeAtomsAndRays ? rayIndex.pick(rayPaths, x, y) : -1;
+        if (ray == -1 && pinnedRay == -1) return false;
+        pinnedRay = ray == pinnedRay ? -1 : ray;
+        return true;
+    }
+
+    // shades every box by the chance it holds an atom, darker for more likely, with the percentage on top
+    private void drawAtomProbabilities(Graphics2D g2d) {
+        double[] probabilities = atomProbabilities.getProbabilities();
+        if (probabilityHexagons == null) probabilityHexagons = hexagonsAround(hexagonalBoxes);
+        g2d.setFont(PROBABILITY_FONT);
+        FontMetrics metrics = g2d.getFontMetrics();
+        for (int cell = 0; cell < hexagonalBoxes.size(); cell++) {
+            HexagonalBox box = hexagonalBoxes.get(cell);
+            g2d.setColor(PROBABILITY_COLOURS[(int) Math.round(PROBABILITY_MAX_ALPHA * probabilities[cell])]);
+            g2d.fillPolygon(probabilityHexagons[cell]);
+            String percent = PERCENTAGES[(int) Math.round(100 * probabilities[cell])];
+            g2d.setColor(Color.WHITE);
+            g2d.drawString(percent, box.getX() - metrics.stringWidth(percent) / 2, box.getY() + 5);
+        }
+    }
+
+    private static Polygon[] hexagonsAround(ArrayList<HexagonalBox> boxes) {
+        Polygon[] hexagons = new Polygon[boxes.size()];
+        for (int cell = 0; cell < boxes.size(); cell++) {
+            HexagonalBox box = boxes.get(cell);
+            hexagons[cell] = new Polygon();
+            for (int corner = 0; corner < 6; corner++) {
+                double angle = Math.toRadians(60 * corner - 90);
+                hexagons[cell].addPoint(box.getX() + (int) Math.round(40 * Math.cos(angle)), box.getY() + (int) Math.round(40 * Math.sin(angle)));
+            }
+        }
+        return hexagons;
+    }
+
+    // traces a ray with the continuous rules, returning the ends of its path in the same form as Board.iterate
+    private ArrayList<Integer> shootContinuousRay(int entry) {
+        if (atomCircles == null) atomCircles = continuousRays.gridFor(RayTracer.layoutOf(atomBoxNumbers));
+        ArrayList<Ray> segments = new ArrayList<>();
+        int exit = continuousRays.shoot(atomCircles, entry, segments);
+        for (Ray ray : segments) rayPaths.addSegment(ray.getX1(), ray.getY1(), ray.getX2(), ray.getY2());
+        ArrayList<Integer> ends = new ArrayList<>();
+        ends.add(entry);
+        ends.add(exit == RayTracer.LOOPED ? entry : exit); // a ray trapped between atoms never comes back out, treat it like a reflection
+        return ends;
     }
 
     /**
@@ -265,7 +498,7 @@ public class Game {
      * Method to initialise all the game's atom positions (as in, which hexagonal box they occupy)
      * @return An arraylist of the atoms
      */
-    private ArrayList<Atom> generateAtoms() {
+    private ArrayList<Atom> generateAtoms(Autosave.Saved resumed) {
         if (hexagonalBoxes == null) {
             JOptionPane.showMessageDialog(null, "Error: HexagonalBoxes arraylist is null.", null, JOptionPane.ERROR_MESSAGE);
             System.exit(-1);
@@ -273,21 +506,42 @@ public class Game {
         if (hexagonalBoxes.size() != 61) {
             JOptionPane.showMessageDialog(null, "Error: HexagonalBoxes arraylist length is not 61 as expected.", null, JOptionPane.ERROR_MESSAGE);
         }
-        int hexagonalBoxesLength = hexagonalBoxes.size();
-        int atomPosIndex = rand.nextInt(0, hexagonalBoxesLength);
+        AtomGenerationEvent atomGenerationEvent = new AtomGenerationEvent();
+        atomGenerationEvent.begin();
+
+        long layout;
+        int attempts = 1;
+        PuzzlePack puzzlePack = PuzzlePack.requested();
+        if (resumed != null) { // the layout it was saved with, however that was picked
+            layout = resumed.getResult().getAtoms();
+            replay = new ReplayWriter(gameSeed.getSeed(), layout, NUM_OF_ATOMS, resumed.getResult().getSource());
+        } else if (hardLayout != 0) {
+            layout = hardLayout;
+            replay = new ReplayWriter(gameSeed.getSeed(), layout, NUM_OF_ATOMS, ReplayWriter.SOURCE_HARD);
+        } else if (puzzlePack != null && puzzlePack.getNumAtoms() == NUM_OF_ATOMS) { // rated layout from the pack given on the command line
+            layout = puzzlePack.pick(gameSeed.getLayoutRandom()).getAtoms();
+            replay = new ReplayWriter(gameSeed.getSeed(), layout, NUM_OF_ATOMS, ReplayWriter.SOURCE_PACK);
+        } else {
+            layout = gameSeed.randomLayout(NUM_OF_ATOMS); // boxes already holding an atom are redrawn
+            attempts = gameSeed.getLayoutDraws();
+            replay = new ReplayWriter(gameSeed.getSeed(), layout, NUM_OF_ATOMS, ReplayWriter.SOURCE_SEED);
+        }
 
         ArrayList<Atom> atoms = new ArrayList<>();
-        for (int i = 0; i < NUM_OF_ATOMS; i++) {
-            while (hexagonalBoxes.get(atomPosIndex).HasAtom()) { // ensures that atoms do not generate in the same box
-                atomPosIndex = rand.nextInt(0, hexagonalBoxesLength);
-
-            }
+        for (int atomPosIndex = 0; atomPosIndex < hexagonalBoxes.size(); atomPosIndex++) {
+            if (!RayTracer.hasAtom(layout, atomPosIndex)) continue;
             raySystem.setrandom(raySystem, atomPosIndex + 1);
             atomBoxNumbers.add(atomPosIndex + 1);
             Atom atom = new Atom(hexagonalBoxes.get(atomPosIndex).getX(), hexagonalBoxes.get(atomPosIndex).getY());
             hexagonalBoxes.get(atomPosIndex).setHasAtom(true); // that box now has an atom present. set respective boolean hasAtom to true.
             atoms.add(atom);
         }
+
+        if (atomGenerationEvent.shouldCommit()) {
+            atomGenerationEvent.atoms = atoms.size();
+            atomGenerationEvent.attempts = attempts;
+            atomGenerationEvent.commit();
+        }
         return atoms;
     }
 
@@ -370,11 +624,151 @@ public class Game {
         hexagonalBoxArrayList.add(new HexagonalBox(937, 361));
     }
 
+    /**
+     * Marks this game's session as finished (only counted once)
+     */
+    public void endSession() {
+        if (sessionEnded) return;
+        sessionEnded = true;
+        closeSession();
+        replay.gameEnded(getScore(), playerName);
+        events.publish(new GameEvents.GameEnded(playerName, getScore()));
+        if (autosave != null) autosave.finished();
+        if (practice) return; // a game with undo isn't a fair record
+        if (continuousRays != null) return; // replays are checked with the hex rules, so a continuous game would never validate
+        CompletableFuture.runAsync(() -> { // kept off the EDT, losing a replay shouldn't interrupt the game
+            try {
+                replay.save(ReplayWriter.replayDirectory());
+            } catch (Exception e) {
+                System.err.println("Could not save replay: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops counting this game as active and stops its background work, when it ends or its screen is let go before it does.
+     * A game left part way through stays autosaved, to be offered again next time.
+     */
+    public void closeSession() {
+        if (sessionClosed) return;
+        sessionClosed = true;
+        if (atomProbabilities != null) atomProbabilities.shutdown();
+        Metrics.sessionEnded();
+    }
+
+    private void recordHistory() {
+        history.record(rayPaths.size(), markers.size(), numGuesses, numMarkersUsed, numIncorrectGuesses, replay.size());
+        if (autosave != null) autosave.actionRecorded(replay);
+    }
+
+    // fires the saved rays and makes the saved guesses again, rays always come before guesses
+    private void resume(Replayer.Result saved) {
+        Supplier<Color> chooser = markerColours;
+        for (int i = 0; i < saved.getRaysFired(); i++) {
+            int colour = saved.getRayColour(i);
+            markerColours = () -> colour == ReplayWriter.NO_COLOUR ? null : new Color(colour);
+            shootRay(saved.getRayEntry(i));
+        }
+        markerColours = chooser;
+        for (int i = 0; i < saved.getGuesses(); i++) makeGuess(saved.getGuessedBox(i));
+    }
+
+    /**
+     * Takes back the last ray or guess, in practice games
+     * @return Whether there was anything to take back
+     */
+    public boolean undo() {
+        if (!canUndo()) return false;
+        history.undo();
+        restoreHistory();
+        return true;
+    }
+
+    /**
+     * Puts back the last ray or guess that was undone, in practice games
+     * @return Whether there was anything to put back
+     */
+    public boolean redo() {
+        if (!canRedo()) return false;
+        history.redo();
+        restoreHistory();
+        return true;
+    }
+
+    public boolean canUndo() {
+        return practice && !sessionEnded && history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return practice && !sessionEnded && history.canRedo();
+    }
+
+    // sets everything back to the sizes in the history's current snapshot, the arrays keep what's past them for redo
+    private void restoreHistory() {
+        int rays = history.get(GameHistory.RAYS);
+        rayPaths.setSize(rays);
+        rayIndex.setSize(rayPaths, rays);
+        firedRays.setSize(rays);
+        markers.setSize(history.get(GameHistory.MARKERS));
+        numGuesses = history.get(GameHistory.GUESSES);
+        numMarkersUsed = history.get(GameHistory.MARKERS_USED);
+        numIncorrectGuesses = history.get(GameHistory.INCORRECT_GUESSES);
+        replay.setSize(history.get(GameHistory.REPLAY_BYTES));
+        if (autosave != null) autosave.rewound(replay);
+        if (hoveredRay >= rays) hoveredRay = -1;
+        if (pinnedRay >= rays) pinnedRay = -1;
+        if (atomProbabilities != null) { // it only takes rays forward, so it starts again from the rays left
+            atomProbabilities.shutdown();
+            atomProbabilities = null;
+            if (showAtomProbabilities) {
+                showAtomProbabilities = false;
+                toggleAtomProbabilities();
+            }
+        }
+        events.publish(new GameEvents.StateRestored(rays, numGuesses, getScore()));
+    }
+
+    /**
+     * Shows or hides the shading of how likely each box is to hold an atom. Only for the usual hex rules.
+     */
+    public void toggleAtomProbabilities() {
+        if (continuousRays != null) return;
+        if (atomProbabilities == null) {
+            atomProbabilities = new AtomProbabilities(RayTracer.getInstance(), NUM_OF_ATOMS, Runtime.getRuntime().availableProcessors(),
+                    gameSeed.getSeed(), (probabilities, exact) -> gameScreen.repaint());
+            for (int i = 0; i < firedRays.size(); i++) atomProbabilities.rayFired(firedRays.getEntry(i), firedRays.getExit(i));
+        }
+        showAtomProbabilities = !showAtomProbabilities;
+        gameScreen.repaint();
+    }
+
+    /**
+     * Shows or hides the performance HUD (frame rate, paint and trace times, memory, GC and EDT latency)
+     */
+    public void togglePerformanceHud() {
+        gameScreen.getHud().toggle(gameScreen);
+    }
+
     public void toggleInternalBoardSetting() {
         seeAtomsAndRays = !seeAtomsAndRays;
         gameScreen.repaint();
     }
 
+    /**
+     * @return Where the game publishes what happens in it
+     */
+    public GameEvents getEvents() {
+        return events;
+    }
+
+    /**
+     * Replaces the colour chooser that's asked for the markers of each deflected ray, for scripted play
+     * @param markerColours Gives a colour, or null for the default
+     */
+    public void setMarkerColours(Supplier<Color> markerColours) {
+        this.markerColours = markerColours;
+    }
+
     public String getPlayerName() {
         return playerName;
     }
@@ -383,10 +777,59 @@ public class Game {
         this.playerName = playerName;
     }
 
+    /**
+     * @return Whether a ray has already gone in or come out of this exit number, so it can't be fired from
+     */
+    public boolean isExitUsed(int exitNumber) {
+        return firedRays.isUsed(exitNumber);
+    }
+
+    /**
+     * @return "absorbed", "reflected" or "normal/deflected" for the last ray fired, or null if there isn't one
+     */
+    public String getLastRayStatus() {
+        if (firedRays.size() == 0) return null;
+        int last = firedRays.size() - 1;
+        if (firedRays.getExit(last) == RayTracer.ABSORBED) return "absorbed";
+        return firedRays.getExit(last) == firedRays.getEntry(last) ? "reflected" : "normal/deflected";
+    }
+
+    public boolean hasGuessed(int boxNumber) {
+        for (int i = 0; i < numGuesses; i++) if (guesses[i] == boxNumber) return true;
+        return false;
+    }
+
+    public int getNumGuesses() {
+        return numGuesses;
+    }
+
+    public boolean isPractice() {
+        return practice;
+    }
+
     public Boolean isAtomLocationGuessCorrect(int boxNumber) {
         return atomBoxNumbers.contains(boxNumber);
     }
 
+    /**
+     * Checks a guess, counting it against the player if it's wrong
+     * @param boxNumber The hexagonal box number (1-61) guessed to hold an atom
+     * @return Whether the guess was correct
+     */
+    public boolean makeGuess(int boxNumber) {
+        boolean correct = isAtomLocationGuessCorrect(boxNumber);
+        if (!correct) addIncorrectAtomGuess();
+        replay.guessMade(boxNumber, correct);
+        guesses[numGuesses++] = boxNumber;
+        recordHistory();
+        events.publish(new GameEvents.GuessMade(boxNumber, correct, getScore()));
+        return correct;
+    }
+
+    public long getSeed() {
+        return gameSeed.getSeed();
+    }
+
     public void addIncorrectAtomGuess() {
         numIncorrectGuesses++;
     }
@@ -0,0 +1,63 @@
+package main;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * What happens in a game, published by Game as it's played for anything that shows or records it to subscribe to,
+ * so the game logic doesn't have to know about any window.
+ * Events are delivered straight away on the thread that published them, in the order they were subscribed.
+ */
+public class GameEvents {
+    public sealed interface Event permits RayFired, MarkerPlaced, GuessMade, GameEnded, StateRestored {}
+
+    /**
+     * @param exit Exit number the ray came out of, or RayTracer.ABSORBED
+     * @param status "absorbed", "reflected" or "normal/deflected"
+     * @param score The player's score with this ray's markers counted
+     */
+    public record RayFired(int entry, int exit, String status, int score) implements Event {}
+
+    /**
+     * @param exitNumber Exit the marker was put next to
+     */
+    public record MarkerPlaced(int exitNumber, Color colour) implements Event {}
+
+    /**
+     * @param score The player's score with this guess counted
+     */
+    public record GuessMade(int boxNumber, boolean correct, int score) implements Event {}
+
+    public record GameEnded(String playerName, int score) implements Event {}
+
+    /**
+     * Undo or redo has taken the game back or forward to how it was after an earlier action
+     * @param rays Rays fired as of then
+     * @param guesses Guesses made as of then
+     */
+    public record StateRestored(int rays, int guesses, int score) implements Event {}
+
+    private final Map<Class<? extends Event>, List<Consumer<? super Event>>> listeners = new HashMap<>();
+
+    /**
+     * @param type The kind of event to be told about
+     * @param listener Called with each one, on the publisher's thread
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Event> void subscribe(Class<T> type, Consumer<? super T> listener) {
+        listeners.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>()).add((Consumer<? super Event>) listener);
+    }
+
+    public void publish(Event event) {
+        List<Consumer<? super Event>> subscribed;
+        synchronized (this) {
+            subscribed = listeners.get(event.getClass());
+        }
+        if (subscribed == null) return;
+        for (Consumer<? super Event> listener : subscribed) listener.accept(event);
+    }
+}
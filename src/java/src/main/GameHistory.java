@@ -0,0 +1,79 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * The points a game can be undone to and redone from.
+ * Everything a game keeps as it's played (ray paths, markers, rays fired, guesses, the replay) is only ever appended to,
+ * so the state after any action is just how long each of those was, plus the score counters: a snapshot is a handful of ints,
+ * and every snapshot shares the same underlying arrays. Stepping back or forward moves a cursor and sets the sizes,
+ * with nothing copied or allocated, and doing something new after going back drops the snapshots that were ahead.
+ */
+public class GameHistory {
+    public static final int RAYS = 0;
+    public static final int MARKERS = 1;
+    public static final int GUESSES = 2;
+    public static final int MARKERS_USED = 3;
+    public static final int INCORRECT_GUESSES = 4;
+    public static final int REPLAY_BYTES = 5;
+    private static final int FIELDS = 6;
+
+    private int[] snapshots = new int[FIELDS * 16]; // snapshot i is fields FIELDS * i to FIELDS * i + FIELDS - 1
+    private int current = -1;
+    private int last = -1; // the newest snapshot that can be redone to
+
+    /**
+     * Records the state after an action (or at the start of the game), dropping anything that could have been redone
+     */
+    public void record(int rays, int markers, int guesses, int markersUsed, int incorrectGuesses, int replayBytes) {
+        current++;
+        last = current;
+        if (FIELDS * (current + 1) > snapshots.length) snapshots = Arrays.copyOf(snapshots, snapshots.length * 2);
+        int at = FIELDS * current;
+        snapshots[at + RAYS] = rays;
+        snapshots[at + MARKERS] = markers;
+        snapshots[at + GUESSES] = guesses;
+        snapshots[at + MARKERS_USED] = markersUsed;
+        snapshots[at + INCORRECT_GUESSES] = incorrectGuesses;
+        snapshots[at + REPLAY_BYTES] = replayBytes;
+    }
+
+    public boolean canUndo() {
+        return current > 0;
+    }
+
+    public boolean canRedo() {
+        return current < last;
+    }
+
+    /**
+     * Steps back to the snapshot before, read it with get
+     */
+    public void undo() {
+        if (!canUndo()) throw new IllegalStateException("Nothing to undo");
+        current--;
+    }
+
+    /**
+     * Steps forward to the snapshot that was undone last, read it with get
+     */
+    public void redo() {
+        if (!canRedo()) throw new IllegalStateException("Nothing to redo");
+        current++;
+    }
+
+    /**
+     * @param field One of RAYS, MARKERS, GUESSES, MARKERS_USED, INCORRECT_GUESSES or REPLAY_BYTES
+     * @return Its value in the current snapshot
+     */
+    public int get(int field) {
+        return snapshots[FIELDS * current + field];
+    }
+
+    /**
+     * @return Actions that can be undone
+     */
+    public int getPosition() {
+        return current;
+    }
+}
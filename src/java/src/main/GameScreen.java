@@ -1,11 +1,20 @@
 package main;
 
+import diagnostics.ActionTrace;
+import diagnostics.Metrics;
+
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
 
 /**
  * Used for the displaying of the BlackBox game elements inside the GameWindow
  * Extends the JPanel class for its paintComponent method
+ * The board is always laid out as 1280x720 and scaled to fit the panel by a single transform, with black bars on the sides that don't fit
  */
 public class GameScreen extends JPanel {
     /**
@@ -13,6 +22,11 @@ public class GameScreen extends JPanel {
      */
     private final Game game;
 
+    /**
+     * Frame rate, paint times, memory and the like, drawn over the board when toggled with F3
+     */
+    private final transient PerformanceHud hud = new PerformanceHud(); // a panel is never serialised, and the HUD's probe thread couldn't be
+
     /**
      * Constructor for the GameScreen class.
      *
@@ -24,6 +38,22 @@ public class GameScreen extends JPanel {
         setPreferredSize(new Dimension(1280, 720)); // setting the resolution of the game
         setBackground(Color.BLACK);
         setVisible(true);
+
+        MouseAdapter rayPicker = new MouseAdapter() { // highlights the ray under the mouse, when rays are shown
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                Point2D board = toBoard(e.getPoint());
+                if (game.hover(board.getX(), board.getY())) repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Point2D board = toBoard(e.getPoint());
+                if (game.pick(board.getX(), board.getY())) repaint();
+            }
+        };
+        addMouseListener(rayPicker);
+        addMouseMotionListener(rayPicker);
     }
 
     /**
@@ -33,8 +63,44 @@ public class GameScreen extends JPanel {
      */
     @Override
     public void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
-        game.render(g);
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.transform(getLayoutTransform());
+        game.render(g2d);
+        g2d.dispose();
+        Metrics.renderTime().recordSince(paintStart);
+        hud.framePainted(paintStart, System.nanoTime() - paintStart);
+        hud.draw((Graphics2D) g); // in panel pixels so it stays readable however the board is scaled
+        ActionTrace.painted(); // this frame is the first to show any actions handled since the last
+    }
+
+    /**
+     * @return The transform from board coordinates (1280x720) to this panel's, the largest uniform scale that fits, centred
+     */
+    public AffineTransform getLayoutTransform() {
+        double scale = Math.min((double) getWidth() / SpriteAtlas.BOARD_WIDTH, (double) getHeight() / SpriteAtlas.BOARD_HEIGHT);
+        if (scale <= 0) scale = 1; // not laid out yet
+        AffineTransform layout = AffineTransform.getTranslateInstance(Math.round((getWidth() - SpriteAtlas.BOARD_WIDTH * scale) / 2),
+                Math.round((getHeight() - SpriteAtlas.BOARD_HEIGHT * scale) / 2));
+        layout.scale(scale, scale);
+        return layout;
+    }
+
+    // a point on the panel in board coordinates
+    private Point2D toBoard(Point point) {
+        try {
+            return getLayoutTransform().inverseTransform(point, null);
+        } catch (NoninvertibleTransformException e) { // the scale is never 0
+            return new Point2D.Double(-1, -1);
+        }
+    }
+
+    /**
+     * @return The performance HUD drawn over this screen
+     */
+    public PerformanceHud getHud() {
+        return hud;
     }
 
     /**
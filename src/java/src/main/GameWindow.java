@@ -1,24 +1,22 @@
 package main;
 
 import computations.LeaderBoardData;
-import menus.HowToPlayWindow;
-import menus.StartScreen;
+import diagnostics.ActionTrace;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Responsible for the window that the user plays Blackbox on
+ * Responsible for the screen that the user plays Blackbox on, shown in the Navigator's window
  */
-public class GameWindow {
+public class GameWindow implements Navigator.Screen {
     // Application Variables
-    private final JFrame gameWindow;
+    private final JPanel gameWindow;
     private final GameScreen gameScreen;
     private final Game game;
 
@@ -29,33 +27,28 @@ public class GameWindow {
     private JLabel scoreLabel;
     private JLabel rayStatusLabel;
     private JButton endGameButton;
+    private JLabel playerNameLabel;
+    private JFrame guessWindow; // open while the player is guessing, null otherwise
+    private JButton submitGuessButton;
 
-    private final ArrayList<Integer> visitedBoxes = new ArrayList<>();
-    private static final Random rand = new Random();
     private int value = 1;
     private static String name = "hello";
     private String lastRayStatus = "normal/deflected";
+    private boolean rayStatusChanged = false; // since the labels were last updated
+    private final CoalescedUpdate updateLabels = new CoalescedUpdate(this::updateLabels); // once for any number of game events
 
     /**
-     * Constructor that links the game's window to the game's screen and the overall game logic
+     * Constructor that links the game's screen to the game's board and the overall game logic, shown once Game.start is called
      * @param gameScreen An instance of the GameScreen class
      * @param game An instance of the Game class
      */
     public GameWindow(GameScreen gameScreen, Game game) {
         // Window Construction
         this.game = game;
-        gameWindow = new JFrame();
-        gameWindow.setSize(1280, 720);
-        gameWindow.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-        gameWindow.setLocationRelativeTo(null);
-        gameWindow.setResizable(false);
-        gameWindow.setTitle("Blackbox+ - By Group 50");
-        gameWindow.setIconImage(gameIcon);
-        gameWindow.setLayout(new BorderLayout());
+        gameWindow = new JPanel(new BorderLayout());
 
         // Game Panel (manages the rendering of images/rays/assets/etc.)
         this.gameScreen = gameScreen;
-        displayUsernameWindow();
         try {
             gameWindow.add(gameScreen, BorderLayout.CENTER); // adding the screen to the window (the screen pretty much contains the game/visuals)
         } catch (Exception ex) {
@@ -73,8 +66,77 @@ public class GameWindow {
         }
 
 
-        gameWindow.pack(); // creates the window with its components according to a specific resolution
-        gameWindow.setVisible(true);
+        // F2 shows or hides how likely each box is to hold an atom, whichever component has focus
+        gameWindow.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F2, 0), "toggleAtomProbabilities");
+        gameWindow.getActionMap().put("toggleAtomProbabilities", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                game.toggleAtomProbabilities();
+            }
+        });
+        // F3 shows or hides the performance HUD
+        gameWindow.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "togglePerformanceHud");
+        gameWindow.getActionMap().put("togglePerformanceHud", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                game.togglePerformanceHud();
+            }
+        });
+        if (game.isPractice()) { // Ctrl+Z and Ctrl+Y take back rays and guesses, and put them back
+            gameWindow.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, KeyEvent.CTRL_DOWN_MASK), "undo");
+            gameWindow.getActionMap().put("undo", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    game.undo();
+                }
+            });
+            gameWindow.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, KeyEvent.CTRL_DOWN_MASK), "redo");
+            gameWindow.getActionMap().put("redo", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    game.redo();
+                }
+            });
+        }
+
+        // the game says what's happened, the labels and board catch up once the burst is over
+        GameEvents events = game.getEvents();
+        events.subscribe(GameEvents.RayFired.class, rayFired -> {
+            lastRayStatus = rayFired.status();
+            rayStatusChanged = true;
+            updateLabels.request();
+        });
+        events.subscribe(GameEvents.MarkerPlaced.class, markerPlaced -> updateLabels.request());
+        events.subscribe(GameEvents.GuessMade.class, guessMade -> updateLabels.request());
+        events.subscribe(GameEvents.StateRestored.class, restored -> {
+            lastRayStatus = game.getLastRayStatus();
+            rayStatusChanged = true;
+            if (guessWindow != null) guessesRestored(restored.guesses());
+            updateLabels.request();
+        });
+    }
+
+    /**
+     * Asks for the player's name, before the game is first shown
+     */
+    public void askPlayerName() {
+        displayUsernameWindow(game.getPlayerName());
+        playerNameLabel.setText("  | Player Name: " + name);
+    }
+
+    @Override
+    public JComponent getComponent() {
+        return gameWindow;
+    }
+
+    @Override
+    public boolean isResizable() { // the board scales to fit
+        return true;
+    }
+
+    @Override
+    public void discarded() { // finished or not, the game is gone once its screen is
+        game.closeSession();
     }
 
     /**
@@ -92,15 +154,17 @@ public class GameWindow {
         arrowNumberInputField.setForeground(Color.WHITE);
 
         arrowNumberInputField.addActionListener(e -> {
+            ActionTrace.begin(ActionTrace.SHOOT_RAY, e.getWhen()); // timed through to the frame that shows the ray
             validateInput();
-            gameScreen.repaint();
+            updateLabels.request(); // even when the input was rejected, so the action's trace ends on a paint
+            ActionTrace.handled();
         });
 
         rayStatusLabel = new JLabel("| No ray has been shot yet.");
         rayStatusLabel.setFont(new Font("Berlin Sans FB", Font.PLAIN, 20));
         rayStatusLabel.setForeground(Color.WHITE);
 
-        JLabel playerNameLabel = new JLabel("  | Player Name: " + name);
+        playerNameLabel = new JLabel("  | Player Name: " + name);
         playerNameLabel.setForeground(Color.WHITE);
         playerNameLabel.setFont(new Font("Berlin Sans FB", Font.PLAIN, 20));
 
@@ -112,7 +176,7 @@ public class GameWindow {
         howToPlayButton.setFont(new Font("Berlin Sans FB", Font.PLAIN, 20));
         howToPlayButton.setBounds(50, 50, 100, 30);
         howToPlayButton.setFocusable(false);
-        howToPlayButton.addActionListener(e -> new HowToPlayWindow());
+        howToPlayButton.addActionListener(e -> Navigator.getInstance().show(Navigator.HOW_TO_PLAY)); // Back returns to this game
 
         endGameButton = new JButton("End Game");
         endGameButton.setFont(new Font("Berlin Sans FB", Font.PLAIN, 20));
@@ -129,6 +193,32 @@ public class GameWindow {
         buttonPanel.add(rayStatusLabel);
         buttonPanel.add(scoreLabel);
         buttonPanel.add(howToPlayButton);
+        if (game.isPractice()) {
+            buttonPanel.add(undoRedoButton("Undo", game::undo));
+            buttonPanel.add(undoRedoButton("Redo", game::redo));
+        }
+    }
+
+    // a button for practice games that takes back or puts back a ray or guess
+    private static JButton undoRedoButton(String text, Runnable action) {
+        JButton button = new JButton(text);
+        button.setFont(new Font("Berlin Sans FB", Font.PLAIN, 20));
+        button.setFocusable(false);
+        button.addActionListener(e -> action.run());
+        return button;
+    }
+
+    /**
+     * Goes back to guessing in a resumed game that had got that far
+     */
+    public void resumeGuessing() {
+        endGameButton.setEnabled(false);
+        if (game.getNumGuesses() < game.getNumAtoms()) {
+            guessAtomsWindow();
+        } else { // saved just before the score was shown
+            game.toggleInternalBoardSetting();
+            endGameWindow();
+        }
     }
 
     /**
@@ -145,72 +235,98 @@ public class GameWindow {
         game.setEnableNumberedBoard(true);
         gameScreen.repaint();
 
-        ArrayList<Integer> guessList = new ArrayList<>();
-        AtomicInteger num_of_guesses = new AtomicInteger(game.getNumAtoms());
-
-        JButton submitButton = new JButton("Submit Guess (" + game.getNumAtoms() + " guesses left)");
+        JButton submitButton = new JButton();
+        showGuessesLeft(submitButton, game.getNumGuesses());
         submitButton.addActionListener(e -> {
             if (e.getSource() == submitButton) {
+                ActionTrace.begin(ActionTrace.GUESS, e.getWhen());
                 try {
                     int guess = Integer.parseInt(textField.getText());
                     if (guess < 1 || guess > 61) { // validation check
                         throw new IllegalArgumentException("Invalid guess. The boxes are numbered from 1-61");
                     }
-                    if (guessList.contains(guess)) { // validation check 2
+                    if (game.hasGuessed(guess)) { // validation check 2, so that they can't guess the same correct box over and over to reduce points
                         throw new IllegalArgumentException("You have already guessed that box number.");
                     }
 
-                    if (!game.isAtomLocationGuessCorrect(guess)) { // if it's incorrect, increment the amount of wrong guesses
-                        game.addIncorrectAtomGuess();
-                        JOptionPane.showMessageDialog(null, "Unfortunately your guess was wrong.", "Incorrect Guess", JOptionPane.INFORMATION_MESSAGE);
+                    boolean correct = game.makeGuess(guess); // if it's incorrect, the game counts it as a wrong guess
+                    ActionTrace.stage("checked");
+                    if (!correct) {
+                        showMessage("Unfortunately your guess was wrong.", "Incorrect Guess", JOptionPane.INFORMATION_MESSAGE);
                     } else { // guess was correct
-                        JOptionPane.showMessageDialog(null, "Your guess was correct!.", "Correct Guess", JOptionPane.INFORMATION_MESSAGE);
+                        showMessage("Your guess was correct!.", "Correct Guess", JOptionPane.INFORMATION_MESSAGE);
                     }
 
-                    num_of_guesses.decrementAndGet(); // decrease the amount of guesses the player has
-                    guessList.add(guess); // add guess to a list to ensure the same guess isn't made again (especially so that they can't guess the same correct box over and over to reduce points)
 
                     // Check if there's no more guesses left
-                    if (num_of_guesses.get() <= 0) {
-                        jFrame.dispose();
-                        game.setEnableNumberedBoard(false);
+                    if (game.getNumGuesses() >= game.getNumAtoms()) {
+                        closeGuessWindow();
                         game.toggleInternalBoardSetting(); // game is over at this point, allow user to see atoms and rays
                         endGameWindow(); // score window
                     }
 
                     // Otherwise reset the text and continue
-                    submitButton.setText("Submit Guess (" + num_of_guesses + " guesses left)");
+                    showGuessesLeft(submitButton, game.getNumGuesses());
 
                 } catch (Exception ex) { // invalid input exception handling
-                    JOptionPane.showMessageDialog(null, ex.getMessage(), "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                    showMessage(ex.getMessage(), "Invalid Input", JOptionPane.ERROR_MESSAGE);
                 }
+                updateLabels.request(); // the guess is timed to the next frame of the board
+                ActionTrace.handled();
             }
         });
 
         jFrame.add(submitButton);
         jFrame.add(textField);
+        if (game.isPractice()) { // guesses can be taken back too, from this window as it has the focus
+            jFrame.add(undoRedoButton("Undo", game::undo));
+            jFrame.add(undoRedoButton("Redo", game::redo));
+        }
         jFrame.pack();
         jFrame.setVisible(true);
+        guessWindow = jFrame;
+        submitGuessButton = submitButton;
+    }
+
+    private void showGuessesLeft(JButton submitButton, int guesses) {
+        submitButton.setText("Submit Guess (" + (game.getNumAtoms() - guesses) + " guesses left)");
+    }
+
+    // undoing every guess goes back to firing rays, so the guess window goes until End Game is pressed again
+    private void guessesRestored(int guesses) {
+        if (guesses > 0) {
+            showGuessesLeft(submitGuessButton, guesses);
+            return;
+        }
+        closeGuessWindow();
+        endGameButton.setEnabled(true);
+    }
+
+    private void closeGuessWindow() {
+        guessWindow.dispose();
+        guessWindow = null;
+        submitGuessButton = null;
+        game.setEnableNumberedBoard(false);
+        gameScreen.repaint();
     }
 
     /**
      * Method that creates a window for the user to input their username
+     * @param defaultName Name suggested in the input box
      */
-    public static void displayUsernameWindow() {
-        JFrame frame = new JFrame();
-        frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+    public static void displayUsernameWindow(String defaultName) {
+        JFrame frame = Navigator.getInstance().getFrame();
         ImageIcon icon = new ImageIcon(gameIcon.getScaledInstance(125, 125, Image.SCALE_SMOOTH));
 
         while (true) {
             try {
-                name = (String) JOptionPane.showInputDialog(frame, "Please enter your name:", "Username", JOptionPane.PLAIN_MESSAGE, icon, null, ("user" + rand.nextInt(99999)));
+                name = (String) JOptionPane.showInputDialog(frame, "Please enter your name:", "Username", JOptionPane.PLAIN_MESSAGE, icon, null, defaultName);
                 if (name.length() > 30) throw new IllegalArgumentException("Name must be within 30 characters.");
                 break;
             } catch (IllegalArgumentException e) {
                 JOptionPane.showMessageDialog(null, "Error: " + e.getMessage());
             }
         }
-        frame.dispose(); // Close the frame after getting the name
     }
 
     /**
@@ -225,9 +341,8 @@ public class GameWindow {
         jFrame.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                gameWindow.dispose();
                 jFrame.dispose();
-                new StartScreen();
+                Navigator.getInstance().show(Navigator.START);
             }
         });
 
@@ -237,7 +352,8 @@ public class GameWindow {
         jFrame.add(finalScore, BorderLayout.CENTER);
         jFrame.setVisible(true);
 
-        LeaderBoardData.storeScore(name, game.getScore());
+        if (!game.isPractice()) LeaderBoardData.storeScore(name, game.getScore()); // practice games can be undone, so they don't count
+        game.endSession();
     }
 
     /**
@@ -265,46 +381,56 @@ public class GameWindow {
         try {
             value = Integer.parseInt(arrowNumberInputField.getText());
             if (value < 1 || value > 54) {
-                JOptionPane.showMessageDialog(null, "Enter a number between 1 and 54 (inclusive)", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                showMessage("Enter a number between 1 and 54 (inclusive)", "Invalid Input", JOptionPane.ERROR_MESSAGE);
                 arrowNumberInputField.setText("1"); // Reset to default value
                 value = 1;
                 rayStatusLabel.setText("Shoot ray from: " + value);
             } else {
-                if (visitedBoxes.contains(value)) {
-                    JOptionPane.showMessageDialog(null, "This entry already has a ray generated from it", "Input Already Used", JOptionPane.ERROR_MESSAGE);
+                if (game.isExitUsed(value)) { // a ray has already gone in or come out here
+                    showMessage("This entry already has a ray generated from it", "Input Already Used", JOptionPane.ERROR_MESSAGE);
                     arrowNumberInputField.setText("1"); // Reset to default value
                     value = 1;
                 } else {
-                    visitedBoxes.add(value);
-                    game.shootRay(value);
-                    scoreLabel.setText("| Score: " + game.getScore() + " |  ");
-                    rayStatusLabel.setText("| Last ray was " + getLastRayStatus());
-                    gameScreen.repaint();
+                    ActionTrace.stage("validated");
+                    game.shootRay(value); // the labels and board are updated from the game's events
+                    ActionTrace.stage("shot");
                 }
             }
         } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(null, "Please enter a valid integer.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            showMessage("Please enter a valid integer.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
             arrowNumberInputField.setText("1"); // Reset to default value
             rayStatusLabel.setText("Shoot ray from: " + value);
         }
     }
 
+    // brings the score, the last ray's status and the board up to date with the game
+    private void updateLabels() {
+        scoreLabel.setText("| Score: " + game.getScore() + " |  ");
+        if (rayStatusChanged) { // otherwise leave any message about the input
+            rayStatusLabel.setText(lastRayStatus == null ? "| No ray has been shot yet." : "| Last ray was " + lastRayStatus);
+        }
+        rayStatusChanged = false;
+        gameScreen.repaint();
+    }
+
     /**
      * Method to create a JColorChooser window, in which the user selects a colour to be used for the marker
      * @return A colour chosen by the user, using JColorChooser
      */
     public Color askMarkerColor() {
-        return JColorChooser.showDialog(null, "Choose a colour for the Markers", Color.MAGENTA);
+        ActionTrace.playerWaitStarted(); // not counted in the ray's response time
+        try {
+            return JColorChooser.showDialog(null, "Choose a colour for the Markers", Color.MAGENTA);
+        } finally {
+            ActionTrace.playerWaitEnded();
+        }
     }
 
-    /**
-     * Method to add an exit point number to the visitedBoxes list, if visited.
-     * @param exitNumber The number represented by the arrow of the Blackbox board background
-     */
-    public void addVisitedBox(int exitNumber) {
-        if (!visitedBoxes.contains(exitNumber)) {
-            visitedBoxes.add(exitNumber);
-        }
+    // a message dialog, timed as waiting on the player rather than part of whatever action opened it
+    private static void showMessage(String message, String title, int messageType) {
+        ActionTrace.playerWaitStarted();
+        JOptionPane.showMessageDialog(null, message, title, messageType);
+        ActionTrace.playerWaitEnded();
     }
 
     /**
@@ -314,12 +440,4 @@ public class GameWindow {
     public String getLastRayStatus() {
         return lastRayStatus;
     }
-
-    /**
-     * Setter method for the status of the last ray that was shot
-     * @param lastRayStatus A string that contains the last ray's status
-     */
-    public void setLastRayStatus(String lastRayStatus) {
-        this.lastRayStatus = lastRayStatus;
-    }
 }
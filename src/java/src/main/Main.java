@@ -1,6 +1,7 @@
 package main;
 // java -jar out/artifacts/Blackbox___Software_Eng__II_Group50__jar/Blackbox---Software-Eng.-II-Group50-.jar
-import menus.StartScreen;
+import diagnostics.FlightRecording;
+import diagnostics.Metrics;
 
 import javax.swing.*;
 
@@ -9,9 +10,11 @@ import javax.swing.*;
  */
 public class Main {
     public static void main(String[] args) {
+        FlightRecording.startIfRequested();
+        Metrics.register();
         SwingUtilities.invokeLater(() -> {
             try {
-                new StartScreen();
+                Navigator.getInstance().show(Navigator.START);
             } catch (Exception ex) {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(null,ex.getMessage(), "Start Screen Open Error", JOptionPane.ERROR_MESSAGE);
@@ -0,0 +1,224 @@
+package main;
+
+import menus.Credits;
+import menus.HowToPlayWindow;
+import menus.Leaderboard;
+import menus.SetterMode;
+import menus.StartScreen;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The game's only window: every screen is a card in it, and moving between screens swaps the card instead of opening a new window.
+ * Menu screens are built once and kept for next time, the current and previous screens strongly and the rest through soft references,
+ * so they're instant to come back to but the garbage collector can still throw them away (and their images) if memory runs low.
+ * Whenever a screen is shown, the screens likely to come next have their images loaded in the background and are built while the player is looking at it.
+ * Only used on the Event Dispatch Thread, apart from image loading.
+ */
+public class Navigator {
+    public static final String START = "start";
+    public static final String LEADERBOARD = "leaderboard";
+    public static final String CREDITS = "credits";
+    public static final String HOW_TO_PLAY = "howToPlay";
+    public static final String SETTER_MODE = "setterMode";
+    public static final String GAME = "game"; // games, the game over message and scores are shown once and never kept
+    public static final String GAME_OVER = "gameOver";
+    public static final String SCORE = "score";
+    public static final String GUESSER_MODE = "guesserMode"; // a two player match, shown once like a game
+
+    private static final Image gameIcon = new ImageIcon(Objects.requireNonNull(GameWindow.class.getResource("/Icons/new_icon.png"))).getImage();
+    private static final Map<String, SoftReference<ImageIcon>> images = new ConcurrentHashMap<>();
+    private static Navigator instance;
+
+    /**
+     * Something that can be shown in the window
+     */
+    public interface Screen {
+        JComponent getComponent();
+
+        /**
+         * Called each time the screen is shown, for anything that has to happen again on every visit
+         */
+        default void shown() {}
+
+        /**
+         * Called once the window has let go of a screen that isn't a menu, so it will never be shown again
+         */
+        default void discarded() {}
+
+        /**
+         * @return Whether the player can resize the window while this screen shows, menus are drawn for a fixed size
+         */
+        default boolean isResizable() {
+            return false;
+        }
+    }
+
+    // how to build a menu screen, the images it needs and the screens usually opened from it
+    private record Page(Supplier<Screen> factory, String[] images, String[] likelyNext) {}
+
+    private final JFrame frame;
+    private final CardLayout cards = new CardLayout();
+    private final JPanel deck;
+    private final Map<String, Page> pages = new HashMap<>();
+    private final Map<String, SoftReference<Screen>> cached = new HashMap<>();
+    private String currentName;
+    private Screen current;
+    private String previousName;
+    private Screen previous; // kept so going back (from the rules to a game, say) doesn't lose anything
+    private Dimension size; // what the window is packed to
+    private Dimension fixedSize = new Dimension(); // big enough for every fixed size screen so far, smaller ones sit in the middle
+
+    private Navigator() {
+        frame = new JFrame("Black Box+ By Group 50");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        frame.setIconImage(gameIcon);
+        deck = new JPanel(cards) {
+            @Override
+            public Dimension getPreferredSize() {
+                return size != null ? size : super.getPreferredSize();
+            }
+        };
+        deck.setBackground(Color.BLACK);
+        frame.setContentPane(deck);
+
+        register(START, StartScreen::new, new String[]{StartScreen.BACKGROUND, Game.BACKGROUND}, LEADERBOARD, CREDITS);
+        register(LEADERBOARD, Leaderboard::new, new String[]{Leaderboard.BACKGROUND}, START);
+        register(CREDITS, Credits::new, new String[]{Credits.ANIMATION}, START);
+        register(HOW_TO_PLAY, HowToPlayWindow::new, new String[0]);
+        register(SETTER_MODE, SetterMode::new, new String[]{Game.BACKGROUND}, START);
+    }
+
+    public static Navigator getInstance() {
+        if (instance == null) instance = new Navigator();
+        return instance;
+    }
+
+    /**
+     * @return The window, for dialogs to sit on top of
+     */
+    public JFrame getFrame() {
+        return frame;
+    }
+
+    private void register(String name, Supplier<Screen> factory, String[] images, String... likelyNext) {
+        pages.put(name, new Page(factory, images, likelyNext));
+    }
+
+    /**
+     * Shows a menu screen, built only if it isn't already kept from last time
+     */
+    public void show(String name) {
+        Screen screen = screen(name);
+        if (screen != null) show(name, screen);
+    }
+
+    /**
+     * Shows a screen built elsewhere, which is let go once two more screens have been shown
+     */
+    public void show(String name, Screen screen) {
+        if (screen == current) {
+            screen.shown();
+            return;
+        }
+        if (previous != null && previous != screen && previous != current) {
+            deck.remove(previous.getComponent()); // still in the soft cache if it's a menu
+            if (!pages.containsKey(previousName)) previous.discarded();
+        }
+        if (screen == previous) {
+            previous = current;
+            previousName = currentName;
+        } else {
+            if (current != null) {
+                previous = current;
+                previousName = currentName;
+            }
+            deck.add(screen.getComponent(), name);
+        }
+        current = screen;
+        currentName = name;
+        cards.show(deck, name);
+        Dimension wanted = screen.getComponent().getPreferredSize();
+        if (screen.isResizable()) { // keeps whatever size the player last chose, if it's big enough
+            size = new Dimension(Math.max(wanted.width, deck.getWidth()), Math.max(wanted.height, deck.getHeight()));
+        } else {
+            fixedSize = new Dimension(Math.max(wanted.width, fixedSize.width), Math.max(wanted.height, fixedSize.height));
+            size = fixedSize;
+        }
+        frame.setResizable(screen.isResizable());
+        deck.revalidate();
+        frame.pack();
+        if (!frame.isVisible()) {
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+        }
+        screen.getComponent().requestFocusInWindow();
+        screen.shown();
+        Page page = pages.get(name);
+        if (page != null) for (String next : page.likelyNext) preload(next);
+    }
+
+    /**
+     * Goes back to the screen shown before this one, or the start screen if there wasn't one
+     */
+    public void back() {
+        if (previous != null) show(previousName, previous);
+        else show(START);
+    }
+
+    /**
+     * Loads a menu screen's images in the background, then builds it on the Event Dispatch Thread once that's free
+     */
+    public void preload(String name) {
+        Page page = pages.get(name);
+        if (page == null || cachedScreen(name) != null) return;
+        CompletableFuture.runAsync(() -> {
+            for (String path : page.images) image(path);
+        }).thenRun(() -> SwingUtilities.invokeLater(() -> {
+            if (cachedScreen(name) == null) screen(name);
+        }));
+    }
+
+    private Screen cachedScreen(String name) {
+        SoftReference<Screen> reference = cached.get(name);
+        return reference != null ? reference.get() : null;
+    }
+
+    // the kept screen, or a new one if it was never built or has been thrown away; null if it can't be built
+    private Screen screen(String name) {
+        Screen screen = cachedScreen(name);
+        if (screen != null) return screen;
+        try {
+            screen = pages.get(name).factory.get();
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(frame, "Failed to open " + name + ".", "Screen Open Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        cached.put(name, new SoftReference<>(screen));
+        return screen;
+    }
+
+    /**
+     * Loads an image from the resources once and shares it, until memory runs low and nothing is showing it
+     * @param path Resource path, such as "/Miscellaneous/leaderboard_bg.png"
+     */
+    public static ImageIcon image(String path) {
+        SoftReference<ImageIcon> reference = images.get(path);
+        ImageIcon icon = reference != null ? reference.get() : null;
+        if (icon == null) {
+            icon = new ImageIcon(Objects.requireNonNull(Navigator.class.getResource(path)));
+            images.put(path, new SoftReference<>(icon));
+        }
+        return icon;
+    }
+}
@@ -0,0 +1,183 @@
+package main;
+
+import java.awt.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An overlay of how the game is running, drawn in the corner of the GameScreen and toggled with F3 like the other debug views.
+ * Shows frames per second, paint time percentiles, the last ray's trace time and steps, heap use and allocation rate, GC pauses
+ * and how long events wait in the EDT's queue, so a struggling kiosk can be spotted without attaching a profiler.
+ * While hidden it does nothing at all. While shown, each paint only writes two numbers into ring buffers,
+ * the figures and the text are worked out at most twice a second.
+ */
+public class PerformanceHud {
+    private static final long SAMPLE_NANOS = 500_000_000L; // how often the text is brought up to date
+    private static final long PROBE_MILLIS = 250; // how often the EDT's queue is timed, which also keeps the HUD repainting
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color PANEL = new Color(0, 0, 0, 170);
+
+    private final long[] frameStarts = new long[256]; // when the last frames were painted, for frames per second
+    private final long[] paintTimes = new long[128];
+    private int frames = 0; // painted since the HUD was shown, so the rings hold min(frames, length)
+    private final long[] queueLatencies = new long[16];
+    private int probes = 0;
+    private volatile long lastTraceNanos = -1;
+    private volatile int lastTraceSteps = 0;
+
+    private boolean visible = false;
+    private ScheduledExecutorService prober;
+    private long lastSample = 0;
+    private long lastAllocatedBytes = -1;
+    private long lastGcCount = 0;
+    private long lastGcMillis = 0;
+    private String[] lines = new String[0];
+
+    /**
+     * Shows or hides the HUD
+     * @param screen Repainted by the EDT probe while the HUD is shown, so the figures stay live without any input
+     */
+    public void toggle(Component screen) {
+        visible = !visible;
+        if (visible) {
+            frames = 0;
+            probes = 0;
+            lastSample = 0;
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "performance-hud");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prober.scheduleAtFixedRate(() -> {
+                long posted = System.nanoTime();
+                EventQueue.invokeLater(() -> {
+                    queueLatencyMeasured(System.nanoTime() - posted);
+                    if (screen.isShowing()) screen.repaint();
+                    else if (visible) toggle(screen); // the game has been left, stop probing for it
+                });
+            }, 0, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            prober.shutdownNow();
+            prober = null;
+        }
+        screen.repaint();
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Counts a paint of the screen, on the EDT
+     * @param startNanos When the paint began (System.nanoTime)
+     * @param paintNanos How long it took
+     */
+    public void framePainted(long startNanos, long paintNanos) {
+        if (!visible) return;
+        frameStarts[frames % frameStarts.length] = startNanos;
+        paintTimes[frames % paintTimes.length] = paintNanos;
+        frames++;
+    }
+
+    /**
+     * Notes the last ray's trace, from any thread
+     * @param steps Boxes the ray passed through
+     */
+    public void rayTraced(long traceNanos, int steps) {
+        lastTraceSteps = steps;
+        lastTraceNanos = traceNanos;
+    }
+
+    /**
+     * Notes how long an event waited in the EDT's queue before it ran, on the EDT
+     */
+    public void queueLatencyMeasured(long nanos) {
+        queueLatencies[probes % queueLatencies.length] = nanos;
+        probes++;
+    }
+
+    /**
+     * Draws the HUD in the top left corner, in the Graphics' own (unscaled) coordinates
+     */
+    public void draw(Graphics2D g) {
+        if (!visible) return;
+        long now = System.nanoTime();
+        if (now - lastSample >= SAMPLE_NANOS) lines = sample(now);
+        g.setFont(FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) width = Math.max(width, metrics.stringWidth(line));
+        g.setColor(PANEL);
+        g.fillRect(8, 8, width + 16, lines.length * metrics.getHeight() + 12);
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < lines.length; i++) g.drawString(lines[i], 16, 14 + metrics.getAscent() + i * metrics.getHeight());
+    }
+
+    private String[] sample(long now) {
+        double seconds = lastSample == 0 ? 0 : (now - lastSample) / 1e9;
+        lastSample = now;
+
+        int framesInLastSecond = 0;
+        for (int i = 0; i < Math.min(frames, frameStarts.length); i++) if (now - frameStarts[i] <= 1_000_000_000L) framesInLastSecond++;
+
+        long[] paints = Arrays.copyOf(paintTimes, Math.min(frames, paintTimes.length));
+        Arrays.sort(paints);
+
+        long queueMax = 0;
+        for (int i = 0; i < Math.min(probes, queueLatencies.length); i++) queueMax = Math.max(queueMax, queueLatencies[i]);
+        long queueLast = probes == 0 ? 0 : queueLatencies[(probes - 1) % queueLatencies.length];
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long allocated = allocatedBytes();
+        double allocationRate = allocated < 0 || lastAllocatedBytes < 0 || seconds == 0 ? Double.NaN : (allocated - lastAllocatedBytes) / seconds;
+        lastAllocatedBytes = allocated;
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : gcPauseBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        long newPauses = seconds == 0 ? 0 : gcCount - lastGcCount;
+        long newPauseMillis = seconds == 0 ? 0 : gcMillis - lastGcMillis;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+
+        return new String[]{
+                String.format("FPS    %d", framesInLastSecond),
+                String.format("paint  p50 %.2f  p99 %.2f  max %.2f ms", percentileMillis(paints, 50), percentileMillis(paints, 99), percentileMillis(paints, 100)),
+                lastTraceNanos < 0 ? "trace  no rays yet" : String.format("trace  %.3f ms, %d steps", lastTraceNanos / 1e6, lastTraceSteps),
+                String.format("heap   %d / %d MB, %s", heap.getUsed() >> 20, heap.getCommitted() >> 20,
+                        Double.isNaN(allocationRate) ? "allocation rate ..." : String.format("%.1f MB/s allocated", allocationRate / (1 << 20))),
+                String.format("GC     %d pauses, %d ms since last sample (%d, %d ms total)", newPauses, newPauseMillis, gcCount, gcMillis),
+                String.format("EDT    queue %.2f ms (max %.2f of last %d)", queueLast / 1e6, queueMax / 1e6, Math.min(probes, queueLatencies.length))
+        };
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.clamp(rank - 1, 0, sorted.length - 1)] / 1e6;
+    }
+
+    // heap allocated by every thread since the JVM started, or -1 if the JVM can't say
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean counted) || !counted.isThreadAllocatedMemoryEnabled()) return -1;
+        return counted.getTotalThreadAllocatedBytes();
+    }
+
+    // the collectors that stop the game, not the ones that work alongside it (G1's concurrent cycle, ZGC's cycles)
+    private static List<GarbageCollectorMXBean> gcPauseBeans() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .filter(collector -> !collector.getName().contains("Concurrent") && !collector.getName().contains("Cycles"))
+                .toList();
+    }
+}
@@ -0,0 +1,207 @@
+package main;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps every image the board draws already scaled to the screen's pixels, so painting is plain copies rather than scaling on every frame
+ * (drawImage with a width and height is Java2D's slow path).
+ * The full-board layers (background, cover, numbers) each get their own image, the small sprites (the atom and a marker for each colour)
+ * share one atlas image. Everything is rasterised again only when the number of screen pixels per board pixel changes,
+ * which covers resizing the window and moving it to a HiDPI screen.
+ * Between begin and end the Graphics is switched to screen pixels, positions are still given in the 1280x720 board coordinates.
+ */
+public class SpriteAtlas {
+    public static final int BOARD_WIDTH = 1280;
+    public static final int BOARD_HEIGHT = 720;
+    public static final int ATOM_SIZE = 50;
+    public static final int MARKER_SIZE = 12;
+    private static final int PADDING = 2; // between sprites, so smoothing at the edges doesn't pick up the next one
+
+    private final Image[] layerSources;
+    private final Image atomSource;
+    private final BufferedImage[] layers;
+    private final Map<Integer, Rectangle> markerSlots = new HashMap<>(); // by RGB colour, in atlas pixels
+    private BufferedImage atlas;
+    private Rectangle atomSlot;
+    private int shelfX; // where the next sprite goes in the atlas: a row at a time, left to right
+    private int shelfY;
+    private int shelfHeight;
+    private double scale = 0; // screen pixels per board pixel the images were rasterised for
+    private int rasterisations = 0;
+
+    private Graphics2D graphics; // only set between begin and end
+    private AffineTransform saved;
+    private double originX;
+    private double originY;
+
+    /**
+     * @param layerSources Full-board images, drawn with drawLayer(index)
+     * @param atomSource The atom's picture, any size
+     */
+    public SpriteAtlas(Image[] layerSources, Image atomSource) {
+        this.layerSources = layerSources;
+        this.atomSource = atomSource;
+        this.layers = new BufferedImage[layerSources.length];
+    }
+
+    /**
+     * Starts drawing sprites, rasterising them again first if the Graphics' scale has changed.
+     * The Graphics should only be scaled and moved (the game view's layout transform on top of Swing's HiDPI scale), not rotated.
+     */
+    public void begin(Graphics2D g) {
+        graphics = g;
+        saved = g.getTransform();
+        double wanted = saved.getScaleX();
+        if (wanted != scale) rasterise(g.getDeviceConfiguration(), wanted);
+        originX = saved.getTranslateX();
+        originY = saved.getTranslateY();
+        g.setTransform(new AffineTransform());
+    }
+
+    /**
+     * Puts the Graphics back the way it was
+     */
+    public void end() {
+        graphics.setTransform(saved);
+        graphics = null;
+    }
+
+    public void drawLayer(int layer) {
+        graphics.drawImage(layers[layer], screenX(0), screenY(0), null);
+    }
+
+    /**
+     * @param x Left edge in board coordinates (Atom.getX)
+     */
+    public void drawAtom(int x, int y) {
+        blit(atomSlot, x, y);
+    }
+
+    /**
+     * @param x Left edge in board coordinates (Marker.getX)
+     */
+    public void drawMarker(Color colour, int x, int y) {
+        Rectangle slot = markerSlots.get(colour.getRGB());
+        if (slot == null) { // a colour not seen since the last rasterisation
+            slot = allocate(size(MARKER_SIZE));
+            paintMarker(slot, colour);
+            markerSlots.put(colour.getRGB(), slot);
+        }
+        blit(slot, x, y);
+    }
+
+    /**
+     * Draws a batch of markers that share a colour, finding the colour's sprite once for all of them
+     * @param positions x, y pairs of the markers' top left corners in board coordinates
+     */
+    public void drawMarkers(Color colour, int[] positions, int count) {
+        Rectangle slot = markerSlots.get(colour.getRGB());
+        if (slot == null) {
+            drawMarker(colour, positions[0], positions[1]);
+            slot = markerSlots.get(colour.getRGB());
+        }
+        for (int i = 0; i < count; i++) blit(slot, positions[2 * i], positions[2 * i + 1]);
+    }
+
+    /**
+     * @return Times everything has been rasterised, once per change of scale
+     */
+    public int getRasterisations() {
+        return rasterisations;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    private void blit(Rectangle slot, int x, int y) {
+        int left = screenX(x);
+        int top = screenY(y);
+        graphics.drawImage(atlas, left, top, left + slot.width, top + slot.height, slot.x, slot.y, slot.x + slot.width, slot.y + slot.height, null);
+    }
+
+    private int screenX(double x) {
+        return (int) Math.round(originX + x * scale);
+    }
+
+    private int screenY(double y) {
+        return (int) Math.round(originY + y * scale);
+    }
+
+    private int size(int boardPixels) {
+        return Math.max(1, (int) Math.ceil(boardPixels * scale));
+    }
+
+    private void rasterise(GraphicsConfiguration configuration, double newScale) {
+        scale = newScale;
+        rasterisations++;
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = configuration.createCompatibleImage(size(BOARD_WIDTH), size(BOARD_HEIGHT), Transparency.TRANSLUCENT);
+            Graphics2D g = layers[i].createGraphics();
+            smooth(g);
+            g.drawImage(layerSources[i], 0, 0, layers[i].getWidth(), layers[i].getHeight(), null);
+            g.dispose();
+        }
+
+        int markers = Math.max(8, markerSlots.size());
+        int width = Math.max(size(ATOM_SIZE), (size(MARKER_SIZE) + PADDING) * 8) + PADDING;
+        int height = size(ATOM_SIZE) + (size(MARKER_SIZE) + PADDING) * ((markers + 7) / 8) + 2 * PADDING;
+        atlas = configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        shelfX = PADDING;
+        shelfY = PADDING;
+        shelfHeight = 0;
+        atomSlot = allocate(size(ATOM_SIZE));
+        Graphics2D g = atlas.createGraphics();
+        smooth(g);
+        g.drawImage(atomSource, atomSlot.x, atomSlot.y, atomSlot.width, atomSlot.height, null);
+        g.dispose();
+
+        Map<Integer, Rectangle> colours = new HashMap<>(markerSlots); // the same colours are going to be needed again
+        markerSlots.clear();
+        for (Integer rgb : colours.keySet()) {
+            Rectangle slot = allocate(size(MARKER_SIZE));
+            paintMarker(slot, new Color(rgb, true));
+            markerSlots.put(rgb, slot);
+        }
+    }
+
+    private void paintMarker(Rectangle slot, Color colour) {
+        Graphics2D g = atlas.createGraphics();
+        smooth(g);
+        g.setColor(colour);
+        g.fillOval(slot.x, slot.y, slot.width, slot.height);
+        g.dispose();
+    }
+
+    // the next free square in the atlas, making the atlas bigger if it's full
+    private Rectangle allocate(int size) {
+        if (shelfX + size + PADDING > atlas.getWidth()) {
+            shelfX = PADDING;
+            shelfY += shelfHeight + PADDING;
+            shelfHeight = 0;
+        }
+        if (shelfY + size + PADDING > atlas.getHeight()) {
+            BufferedImage bigger = new BufferedImage(atlas.getColorModel(), atlas.getRaster().createCompatibleWritableRaster(atlas.getWidth(), atlas.getHeight() * 2),
+                    atlas.isAlphaPremultiplied(), null);
+            Graphics2D g = bigger.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(atlas, 0, 0, null);
+            g.dispose();
+            atlas = bigger;
+        }
+        Rectangle slot = new Rectangle(shelfX, shelfY, size, size);
+        shelfX += size + PADDING;
+        shelfHeight = Math.max(shelfHeight, size);
+        return slot;
+    }
+
+    private static void smooth(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+}
@@ -1,51 +1,42 @@
 package menus;
 
-import main.GameWindow;
+import main.Navigator;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Objects;
 
-public class GameOver {
-    private final JFrame jFrame;
-    private static final Image gameIcon = new ImageIcon(Objects.requireNonNull(GameWindow.class.getResource("/Icons/new_icon.png"))).getImage();
-
-    public GameOver() {
-        jFrame = new JFrame();
-        jFrame.setTitle("Game Over");
-        jFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        jFrame.setIconImage(gameIcon);
-        jFrame.setSize(400, 200);
-        jFrame.setLocationRelativeTo(null);
-        jFrame.getContentPane().setBackground(Color.BLACK);
-        jFrame.setResizable(false);
-
-        JPanel jPanel = getGameOverPanel();
+public class GameOver implements Navigator.Screen {
+    private final JPanel jPanel;
+    private final String playerName;
+    private final int score;
+
+    /**
+     * @param playerName Who just finished, passed on to the score screen
+     * @param score Their final score
+     */
+    public GameOver(String playerName, int score) {
+        this.playerName = playerName;
+        this.score = score;
+        jPanel = getGameOverPanel();
+    }
 
-        jFrame.getContentPane().add(jPanel);
-        jFrame.setVisible(true);
+    @Override
+    public JComponent getComponent() {
+        return jPanel;
+    }
 
-        // show score window for 3000 milliseconds and close current frame
-        // timer object
-        Timer timer = new Timer(3000, e -> {
-            jFrame.dispose();
-            new ShowScore();
-            jFrame.dispose();
-        });
+    @Override
+    public void shown() {
+        // show the score after 3000 milliseconds
+        Timer timer = new Timer(3000, e -> Navigator.getInstance().show(Navigator.SCORE, new ShowScore(playerName, score)));
         timer.setRepeats(false);
         timer.start();
     }
 
     private static JPanel getGameOverPanel() {
-        JPanel jPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                g.setColor(Color.BLACK);
-                g.fillRect(0, 0, getWidth(), getHeight());
-            }
-        };
-        jPanel.setLayout(null);
+        JPanel jPanel = new JPanel(new GridBagLayout()); // centres the text
+        jPanel.setBackground(Color.BLACK);
+        jPanel.setPreferredSize(new Dimension(400, 200));
 
         // text
         JLabel jLabel = new JLabel("GAME OVER!!");
@@ -53,12 +44,11 @@ public class GameOver {
         jLabel.setHorizontalAlignment(SwingConstants.CENTER);
         jLabel.setForeground(Color.CYAN);
         jLabel.setFont(new Font("Arial", Font.BOLD, 30));
-        jLabel.setBounds(80, 50, 240, 50);
         jPanel.add(jLabel);
         return jPanel;
     }
 
     public static void main(String[] args) {
-        new GameOver();
+        SwingUtilities.invokeLater(() -> Navigator.getInstance().show(Navigator.GAME_OVER, new GameOver("Player", 0)));
     }
 }
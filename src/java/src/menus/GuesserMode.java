@@ -0,0 +1,249 @@
+package menus;
+
+import computations.RayTracer;
+import entities.Atom;
+import entities.ExitPoint;
+import entities.HexagonalBox;
+import main.Game;
+import main.Navigator;
+import main.SpriteAtlas;
+import network.MatchClient;
+import network.MatchProtocol;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The guesser's side of a two player match: the atoms were placed by a setter in another game, and only the outcome of each ray comes back.
+ * Every request goes through one virtual thread in the order it was made, and the board is updated on the EDT once the answer arrives.
+ * The layout is shown once the last guess is in.
+ */
+public class GuesserMode implements Navigator.Screen {
+    private static final Color[] PAIR_COLOURS = {Color.CYAN, Color.ORANGE, Color.GREEN, Color.PINK, Color.YELLOW, new Color(160, 120, 255)};
+    private static final BasicStroke MARK_STROKE = new BasicStroke(4);
+    private static final Font OUTCOME_FONT = new Font("Arial", Font.BOLD, 13);
+    private static final int LAYER_BACKGROUND = 0; // the sprite atlas' full-board layers
+    private static final int LAYER_NUMBERS = 1;
+
+    private final JPanel jPanel;
+    private final Image bgImage = Navigator.image(Game.BACKGROUND).getImage();
+    private final Image boardBoxNumber = Navigator.image(Game.NUMBERED_BOARD).getImage();
+    private final SpriteAtlas sprites = new SpriteAtlas(new Image[]{bgImage, boardBoxNumber}, Atom.getAtomImage()); // pre-scaled, so painting is plain copies
+    private final ArrayList<HexagonalBox> hexagonalBoxes = Game.loadHexagonalBoxes();
+    private final ArrayList<ExitPoint> exitPoints = Game.loadExitPointCoords();
+    private final JLabel statusLabel = new JLabel("Joining...");
+    private final ExecutorService requests = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("guesser-match").factory());
+    // only used on the request thread
+    private MatchClient client;
+    private int numAtoms;
+    private int guessesMade = 0;
+
+    // only used on the EDT
+    private final int[] outcomes = new int[RayTracer.NUM_EXITS + 1]; // by entry, 0 for rays not fired
+    private final int[] pairs = new int[RayTracer.NUM_EXITS + 1]; // which deflected ray each exit belongs to, for its colour
+    private int numPairs = 0;
+    private long correctBoxes = 0;
+    private long wrongBoxes = 0;
+    private long revealed = 0; // the setter's layout, once the match is over
+
+    /**
+     * @param code The match code the setter was given
+     */
+    public GuesserMode(int code) {
+        jPanel = new JPanel(new BorderLayout());
+        jPanel.add(new GuesserBoard(), BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBackground(Color.BLACK);
+        statusLabel.setForeground(Color.WHITE);
+        buttonPanel.add(statusLabel);
+
+        JTextField rayField = new JTextField(3);
+        JButton fireButton = new JButton("Fire Ray");
+        fireButton.addActionListener(e -> fireRay(rayField.getText()));
+        rayField.addActionListener(e -> fireRay(rayField.getText()));
+        buttonPanel.add(rayField);
+        buttonPanel.add(fireButton);
+
+        JTextField guessField = new JTextField(3);
+        JButton guessButton = new JButton("Guess Box");
+        guessButton.addActionListener(e -> guess(guessField.getText()));
+        guessField.addActionListener(e -> guess(guessField.getText()));
+        buttonPanel.add(guessField);
+        buttonPanel.add(guessButton);
+
+        JButton menuButton = new JButton("Main Menu");
+        menuButton.addActionListener(e -> {
+            leave();
+            Navigator.getInstance().show(Navigator.START);
+        });
+        buttonPanel.add(menuButton);
+        jPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        request(() -> {
+            try {
+                client = MatchClient.connect(false);
+                numAtoms = client.join(code);
+                showStatus("Joined match " + code + ", find " + numAtoms + " atoms");
+            } catch (IOException e) {
+                showStatus("Could not join: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public JComponent getComponent() {
+        return jPanel;
+    }
+
+    private void fireRay(String text) {
+        int entry = parse(text, RayTracer.NUM_EXITS);
+        if (entry < 0) return;
+        request(() -> {
+            if (client == null) return;
+            try {
+                MatchProtocol.Outcome outcome = client.fireRay(entry);
+                long roundTrip = client.getRoundTrips().getPercentileNanos(50);
+                SwingUtilities.invokeLater(() -> {
+                    rayFired(outcome);
+                    statusLabel.setText(String.format("Ray %d %s | Markers: %d | Round trip %.0fµs  ", entry, describe(outcome),
+                            outcome.markersUsed(), roundTrip / 1e3));
+                    jPanel.repaint();
+                });
+            } catch (IOException e) {
+                showStatus(e.getMessage());
+            }
+        });
+    }
+
+    private void guess(String text) {
+        int boxNumber = parse(text, RayTracer.NUM_CELLS);
+        if (boxNumber < 0) return;
+        request(() -> {
+            if (client == null) return;
+            try {
+                MatchProtocol.Guessed guessed = client.guess(boxNumber);
+                SwingUtilities.invokeLater(() -> {
+                    if (guessed.correct()) correctBoxes |= 1L << (boxNumber - 1);
+                    else wrongBoxes |= 1L << (boxNumber - 1);
+                    statusLabel.setText("Box " + boxNumber + (guessed.correct() ? " holds an atom" : " is empty") + " | Score: " + guessed.score() + "  ");
+                    jPanel.repaint();
+                });
+                if (++guessesMade < numAtoms) return;
+                if (client.next() instanceof MatchProtocol.Over over) {
+                    SwingUtilities.invokeLater(() -> {
+                        revealed = over.atoms();
+                        statusLabel.setText("Match over, final score: " + over.score() + "  ");
+                        jPanel.repaint();
+                    });
+                    leave();
+                }
+            } catch (IOException e) {
+                showStatus(e.getMessage());
+            }
+        });
+    }
+
+    // a number typed into one of the fields, or -1 after telling the player what's wrong with it
+    private int parse(String text, int max) {
+        try {
+            int value = Integer.parseInt(text.trim());
+            if (value >= 1 && value <= max) return value;
+        } catch (NumberFormatException ignored) {
+            // falls through to the message
+        }
+        statusLabel.setText("Enter a number from 1 to " + max + "  ");
+        return -1;
+    }
+
+    private void rayFired(MatchProtocol.Outcome outcome) {
+        outcomes[outcome.entry()] = outcome.exit();
+        if (outcome.exit() == RayTracer.ABSORBED || outcome.exit() == outcome.entry()) return;
+        outcomes[outcome.exit()] = outcome.entry(); // the ray could just as well have gone the other way
+        pairs[outcome.entry()] = numPairs;
+        pairs[outcome.exit()] = numPairs;
+        numPairs++;
+    }
+
+    private static String describe(MatchProtocol.Outcome outcome) {
+        if (outcome.exit() == RayTracer.ABSORBED) return "was absorbed";
+        if (outcome.exit() == outcome.entry()) return "was reflected";
+        return "came out at " + outcome.exit();
+    }
+
+    // queues a request behind the ones before it, unless the player has already left
+    private void request(Runnable request) {
+        try {
+            requests.execute(request);
+        } catch (RejectedExecutionException ignored) {
+            // left the match
+        }
+    }
+
+    private void showStatus(String text) {
+        SwingUtilities.invokeLater(() -> statusLabel.setText(text + "  "));
+    }
+
+    // closes the connection after anything already asked for, which tells the setter if the match wasn't over
+    private void leave() {
+        request(() -> {
+            try {
+                if (client != null) client.close();
+            } catch (IOException ignored) {
+                // already gone
+            }
+            client = null;
+        });
+        requests.shutdown();
+    }
+
+    private class GuesserBoard extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        GuesserBoard() {
+            setPreferredSize(new Dimension(1280, 720));
+            setBackground(Color.BLACK);
+        }
+
+        @Override
+        public void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            sprites.begin(g2d);
+            sprites.drawLayer(LAYER_BACKGROUND);
+            for (int cell = 0; cell < hexagonalBoxes.size(); cell++) {
+                if (!RayTracer.hasAtom(revealed, cell)) continue;
+                sprites.drawAtom(hexagonalBoxes.get(cell).getX() - SpriteAtlas.ATOM_SIZE / 2, hexagonalBoxes.get(cell).getY() - SpriteAtlas.ATOM_SIZE / 2);
+            }
+            sprites.drawLayer(LAYER_NUMBERS);
+            sprites.end();
+
+            g2d.setStroke(MARK_STROKE);
+            for (int cell = 0; cell < hexagonalBoxes.size(); cell++) {
+                boolean correct = (correctBoxes >>> cell & 1L) != 0;
+                if (!correct && (wrongBoxes >>> cell & 1L) == 0) continue;
+                g2d.setColor(correct ? Color.GREEN : Color.RED);
+                g2d.drawOval(hexagonalBoxes.get(cell).getX() - 22, hexagonalBoxes.get(cell).getY() - 22, 44, 44);
+            }
+
+            g2d.setFont(OUTCOME_FONT);
+            for (int exit = 1; exit <= RayTracer.NUM_EXITS; exit++) {
+                int outcome = outcomes[exit];
+                if (outcome == 0) continue;
+                ExitPoint exitPoint = exitPoints.get(exit - 1);
+                boolean deflected = outcome != RayTracer.ABSORBED && outcome != exit;
+                g2d.setColor(deflected ? PAIR_COLOURS[pairs[exit] % PAIR_COLOURS.length] : outcome == RayTracer.ABSORBED ? Color.GRAY : Color.WHITE);
+                g2d.fillRoundRect(exitPoint.getX() - 4, exitPoint.getY() - 2, 26, 16, 6, 6);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString(outcome == RayTracer.ABSORBED ? "A" : outcome == exit ? "R" : String.valueOf(outcome), exitPoint.getX(), exitPoint.getY() + 11);
+            }
+        }
+    }
+}
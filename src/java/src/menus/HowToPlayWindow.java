@@ -1,27 +1,25 @@
 package menus;
 
-import main.GameWindow;
+import main.Navigator;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Objects;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
 
-public class HowToPlayWindow {
+/**
+ * The rules, shown over whatever screen opened them until Back or Escape is pressed
+ */
+public class HowToPlayWindow implements Navigator.Screen {
+    private final JPanel jPanel;
     private final JPanel rulesPanel; // to put how to play labels
-    private static final Image gameIcon = new ImageIcon(Objects.requireNonNull(GameWindow.class.getResource("/Icons/new_icon.png"))).getImage();
-
 
     public HowToPlayWindow() {
-        JFrame jFrame = new JFrame("How to Play Blackbox+");
-        jFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
-        jFrame.setLocationRelativeTo(null);
-        jFrame.setIconImage(gameIcon);
-        jFrame.setSize(854, 480);
-
-        JPanel jPanel = new JPanel();
+        jPanel = new JPanel();
         jPanel.setBackground(Color.BLACK);
         jPanel.setLayout(new BorderLayout());
         jPanel.setBorder(BorderFactory.createEmptyBorder(60, 50, 0, 0));
+        jPanel.setPreferredSize(new Dimension(854, 480));
 
         JLabel titleLabel = new JLabel("How to Play:");
         titleLabel.setForeground(Color.RED);
@@ -53,11 +51,29 @@ public class HowToPlayWindow {
         generateHowToPlayLabel("Reflected rays will automatically place a white marker. Absorbed rays will automatically place a dark gray marker.");
         generateHowToPlayLabel("When you have decided that you have finished the round, press \"End game\"");
         generateHowToPlayLabel("\n");
-        generateHowToPlayLabel("\n");
-        generateHowToPlayLabel("\n");
+        generateHowToPlayLabel("To play against a setter, they place the atoms in Setter Mode and press \"Host Match\",");
+        generateHowToPlayLabel("then you press \"Join Match\" and enter the code they were given.");
+
+        JButton backButton = new JButton("Back");
+        backButton.setFocusable(false);
+        backButton.addActionListener(e -> Navigator.getInstance().back());
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBackground(Color.BLACK);
+        buttonPanel.add(backButton);
+        jPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        jPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "back");
+        jPanel.getActionMap().put("back", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Navigator.getInstance().back();
+            }
+        });
+    }
 
-        jFrame.add(jPanel);
-        jFrame.setVisible(true);
+    @Override
+    public JComponent getComponent() {
+        return jPanel;
     }
 
     private void generateHowToPlayLabel(String s) { // to efficiently add labels
@@ -1,44 +1,34 @@
 package menus;
 
 import computations.LeaderBoardData;
-import main.GameWindow;
+import main.Navigator;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.*;
 import java.util.*;
 import java.util.List;
 
-public class Leaderboard implements Runnable {
+public class Leaderboard implements Navigator.Screen {
+    public static final String BACKGROUND = "/Miscellaneous/leaderboard_bg.png";
+    private static final int NUM_SHOWN = 5;
     private static List<Map.Entry<String, Integer>> sortedScores = new ArrayList<>();
 
-    @Override public void run() { jFrame.setVisible(true); }
+    // the screen is kept between visits, so the scores are loaded again every time it's shown
+    @Override public void shown() { loadScores(); }
+
+    @Override public JComponent getComponent() { return jPanel; }
 
     // all variables are private to allow for class accessibility
     // final variables allow for blocking further modification to my variables
-    private final JFrame jFrame;
     private final JPanel jPanel;
+    private final JLabel[] scoreLabels = new JLabel[NUM_SHOWN];
+    private final JLabel[] playerLabels = new JLabel[NUM_SHOWN];
+    private boolean hasResetAfterFailure = false;
 
-    private static final Image gameIcon = new ImageIcon(Objects.requireNonNull(GameWindow.class.getResource("/Icons/new_icon.png"))).getImage();
-    private static final ImageIcon leaderboardImage = new ImageIcon(Objects.requireNonNull(Leaderboard.class.getResource("/Miscellaneous/leaderboard_bg.png")));
-
-    public Leaderboard() throws IOException {
-        LeaderBoardData leaderBoardData = new LeaderBoardData();
-        LeaderBoardData.checkFormat();
-        leaderBoardData.readAndSort();
-        sortedScores = leaderBoardData.getSortedScores();
-        leaderBoardData.writeTXTFile(sortedScores);
-
-        jFrame = new JFrame("Leaderboard");
-        jFrame.setSize(1280, 720);
-        jFrame.setResizable(false);
-        jFrame.setLocationRelativeTo(null);
-        jFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        jFrame.setIconImage(gameIcon);
-
+    public Leaderboard() {
         jPanel = new JPanel();
         jPanel.setLayout(null);
-        jPanel.setSize(1280, 720);
+        jPanel.setPreferredSize(new Dimension(1280, 720));
 
         JLabel score = new JLabel("");
         Font font1 = score.getFont();
@@ -62,11 +52,33 @@ public class Leaderboard implements Runnable {
         JButton returnToMainMenu = getMainMenuButton();
         jPanel.add(returnToMainMenu);
 
-        JLabel leaderboardBackground = new JLabel(leaderboardImage);
+        JLabel leaderboardBackground = new JLabel(Navigator.image(BACKGROUND));
         leaderboardBackground.setSize(1280, 720);
         jPanel.add(leaderboardBackground);
 
-        jFrame.add(jPanel);
+        // the screen shows placeholders straight away, the scores are filled in by shown() once the score writer has loaded them
+    }
+
+    private void loadScores() {
+        LeaderBoardData.loadLeaderboardAsync().whenComplete((scores, e) -> SwingUtilities.invokeLater(() -> {
+            if (e != null) {
+                e.printStackTrace();
+                if (hasResetAfterFailure) {
+                    JOptionPane.showMessageDialog(null, "Failed to open leaderboard. Try again!", "Leaderboard Open Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                hasResetAfterFailure = true; // a corrupted score file gets reset once, same as the start screen used to do
+                JOptionPane.showMessageDialog(null, "Failed to open leaderboard. The leaderboard has been reset.", "Leaderboard Open Error", JOptionPane.ERROR_MESSAGE);
+                LeaderBoardData.clearTheLeaderboardAsync().whenComplete((ignored, ex) -> SwingUtilities.invokeLater(this::loadScores));
+                return;
+            }
+            sortedScores = scores;
+            for (int i = 0; i < NUM_SHOWN; i++) {
+                boolean hasEntry = i < sortedScores.size();
+                scoreLabels[i].setText(hasEntry ? String.valueOf(sortedScores.get(i).getValue()) : "");
+                playerLabels[i].setText(hasEntry ? String.valueOf(sortedScores.get(i).getKey()) : "");
+            }
+        }));
     }
 
     private JButton getMainMenuButton() {
@@ -77,15 +89,11 @@ public class Leaderboard implements Runnable {
         returnToMainMenu.setFocusable(false);
         returnToMainMenu.setBounds(765, 657, 140, 30);
         // lambda expression to check when pressed, return to main menu.
-        returnToMainMenu.addActionListener(e -> {
-            jFrame.dispose();
-            try { new StartScreen(); }
-            catch (Exception ex) { JOptionPane.showMessageDialog(null, "Error: Failed to open Start Screen.", "Start Screen Open Error", JOptionPane.ERROR_MESSAGE); System.exit(-1);}
-        });
+        returnToMainMenu.addActionListener(e -> Navigator.getInstance().show(Navigator.START));
         return returnToMainMenu;
     }
 
-    private static JButton getClearLeaderboardButton() {
+    private JButton getClearLeaderboardButton() {
         JButton clearLeaderboard = new JButton();
         clearLeaderboard.setText("Clear Leaderboard");
         clearLeaderboard.setOpaque(false);
@@ -94,28 +102,32 @@ public class Leaderboard implements Runnable {
         clearLeaderboard.setBounds(680, 627, 220, 30);
         // this lambda expression detects whether the clear button is pressed or not
         clearLeaderboard.addActionListener(e -> {
-            try { LeaderBoardData.clearTheLeaderboard(); }
-            catch (Exception ex) { JOptionPane.showMessageDialog(null, "Failed to clear leaderboard.", "Leaderboard Data Clear Error", JOptionPane.ERROR_MESSAGE);}
+            LeaderBoardData.clearTheLeaderboardAsync().whenComplete((ignored, ex) -> SwingUtilities.invokeLater(() -> {
+                if (ex != null) JOptionPane.showMessageDialog(null, "Failed to clear leaderboard.", "Leaderboard Data Clear Error", JOptionPane.ERROR_MESSAGE);
+                else loadScores();
+            }));
         });
         return clearLeaderboard;
     }
 
     public void displayScore(int index, Font font, int x, int y, int width, int height) {
         JLabel score = new JLabel();
-        score.setText(String.valueOf(sortedScores.get(index).getValue()));
+        score.setText("...");
         score.setFont(new Font(font.getFontName(), font.getStyle(), 30));
         score.setVerticalAlignment(SwingConstants.CENTER);
         score.setHorizontalAlignment(SwingConstants.CENTER);
         score.setBounds(x, y, width, height);
+        scoreLabels[index] = score;
         jPanel.add(score);
     }
 
     public void displayPlayer(int index, Font font, int x, int y, int width, int height) {
         JLabel score = new JLabel();
-        score.setText(String.valueOf(sortedScores.get(index).getKey()));
+        score.setText("Loading...");
         score.setFont(new Font(font.getFontName(), font.getStyle(), 30));
         score.setVerticalAlignment(SwingConstants.CENTER);
         score.setBounds(x, y, width, height);
+        playerLabels[index] = score;
         jPanel.add(score);
     }
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+package menus;
+
+import computations.GameSeed;
+import computations.IncrementalTracer;
+import computations.RayTracer;
+import entities.Atom;
+import entities.ExitPoint;
+import entities.HexagonalBox;
+import main.Game;
+import main.Navigator;
+import main.SpriteAtlas;
+import network.MatchClient;
+import network.MatchProtocol;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Lets the setter place atoms by hand and see where all 54 rays come out as they do it.
+ * Click an empty box to add an atom, click an atom to remove it, or drag it to move it; outcomes update while dragging.
+ * Host Match puts the layout up for a guesser in another game (see MatchServer), and shows each ray they fire as they fire it.
+ */
+public class SetterMode implements Navigator.Screen {
+    private static final int PICK_RADIUS = 30; // how close to a box's centre a click has to be
+    private static final int NUM_OF_ATOMS = 6;
+    private static final Font OUTCOME_FONT = new Font("Arial", Font.BOLD, 13);
+    private static final int LAYER_BACKGROUND = 0; // the sprite atlas' full-board layers
+    private static final int LAYER_NUMBERS = 1;
+
+    private final JPanel jPanel;
+    private final Image bgImage = Navigator.image(Game.BACKGROUND).getImage();
+    private final Image boardBoxNumber = Navigator.image(Game.NUMBERED_BOARD).getImage();
+    private final SpriteAtlas sprites = new SpriteAtlas(new Image[]{bgImage, boardBoxNumber}, Atom.getAtomImage()); // pre-scaled, repainted on every drag step
+    private final JLabel statusLabel = new JLabel();
+    private final IncrementalTracer tracer = new IncrementalTracer(RayTracer.getInstance());
+    private final ArrayList<HexagonalBox> hexagonalBoxes = Game.loadHexagonalBoxes();
+    private final ArrayList<ExitPoint> exitPoints = Game.loadExitPointCoords();
+    private long lastChanged = 0; // rays whose outcome changed in the last edit, drawn highlighted
+    private final JLabel matchLabel = new JLabel();
+    private boolean hosting = false; // the layout can't change while a guesser is looking for it
+    private long guesserRays = 0; // entries the guesser has fired from, drawn highlighted
+
+    public SetterMode() {
+        jPanel = new JPanel(new BorderLayout());
+
+        SetterBoard board = new SetterBoard();
+        jPanel.add(board, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBackground(Color.BLACK);
+        statusLabel.setForeground(Color.WHITE);
+        buttonPanel.add(statusLabel);
+
+        JButton randomButton = new JButton("Random Layout");
+        randomButton.addActionListener(e -> edit(() -> tracer.setLayout(new GameSeed(System.nanoTime()).randomLayout(NUM_OF_ATOMS))));
+        buttonPanel.add(randomButton);
+
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> edit(() -> tracer.setLayout(0)));
+        buttonPanel.add(clearButton);
+
+        JButton hostButton = new JButton("Host Match");
+        hostButton.addActionListener(e -> hostMatch(hostButton));
+        buttonPanel.add(hostButton);
+        matchLabel.setForeground(Color.CYAN);
+        buttonPanel.add(matchLabel);
+
+        JButton menuButton = new JButton("Main Menu");
+        menuButton.addActionListener(e -> Navigator.getInstance().show(Navigator.START)); // the layout is still there if the setter comes back
+        buttonPanel.add(menuButton);
+        jPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        updateStatus(0);
+    }
+
+    @Override
+    public JComponent getComponent() {
+        return jPanel;
+    }
+
+    private interface Edit {
+        long apply();
+    }
+
+    // applies an edit to the layout, then repaints with the rays it changed highlighted
+    private void edit(Edit edit) {
+        if (hosting) return;
+        long start = System.nanoTime();
+        lastChanged = edit.apply();
+        updateStatus(System.nanoTime() - start);
+        jPanel.repaint();
+    }
+
+    // puts the layout up for a guesser, then follows what they do until the match ends
+    private void hostMatch(JButton hostButton) {
+        long atoms = tracer.getAtoms();
+        if (atoms == 0) {
+            matchLabel.setText("Place some atoms first");
+            return;
+        }
+        hosting = true;
+        guesserRays = 0;
+        hostButton.setEnabled(false);
+        Thread.ofVirtual().name("setter-match").start(() -> {
+            try (MatchClient client = MatchClient.connect(true)) {
+                showMatch("Match code " + client.host(atoms) + ", waiting for a guesser", 0);
+                while (true) {
+                    switch (client.next()) {
+                        case MatchProtocol.Joined joined -> showMatch("Guesser joined", 0);
+                        case MatchProtocol.Outcome outcome -> showMatch("Guesser fired from " + outcome.entry() + ", " + outcome.markersUsed() + " markers used",
+                                1L << (outcome.entry() - 1));
+                        case MatchProtocol.Guessed guessed -> showMatch("Guesser guessed box " + guessed.boxNumber() + (guessed.correct() ? ", right" : ", wrong"), 0);
+                        case MatchProtocol.Over over -> {
+                            showMatch("Guesser finished with a score of " + over.score(), 0);
+                            return;
+                        }
+                        case MatchProtocol.Failed failed -> {
+                            showMatch(MatchProtocol.describe(failed.reason()), 0);
+                            return;
+                        }
+                        case MatchProtocol.Hosted hosted -> {}
+                    }
+                }
+            } catch (IOException e) {
+                showMatch("Match ended: " + e.getMessage(), 0);
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    hosting = false;
+                    hostButton.setEnabled(true);
+                });
+            }
+        });
+    }
+
+    private void showMatch(String text, long fired) {
+        SwingUtilities.invokeLater(() -> {
+            matchLabel.setText(text);
+            guesserRays |= fired;
+            jPanel.repaint();
+        });
+    }
+
+    private void updateStatus(long nanos) {
+        int absorbed = 0;
+        int reflected = 0;
+        int looped = 0;
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+            int outcome = tracer.getOutcome(entry);
+            if (outcome == RayTracer.ABSORBED) absorbed++;
+            else if (outcome == RayTracer.LOOPED) looped++;
+            else if (outcome == entry) reflected++;
+        }
+        statusLabel.setText(String.format("Atoms: %d | Absorbed: %d | Reflected: %d%s | Retraced %d of 54 rays in %.1fµs   ",
+                Long.bitCount(tracer.getAtoms()), absorbed, reflected,
+                looped > 0 ? " | " + looped + " rays never leave the board!" : "",
+                tracer.getLastRetraced(), nanos / 1e3));
+    }
+
+    /**
+     * @return Cell index of the box under the point, or -1 if there isn't one
+     */
+    private int boxAt(int x, int y) {
+        int closest = -1;
+        long closestDistance = (long) PICK_RADIUS * PICK_RADIUS;
+        for (int cell = 0; cell < hexagonalBoxes.size(); cell++) {
+            long dx = hexagonalBoxes.get(cell).getX() - x;
+            long dy = hexagonalBoxes.get(cell).getY() - y;
+            if (dx * dx + dy * dy <= closestDistance) {
+                closestDistance = dx * dx + dy * dy;
+                closest = cell;
+            }
+        }
+        return closest;
+    }
+
+    private String describeOutcome(int entry) {
+        int outcome = tracer.getOutcome(entry);
+        if (outcome == RayTracer.ABSORBED) return "A";
+        if (outcome == RayTracer.LOOPED) return "!";
+        if (outcome == entry) return "R";
+        return String.valueOf(outcome);
+    }
+
+    private class SetterBoard extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        private int dragging = -1; // cell of the atom being dragged
+        private boolean moved = false;
+
+        SetterBoard() {
+            setPreferredSize(new Dimension(1280, 720));
+            setBackground(Color.BLACK);
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    int cell = boxAt(e.getX(), e.getY());
+                    moved = false;
+                    if (cell < 0) return;
+                    if (tracer.hasAtom(cell)) {
+                        dragging = cell;
+                    } else if (Long.bitCount(tracer.getAtoms()) < NUM_OF_ATOMS) {
+                        edit(() -> tracer.toggle(cell));
+                    }
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (dragging < 0) return;
+                    int cell = boxAt(e.getX(), e.getY());
+                    if (cell < 0 || tracer.hasAtom(cell)) return;
+                    int from = dragging;
+                    edit(() -> tracer.move(from, cell)); // the atom follows the mouse box by box
+                    dragging = cell;
+                    moved = true;
+                }
+
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    if (dragging >= 0 && !moved) {
+                        int cell = dragging;
+                        edit(() -> tracer.toggle(cell)); // a click without a drag removes the atom
+                    }
+                    dragging = -1;
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+        }
+
+        @Override
+        public void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            sprites.begin(g2d);
+            sprites.drawLayer(LAYER_BACKGROUND);
+            for (int cell = 0; cell < hexagonalBoxes.size(); cell++) {
+                if (!tracer.hasAtom(cell)) continue;
+                sprites.drawAtom(hexagonalBoxes.get(cell).getX() - SpriteAtlas.ATOM_SIZE / 2, hexagonalBoxes.get(cell).getY() - SpriteAtlas.ATOM_SIZE / 2);
+            }
+            sprites.drawLayer(LAYER_NUMBERS);
+            sprites.end();
+
+            g2d.setFont(OUTCOME_FONT);
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                ExitPoint exitPoint = exitPoints.get(entry - 1);
+                boolean changed = (lastChanged >>> (entry - 1) & 1L) != 0;
+                boolean fired = (guesserRays >>> (entry - 1) & 1L) != 0;
+                g2d.setColor(changed ? Color.RED : fired ? Color.CYAN : Color.WHITE);
+                g2d.fillRoundRect(exitPoint.getX() - 4, exitPoint.getY() - 2, 26, 16, 6, 6);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString(describeOutcome(entry), exitPoint.getX(), exitPoint.getY() + 11);
+            }
+        }
+    }
+}
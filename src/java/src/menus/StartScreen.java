@@ -1,38 +1,34 @@
 package menus;
 
-import computations.LeaderBoardData;
-import main.GameWindow;
-import main.OperatingSystem;
+import computations.Autosave;
+import computations.GameSeed;
 import main.Game;
+import main.Navigator;
+import main.OperatingSystem;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.IOException;
-import java.util.Objects;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The main menu, shown in the Navigator's window
+ */
+public class StartScreen implements Navigator.Screen {
+    public static final String BACKGROUND = "/Start Screen/new-start-screen.JPG";
 
-public class StartScreen {
-    private static JFrame jFrame;
-    private static JLabel introLabel;
-    private static final Image gameIcon = new ImageIcon(Objects.requireNonNull(GameWindow.class.getResource("/Icons/new_icon.png"))).getImage();
-    private static final ImageIcon startScreenImage = new ImageIcon(Objects.requireNonNull(StartScreen.class.getResource("/Start Screen/new-start-screen.JPG")));
+    private final JLabel introLabel;
 
     public StartScreen() {
-        jFrame = new JFrame("Black Box+ By Group 50");
-        jFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-        jFrame.setResizable(false);
-        jFrame.setSize(1280, 720);
-        jFrame.setLocationRelativeTo(null);
-        jFrame.setIconImage(gameIcon);
-
-        introLabel = new JLabel(startScreenImage);
+        introLabel = new JLabel(Navigator.image(BACKGROUND));
         introLabel.setPreferredSize(new Dimension(1280, 720));
+        Navigator navigator = Navigator.getInstance();
 
         /* New Game Button */
         JButton newGame = generateButtons(130, 230);
         newGame.addActionListener(e -> {
-            jFrame.dispose();
             try {
-                new Game();
+                new Game().start();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(null, "Failed to start a new game.", "Start New Game Open Error", JOptionPane.ERROR_MESSAGE);
                 System.exit(-1);
@@ -41,40 +37,114 @@ public class StartScreen {
 
         /* Leaderboard Button */
         JButton leaderboard = generateButtons(400, 300);
-        leaderboard.addActionListener(e -> {
-            jFrame.dispose();
+        leaderboard.addActionListener(e -> navigator.show(Navigator.LEADERBOARD)); // score loading failures are handled by the leaderboard itself, off the EDT
+
+        /* Credits Button */
+        JButton credits = generateButtons(743, 200);
+        credits.addActionListener(e -> navigator.show(Navigator.CREDITS));
+
+        /* Setter Mode Button */
+        JButton setterMode = new JButton("Setter Mode");
+        setterMode.setBounds(1110, 20, 140, 40);
+        setterMode.setFocusable(true);
+        setterMode.addActionListener(e -> navigator.show(Navigator.SETTER_MODE));
+        introLabel.add(setterMode);
+
+        /* Hard Game Button */
+        JButton hardGame = new JButton("Hard Game");
+        hardGame.setBounds(1110, 70, 140, 40);
+        hardGame.setFocusable(true);
+        hardGame.addActionListener(e -> startHardGame(hardGame));
+        introLabel.add(hardGame);
+
+        /* Practice Game Button */
+        JButton practiceGame = new JButton("Practice");
+        practiceGame.setBounds(1110, 120, 140, 40);
+        practiceGame.setFocusable(true);
+        practiceGame.addActionListener(e -> {
             try {
-                new Leaderboard().run();
+                new Game(true).start(); // rays and guesses can be undone
             } catch (Exception ex) {
-                ex.printStackTrace();
-                try {
-                    LeaderBoardData.clearTheLeaderboard();
-                } catch (IOException exc) {
-                    throw new RuntimeException(exc);
-                }
-                JOptionPane.showMessageDialog(null, "Failed to open leaderboard. Try again!", "Leaderboard Open Error", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(null, "Failed to start a practice game.", "Practice Game Open Error", JOptionPane.ERROR_MESSAGE);
                 System.exit(-1);
             }
         });
+        introLabel.add(practiceGame);
 
-        /* Credits Button */
-        JButton credits = generateButtons(743, 200);
-        credits.addActionListener(e -> {
+        /* Join Match Button */
+        JButton joinMatch = new JButton("Join Match");
+        joinMatch.setBounds(1110, 170, 140, 40);
+        joinMatch.setFocusable(true);
+        joinMatch.addActionListener(e -> { // guess the layout a setter is hosting from Setter Mode
+            String code = JOptionPane.showInputDialog(introLabel, "Enter the setter's match code:", "Join Match", JOptionPane.PLAIN_MESSAGE);
+            if (code == null) return;
             try {
-                new Credits();
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(null, "Failed to load credits.", "Credits Load Error", JOptionPane.ERROR_MESSAGE);
-                System.exit(-1);
+                navigator.show(Navigator.GUESSER_MODE, new GuesserMode(Integer.parseInt(code.trim())));
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(introLabel, "Match codes are six digit numbers.", "Join Match", JOptionPane.ERROR_MESSAGE);
             }
         });
+        introLabel.add(joinMatch);
 
         /* Exit Button */
         JButton exitGame = generateButtons(991, 110);
         exitGame.addActionListener(e -> System.exit(0)); // if pressed, exit program
 
-        jFrame.add(introLabel); // add label image to frame
-        jFrame.pack(); // size window
-        jFrame.setVisible(true); // show window
+        Path autosaves = Autosave.directory();
+        Autosave.hold(); // a game started before the player answers mustn't replace the saved one
+        CompletableFuture.supplyAsync(() -> Autosave.load(autosaves)) // read off the EDT, then asked once the menu is up
+                .whenComplete((saved, error) -> {
+                    if (saved != null) SwingUtilities.invokeLater(() -> offerResume(saved, autosaves));
+                    else Autosave.release();
+                });
+    }
+
+    // the layout search takes a second or two, so it runs off the EDT and the window only opens once there's a layout to show
+    private void startHardGame(JButton hardGame) {
+        hardGame.setEnabled(false);
+        hardGame.setText("Setting up...");
+        GameSeed gameSeed = GameSeed.newSession();
+        CompletableFuture.supplyAsync(() -> Game.pickHardLayout(gameSeed))
+                .whenComplete((layout, error) -> SwingUtilities.invokeLater(() -> {
+                    hardGame.setText("Hard Game");
+                    hardGame.setEnabled(true);
+                    try {
+                        if (error == null) {
+                            new Game(gameSeed, layout).start();
+                            return;
+                        }
+                    } catch (Exception ex) {
+                        // same as the search failing
+                    }
+                    JOptionPane.showMessageDialog(null, "Failed to start a hard game.", "Hard Game Open Error", JOptionPane.ERROR_MESSAGE);
+                    System.exit(-1);
+                }));
+    }
+
+    // a game was left part way through last time, the player can carry on with it or throw it away
+    private void offerResume(Autosave.Saved saved, Path autosaves) {
+        int rays = saved.getResult().getRaysFired();
+        int guesses = saved.getResult().getGuesses();
+        int choice = JOptionPane.showConfirmDialog(introLabel,
+                "An unfinished " + (saved.isPractice() ? "practice " : "") + "game was saved (" + rays + " rays, " + guesses + " guesses). Resume it?",
+                "Resume Game", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (choice != JOptionPane.YES_OPTION) {
+            Autosave.discard(autosaves);
+            Autosave.release(); // any game started while this was asked can save now
+            return;
+        }
+        Autosave.release(); // a game started while this was asked saves first, then this one replaces it
+        try {
+            new Game(saved).start(); // replaces the saved files with its own as soon as it starts
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(null, "Failed to resume the game.", "Resume Game Error", JOptionPane.ERROR_MESSAGE);
+            Autosave.discard(autosaves);
+        }
+    }
+
+    @Override
+    public JComponent getComponent() {
+        return introLabel;
     }
 
     private JButton generateButtons(int x, int width) {
@@ -0,0 +1,128 @@
+package network;
+
+import diagnostics.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * One player's connection to a MatchServer. Every call blocks until the server answers, so keep it off the EDT.
+ * The setter hosts and then reads the guesser's progress with next(), the guesser joins and then fires rays and guesses.
+ * An ERROR from the server is thrown as an IOException with its description.
+ */
+public class MatchClient implements Closeable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static MatchServer localServer; // started by the first setter to host when nothing is listening on this machine
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final LatencyHistogram roundTrips = new LatencyHistogram("matchRoundTrip");
+
+    public MatchClient(String host, int port) throws IOException {
+        socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true); // a ray is 2 bytes, waiting to fill a packet would cost far more than sending it
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64));
+            out = socket.getOutputStream();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The server in -Dblackbox.matchServer (host or host:port), or this machine on MatchProtocol.DEFAULT_PORT
+     */
+    public static InetSocketAddress serverAddress() {
+        String property = System.getProperty("blackbox.matchServer", "localhost").trim();
+        int colon = property.lastIndexOf(':');
+        if (colon < 0) return new InetSocketAddress(property, MatchProtocol.DEFAULT_PORT);
+        return new InetSocketAddress(property.substring(0, colon), Integer.parseInt(property.substring(colon + 1)));
+    }
+
+    /**
+     * Connects to serverAddress()
+     * @param startServer Whether to start a server inside this game if the address is this machine and nothing is listening there yet
+     */
+    public static MatchClient connect(boolean startServer) throws IOException {
+        InetSocketAddress address = serverAddress();
+        try {
+            return new MatchClient(address.getHostString(), address.getPort());
+        } catch (ConnectException e) {
+            if (!startServer || address.getAddress() == null || !address.getAddress().isLoopbackAddress()) throw e;
+            synchronized (MatchClient.class) {
+                if (localServer == null) localServer = new MatchServer(address.getPort(), address.getAddress()); // loopback, only players on this machine can reach it
+            }
+            return new MatchClient(address.getHostString(), address.getPort());
+        }
+    }
+
+    /**
+     * Starts a match as the setter
+     * @param atoms Layout the guesser has to find, as RayTracer masks
+     * @return Code for the guesser to join with
+     */
+    public int host(long atoms) throws IOException {
+        return request(MatchProtocol.host(atoms), MatchProtocol.Hosted.class).code();
+    }
+
+    /**
+     * Joins a hosted match as the guesser
+     * @return How many atoms there are to find
+     */
+    public int join(int code) throws IOException {
+        return request(MatchProtocol.join(code), MatchProtocol.Joined.class).numAtoms();
+    }
+
+    /**
+     * Fires a ray into the setter's layout, timed into getRoundTrips
+     */
+    public MatchProtocol.Outcome fireRay(int entry) throws IOException {
+        long start = System.nanoTime();
+        MatchProtocol.Outcome outcome = request(MatchProtocol.ray(entry), MatchProtocol.Outcome.class);
+        roundTrips.recordSince(start);
+        return outcome;
+    }
+
+    /**
+     * Guesses a box holding an atom. After the last guess the server also sends OVER, read it with next().
+     */
+    public MatchProtocol.Guessed guess(int boxNumber) throws IOException {
+        return request(MatchProtocol.guess(boxNumber), MatchProtocol.Guessed.class);
+    }
+
+    /**
+     * Waits for the next message, for the setter following the guesser or the guesser waiting for OVER
+     */
+    public MatchProtocol.Message next() throws IOException {
+        return MatchProtocol.read(in);
+    }
+
+    /**
+     * @return Time from sending each ray to reading its outcome
+     */
+    public LatencyHistogram getRoundTrips() {
+        return roundTrips;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private <T extends MatchProtocol.Message> T request(byte[] message, Class<T> reply) throws IOException {
+        out.write(message);
+        MatchProtocol.Message answer = MatchProtocol.read(in);
+        if (answer instanceof MatchProtocol.Failed failed) throw new IOException(MatchProtocol.describe(failed.reason()));
+        if (!reply.isInstance(answer)) throw new IOException("Expected " + reply.getSimpleName() + " but got " + answer);
+        return reply.cast(answer);
+    }
+}
@@ -0,0 +1,150 @@
+package network;
+
+import computations.RayTracer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The messages between a MatchServer and its clients, for a setter on one machine playing a guesser on another.
+ * Each message is a type byte and a fixed size body, big-endian, so a ray is 2 bytes going out and 4 coming back.
+ * Only what changed is ever sent, the guesser never sees the layout until the match is over.
+ * <pre>
+ *   client to server
+ *   HOST    [1][i64 atom layout]               setter starts a match, answered with HOSTED
+ *   JOIN    [2][i32 match code]                guesser joins it, both players get JOINED
+ *   RAY     [3][u8 entry]                      guesser fires a ray, both players get OUTCOME
+ *   GUESS   [4][u8 box number]                 guesser guesses a box, both players get GUESSED, then OVER after the last guess
+ *
+ *   server to client
+ *   HOSTED  [16][i32 match code]
+ *   JOINED  [17][u8 atoms]
+ *   OUTCOME [18][u8 entry][u8 exit, 0 if absorbed][u8 markers used so far]
+ *   GUESSED [19][u8 box number][u8 1 if correct else 0][u16 score so far]
+ *   OVER    [20][u16 score][i64 atom layout]
+ *   ERROR   [21][u8 reason]
+ * </pre>
+ */
+public final class MatchProtocol {
+    public static final byte HOST = 1;
+    public static final byte JOIN = 2;
+    public static final byte RAY = 3;
+    public static final byte GUESS = 4;
+
+    public static final byte HOSTED = 16;
+    public static final byte JOINED = 17;
+    public static final byte OUTCOME = 18;
+    public static final byte GUESSED = 19;
+    public static final byte OVER = 20;
+    public static final byte ERROR = 21;
+
+    public static final int NO_MATCH = 1; // nothing is waiting for a guesser under that code
+    public static final int BAD_LAYOUT = 2; // no atoms, a box that doesn't exist, or a ray that would never leave the board
+    public static final int EXIT_USED = 3; // a ray has already gone in or come out there
+    public static final int ALREADY_GUESSED = 4;
+    public static final int OUT_OF_TURN = 5; // the message doesn't fit the match's state or who sent it
+    public static final int OPPONENT_LEFT = 6;
+
+    public static final int DEFAULT_PORT = 45054;
+
+    private MatchProtocol() {}
+
+    /**
+     * Something the server sent
+     */
+    public sealed interface Message permits Hosted, Joined, Outcome, Guessed, Over, Failed {}
+
+    public record Hosted(int code) implements Message {}
+
+    public record Joined(int numAtoms) implements Message {}
+
+    /**
+     * @param exit Exit number, the entry again for a reflection, or RayTracer.ABSORBED
+     */
+    public record Outcome(int entry, int exit, int markersUsed) implements Message {}
+
+    public record Guessed(int boxNumber, boolean correct, int score) implements Message {}
+
+    public record Over(int score, long atoms) implements Message {}
+
+    public record Failed(int reason) implements Message {}
+
+    /**
+     * Reads the next message from the server
+     * @throws EOFException If the connection closed between messages
+     */
+    public static Message read(DataInputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) throw new EOFException("Connection closed");
+        return switch (type) {
+            case HOSTED -> new Hosted(in.readInt());
+            case JOINED -> new Joined(in.readUnsignedByte());
+            case OUTCOME -> {
+                int entry = in.readUnsignedByte();
+                int exit = in.readUnsignedByte();
+                yield new Outcome(entry, exit == 0 ? RayTracer.ABSORBED : exit, in.readUnsignedByte());
+            }
+            case GUESSED -> new Guessed(in.readUnsignedByte(), in.readUnsignedByte() != 0, in.readUnsignedShort());
+            case OVER -> new Over(in.readUnsignedShort(), in.readLong());
+            case ERROR -> new Failed(in.readUnsignedByte());
+            default -> throw new IOException("Unknown message " + type);
+        };
+    }
+
+    public static byte[] host(long atoms) {
+        return ByteBuffer.allocate(9).put(HOST).putLong(atoms).array();
+    }
+
+    public static byte[] join(int code) {
+        return ByteBuffer.allocate(5).put(JOIN).putInt(code).array();
+    }
+
+    public static byte[] ray(int entry) {
+        return new byte[]{RAY, (byte) entry};
+    }
+
+    public static byte[] guess(int boxNumber) {
+        return new byte[]{GUESS, (byte) boxNumber};
+    }
+
+    static byte[] hosted(int code) {
+        return ByteBuffer.allocate(5).put(HOSTED).putInt(code).array();
+    }
+
+    static byte[] joined(int numAtoms) {
+        return new byte[]{JOINED, (byte) numAtoms};
+    }
+
+    static byte[] outcome(int entry, int exit, int markersUsed) {
+        return new byte[]{OUTCOME, (byte) entry, (byte) (exit == RayTracer.ABSORBED ? 0 : exit), (byte) markersUsed};
+    }
+
+    static byte[] guessed(int boxNumber, boolean correct, int score) {
+        return ByteBuffer.allocate(5).put(GUESSED).put((byte) boxNumber).put((byte) (correct ? 1 : 0)).putShort((short) score).array();
+    }
+
+    static byte[] over(int score, long atoms) {
+        return ByteBuffer.allocate(11).put(OVER).putShort((short) score).putLong(atoms).array();
+    }
+
+    static byte[] error(int reason) {
+        return new byte[]{ERROR, (byte) reason};
+    }
+
+    /**
+     * @return What an ERROR reason means, for showing to the player
+     */
+    public static String describe(int reason) {
+        return switch (reason) {
+            case NO_MATCH -> "No match is waiting with that code";
+            case BAD_LAYOUT -> "That layout can't be played";
+            case EXIT_USED -> "A ray has already gone in or come out there";
+            case ALREADY_GUESSED -> "That box has already been guessed";
+            case OUT_OF_TURN -> "That can't be done now";
+            case OPPONENT_LEFT -> "The other player left the match";
+            default -> "Unknown error " + reason;
+        };
+    }
+}
@@ -0,0 +1,325 @@
+package network;
+
+import computations.RayTracer;
+import computations.Replayer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts setter-vs-guesser matches (see MatchProtocol).
+ * Every connection gets one virtual thread doing plain blocking reads and another writing what's been queued for it, so thousands of matches
+ * cost thousands of small stacks rather than thousands of platform threads. The setter's layout stays on the server: all 54 outcomes are traced once when the match is hosted,
+ * so a ray is an array lookup, and only the outcome goes back. Nagle is off, so each reply goes out as soon as it's written.
+ * Run on its own with {@code java network.MatchServer [port] [address]}, or started inside the game by the first setter to host.
+ * Only this machine can connect unless an address to listen on is given, 0.0.0.0 for every interface.
+ */
+public class MatchServer implements Closeable {
+    private static final int BACKLOG = 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Integer, Match> waiting = new ConcurrentHashMap<>(); // hosted matches by code, until a guesser joins
+    private final AtomicInteger matches = new AtomicInteger(); // hosted and not yet over or abandoned
+    private final Thread acceptor;
+    private final RayTracer tracer = RayTracer.getInstance();
+
+    /**
+     * Starts listening on the loopback address
+     * @param port Port to listen on, 0 for any free one
+     */
+    public MatchServer(int port) throws IOException {
+        this(port, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @param address Address to listen on, null for all of them
+     */
+    public MatchServer(int port, InetAddress address) throws IOException {
+        serverSocket = new ServerSocket(port, BACKLOG, address);
+        acceptor = Thread.ofVirtual().name("match-server").start(this::accept);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : MatchProtocol.DEFAULT_PORT;
+        InetAddress address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        MatchServer server = new MatchServer(port, address);
+        System.out.println("Hosting matches on " + address.getHostAddress() + " port " + server.getPort());
+        server.acceptor.join();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Matches hosted that haven't finished yet, waiting for a guesser or being played
+     */
+    public int getMatchCount() {
+        return matches.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close(); // the acceptor stops, and every connection closes as its socket does
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.err.println("Match server could not accept: " + e.getMessage());
+            }
+        }
+    }
+
+    // reads one player's requests until they disconnect
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            Player player = new Player(socket);
+            connections.execute(player::write);
+            try {
+                read(player, new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64)));
+            } catch (IOException e) {
+                // the player disconnected, or sent half a message
+            } finally {
+                Match match = player.match;
+                if (match != null) match.left(player);
+                player.finish();
+            }
+        } catch (IOException e) {
+            // gone before anything was read
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the server is closing
+        }
+    }
+
+    private void read(Player player, DataInputStream in) throws IOException {
+        int type;
+        while ((type = in.read()) >= 0) {
+            switch (type) {
+                case MatchProtocol.HOST -> host(player, in.readLong());
+                case MatchProtocol.JOIN -> join(player, in.readInt());
+                case MatchProtocol.RAY -> {
+                    int entry = in.readUnsignedByte();
+                    Match match = player.match;
+                    if (match == null) player.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+                    else match.ray(player, entry);
+                }
+                case MatchProtocol.GUESS -> {
+                    int boxNumber = in.readUnsignedByte();
+                    Match match = player.match;
+                    if (match == null) player.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+                    else match.guess(player, boxNumber);
+                }
+                default -> { // the rest of the stream can't be read, so there's no carrying on
+                    player.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+                    return;
+                }
+            }
+        }
+    }
+
+    private void host(Player setter, long atoms) {
+        if (setter.match != null) {
+            setter.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+            return;
+        }
+        int[] outcomes = new int[RayTracer.NUM_EXITS];
+        if (atoms == 0 || atoms >>> RayTracer.NUM_CELLS != 0) {
+            setter.send(MatchProtocol.error(MatchProtocol.BAD_LAYOUT));
+            return;
+        }
+        tracer.traceAll(atoms, outcomes);
+        for (int outcome : outcomes) {
+            if (outcome == RayTracer.LOOPED) {
+                setter.send(MatchProtocol.error(MatchProtocol.BAD_LAYOUT));
+                return;
+            }
+        }
+        Match match = new Match(setter, atoms, outcomes);
+        int code;
+        do {
+            code = ThreadLocalRandom.current().nextInt(100000, 1000000); // six digits, easy to read out to the other player
+            match.code = code;
+        } while (waiting.putIfAbsent(code, match) != null);
+        setter.match = match;
+        matches.incrementAndGet();
+        setter.send(MatchProtocol.hosted(code));
+    }
+
+    private void join(Player guesser, int code) {
+        Match match = guesser.match == null ? waiting.remove(code) : null;
+        if (match == null) {
+            guesser.send(MatchProtocol.error(guesser.match == null ? MatchProtocol.NO_MATCH : MatchProtocol.OUT_OF_TURN));
+            return;
+        }
+        match.joined(guesser);
+    }
+
+    // someone connected, with the match they're in once they've hosted or joined one.
+    // Messages to them are queued and written by their own writer thread, so a player slow to read never holds up a match's lock or the other player.
+    private static class Player {
+        private static final byte[] FINISHED = new byte[0];
+        private static final int OUTBOX_SIZE = 256; // a whole match is under 130 messages, more means they've stopped reading
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final LinkedBlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>(OUTBOX_SIZE);
+        private final CountDownLatch written = new CountDownLatch(1);
+        private volatile Match match;
+
+        Player(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        // never blocks, messages go out in the order they were queued. A player who lets their outbox fill up is disconnected.
+        void send(byte[] message) {
+            if (!outbox.offer(message)) disconnect();
+        }
+
+        // the writer thread, until finish() or the socket fails
+        void write() {
+            try {
+                for (byte[] message = outbox.take(); message != FINISHED; message = outbox.take()) out.write(message);
+            } catch (IOException | InterruptedException e) {
+                disconnect();
+            } finally {
+                written.countDown();
+            }
+        }
+
+        // waits for everything already queued to be written
+        void finish() throws InterruptedException {
+            if (!outbox.offer(FINISHED)) disconnect(); // the writer fails on the closed socket instead
+            written.await();
+        }
+
+        // their reader sees the socket close and ends the match
+        private void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already closed
+            }
+        }
+    }
+
+    // one setter's layout and what the guesser has found out about it, changed under its own lock by whichever player's thread is sending.
+    // Replies are only queued under the lock, which fixes the order each player sees them in.
+    private class Match {
+        private final Player setter;
+        private final long atoms;
+        private final int numAtoms;
+        private final int[] outcomes;
+        private Player guesser;
+        private int code;
+        private long usedExits = 0;
+        private long guessedBoxes = 0;
+        private int raysFired = 0;
+        private int markersUsed = 0;
+        private int incorrectGuesses = 0;
+        private int guesses = 0;
+        private boolean ended = false;
+
+        Match(Player setter, long atoms, int[] outcomes) {
+            this.setter = setter;
+            this.atoms = atoms;
+            this.numAtoms = Long.bitCount(atoms);
+            this.outcomes = outcomes;
+        }
+
+        synchronized void joined(Player guesser) {
+            if (ended) { // the setter left as the guesser joined
+                guesser.send(MatchProtocol.error(MatchProtocol.NO_MATCH));
+                return;
+            }
+            this.guesser = guesser;
+            guesser.match = this;
+            byte[] joined = MatchProtocol.joined(numAtoms);
+            guesser.send(joined);
+            setter.send(joined);
+        }
+
+        synchronized void ray(Player player, int entry) {
+            if (player != guesser || ended || guesses > 0) { // rays come before guesses, as in the one player game
+                player.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+                return;
+            }
+            if (entry < 1 || entry > RayTracer.NUM_EXITS || (usedExits >>> entry & 1L) != 0) {
+                player.send(MatchProtocol.error(MatchProtocol.EXIT_USED));
+                return;
+            }
+            int exit = outcomes[entry - 1];
+            usedExits |= 1L << entry;
+            raysFired++;
+            if (exit == RayTracer.ABSORBED || exit == entry) {
+                markersUsed++;
+            } else {
+                usedExits |= 1L << exit;
+                markersUsed += 2;
+            }
+            byte[] outcome = MatchProtocol.outcome(entry, exit, markersUsed);
+            guesser.send(outcome);
+            setter.send(outcome);
+        }
+
+        synchronized void guess(Player player, int boxNumber) {
+            if (player != guesser || ended) {
+                player.send(MatchProtocol.error(MatchProtocol.OUT_OF_TURN));
+                return;
+            }
+            if (boxNumber < 1 || boxNumber > RayTracer.NUM_CELLS || (guessedBoxes >>> (boxNumber - 1) & 1L) != 0) {
+                player.send(MatchProtocol.error(MatchProtocol.ALREADY_GUESSED));
+                return;
+            }
+            guessedBoxes |= 1L << (boxNumber - 1);
+            guesses++;
+            boolean correct = RayTracer.hasAtom(atoms, boxNumber - 1);
+            if (!correct) incorrectGuesses++;
+            int score = Replayer.STANDARD_SCORING.score(markersUsed, incorrectGuesses, raysFired);
+            byte[] guessed = MatchProtocol.guessed(boxNumber, correct, score);
+            guesser.send(guessed);
+            setter.send(guessed);
+            if (guesses < numAtoms) return;
+
+            end();
+            byte[] over = MatchProtocol.over(score, atoms);
+            guesser.send(over);
+            setter.send(over);
+        }
+
+        synchronized void left(Player player) {
+            if (ended) return;
+            end();
+            waiting.remove(code, this);
+            Player other = player == setter ? guesser : setter;
+            if (other != null) other.send(MatchProtocol.error(MatchProtocol.OPPONENT_LEFT));
+        }
+
+        private void end() {
+            ended = true;
+            matches.decrementAndGet();
+            setter.match = null;
+            if (guesser != null) guesser.match = null;
+        }
+    }
+}
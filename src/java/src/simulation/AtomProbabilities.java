@@ -0,0 +1,198 @@
+package simulation;
+
+import computations.RayTracer;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Works out how likely each box is to hold an atom given the rays fired so far (for the heatmap overlay), without blocking the game.
+ * Each ray starts two searches in the background: an exact count of every layout that agrees with the rays, which gives up
+ * on a branch as soon as a ray that came out wrong can no longer be changed, and Metropolis sampling (LayoutSampler) in short rounds.
+ * Every round publishes a better estimate, the first within a few tens of milliseconds, and the exact answer replaces it if it finishes in time.
+ */
+public class AtomProbabilities {
+    private static final long FIRST_ROUND_NANOS = 30_000_000; // so the overlay changes well within 100 ms of a ray
+    private static final long ROUND_NANOS = 100_000_000;
+    private static final long SAMPLING_BUDGET_NANOS = 5_000_000_000L;
+    private static final long EXACT_BUDGET_NANOS = 20_000_000_000L;
+    private static final int CHAINS_PER_SAMPLER = 8;
+
+    /**
+     * Told about every new estimate, on a background thread
+     */
+    public interface Listener {
+        void updated(double[] probabilities, boolean exact);
+    }
+
+    private final RayTracer tracer;
+    private final int numAtoms;
+    private final Listener listener;
+    private final Observations observations = new Observations(); // only changed on the coordinator thread, between searches
+    private final LayoutSampler[] samplers;
+    private final ExecutorService coordinator;
+    private final ForkJoinPool samplingWorkers;
+    private final ForkJoinPool exactWorkers; // separate, so a long exact search can't hold up the sampled estimates
+    private final AtomicInteger generation = new AtomicInteger(); // bumped by every ray, so searches for older rays give up
+    private volatile double[] probabilities;
+    private volatile boolean exact = true;
+
+    public AtomProbabilities(RayTracer tracer, int numAtoms, int parallelism, long seed, Listener listener) {
+        this.tracer = tracer;
+        this.numAtoms = numAtoms;
+        this.listener = listener;
+        SplittableRandom random = new SplittableRandom(seed);
+        samplers = new LayoutSampler[parallelism];
+        for (int i = 0; i < parallelism; i++) samplers[i] = new LayoutSampler(tracer, observations, numAtoms, CHAINS_PER_SAMPLER, random.split());
+        coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atom-probabilities");
+            thread.setDaemon(true);
+            return thread;
+        });
+        samplingWorkers = daemonPool(parallelism);
+        exactWorkers = daemonPool(parallelism);
+        probabilities = new double[RayTracer.NUM_CELLS];
+        Arrays.fill(probabilities, (double) numAtoms / RayTracer.NUM_CELLS); // before any rays every box is as likely as any other
+    }
+
+    /**
+     * Adds a ray and starts working out the new probabilities, returning straight away
+     * @param exit Exit number or RayTracer.ABSORBED
+     */
+    public void rayFired(int entry, int exit) {
+        int current = generation.incrementAndGet();
+        coordinator.execute(() -> {
+            observations.add(entry, exit);
+            refine(current);
+        });
+    }
+
+    /**
+     * @return The latest estimate for each box (cell index), don't change it
+     */
+    public double[] getProbabilities() {
+        return probabilities;
+    }
+
+    /**
+     * @return Whether the latest estimate is exact rather than sampled
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        coordinator.shutdownNow();
+        samplingWorkers.shutdownNow();
+        exactWorkers.shutdownNow();
+    }
+
+    private void refine(int current) {
+        long start = System.nanoTime();
+        BooleanSupplier stale = () -> generation.get() != current;
+        CompletableFuture<double[]> exactSearch = CompletableFuture.supplyAsync(() ->
+                enumerate(tracer, observations, numAtoms, () -> stale.getAsBoolean() || System.nanoTime() - start > EXACT_BUDGET_NANOS), exactWorkers);
+
+        for (LayoutSampler sampler : samplers) sampler.update();
+        double[] counts = new double[RayTracer.NUM_CELLS];
+        long samples = 0;
+        int steps = 10;
+        long roundNanos = FIRST_ROUND_NANOS;
+        while (!stale.getAsBoolean() && !exactSearch.isDone() && System.nanoTime() - start < SAMPLING_BUDGET_NANOS) {
+            long roundStart = System.nanoTime();
+            int roundSteps = steps;
+            samplingWorkers.submit(() -> Arrays.stream(samplers).parallel().forEach(sampler -> sampler.run(roundSteps))).join();
+            long elapsed = Math.max(1, System.nanoTime() - roundStart);
+            steps = (int) Math.clamp(steps * roundNanos / elapsed, 1, steps * 2L); // aim for rounds of roundNanos
+            roundNanos = ROUND_NANOS;
+
+            double[] estimate = new double[RayTracer.NUM_CELLS];
+            for (LayoutSampler sampler : samplers) {
+                for (int chain = 0; chain < sampler.getNumChains(); chain++) {
+                    if (sampler.getEnergy(chain) != 0) continue; // only layouts that agree with every ray count
+                    samples++;
+                    for (long rest = sampler.getChain(chain); rest != 0; rest &= rest - 1) counts[Long.numberOfTrailingZeros(rest)]++;
+                }
+                if (samples == 0) { // nothing matches yet, so show what the closest chains think
+                    double[] marginals = sampler.marginals();
+                    for (int cell = 0; cell < estimate.length; cell++) estimate[cell] += marginals[cell] / samplers.length;
+                }
+            }
+            if (samples > 0) for (int cell = 0; cell < estimate.length; cell++) estimate[cell] = counts[cell] / samples;
+            publish(stale, estimate, false);
+        }
+        double[] result = exactSearch.join();
+        if (result != null) publish(stale, result, true);
+    }
+
+    private static ForkJoinPool daemonPool(int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    private void publish(BooleanSupplier stale, double[] estimate, boolean isExact) {
+        if (stale.getAsBoolean()) return;
+        probabilities = estimate;
+        exact = isExact;
+        listener.updated(estimate, isExact);
+    }
+
+    /**
+     * Counts every layout that gives the observed outcomes, splitting the work by where the first atom is
+     * @param stop Checked as it goes, the search gives up once it's true
+     * @return The share of matching layouts with an atom in each box, or null if it gave up or nothing matches
+     */
+    public static double[] enumerate(RayTracer tracer, Observations observations, int numAtoms, BooleanSupplier stop) {
+        long[][] counts = new long[RayTracer.NUM_CELLS][RayTracer.NUM_CELLS + 1]; // last element counts the layouts
+        boolean finished = IntStream.range(0, RayTracer.NUM_CELLS - numAtoms + 1).parallel()
+                .allMatch(first -> search(tracer, observations, 1L << first, first + 1, numAtoms - 1, counts[first], new int[RayTracer.MAX_PATH], stop));
+        if (!finished) return null;
+        double[] probabilities = new double[RayTracer.NUM_CELLS];
+        long layouts = 0;
+        for (long[] firstCounts : counts) {
+            layouts += firstCounts[RayTracer.NUM_CELLS];
+            for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) probabilities[cell] += firstCounts[cell];
+        }
+        if (layouts == 0) return null;
+        for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) probabilities[cell] /= layouts;
+        return probabilities;
+    }
+
+    // boxes below next are decided, the rest are still empty; returns false if it was stopped
+    private static boolean search(RayTracer tracer, Observations observations, long atoms, int next, int remaining, long[] counts, int[] path, BooleanSupplier stop) {
+        if (remaining == 0) {
+            if (observations.isConsistent(tracer, atoms)) {
+                for (long rest = atoms; rest != 0; rest &= rest - 1) counts[Long.numberOfTrailingZeros(rest)]++;
+                counts[RayTracer.NUM_CELLS]++;
+            }
+            return true;
+        }
+        if (stop.getAsBoolean()) return false;
+        long undecided = ((1L << RayTracer.NUM_CELLS) - 1) & -(1L << next);
+        long candidates = undecided;
+        for (int i = 0; i < observations.size(); i++) {
+            if (tracer.trace(atoms, observations.getEntry(i)) == observations.getExit(i)) continue;
+            // this ray comes out wrong, so one of the atoms still to be placed has to be somewhere that changes it
+            long free = tracer.influence(atoms, observations.getEntry(i), path) & undecided;
+            if (free == 0) return true;
+            if (remaining == 1) candidates &= free;
+        }
+        for (long rest = candidates; rest != 0; rest &= rest - 1) {
+            int cell = Long.numberOfTrailingZeros(rest);
+            if (RayTracer.NUM_CELLS - cell < remaining) break;
+            if (!search(tracer, observations, atoms | 1L << cell, cell + 1, remaining - 1, counts, path, stop)) return false;
+        }
+        return true;
+    }
+}
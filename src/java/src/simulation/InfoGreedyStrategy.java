@@ -0,0 +1,117 @@
+package simulation;
+
+import computations.RayTracer;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Keeps a sample of layouts that agree with every ray so far and shoots the ray whose outcome they disagree on most (highest entropy).
+ * It stops once the guesses it would make are expected to cost fewer points than another ray's markers.
+ * With an OpeningBook it plays the book's rays while the game is still in it, instead of scoring every ray.
+ */
+public class InfoGreedyStrategy implements Strategy {
+    private final int chains;
+    private final int stepsPerRay;
+    private final int maxRays;
+    private final double maxExpectedWrong;
+    private OpeningBook openingBook;
+
+    /**
+     * @param chains Sampler chains kept for each game
+     * @param stepsPerRay Sampler steps per chain after each ray
+     * @param maxRays Most rays shot before guessing
+     * @param maxExpectedWrong Stops once the expected number of wrong guesses falls below this
+     */
+    public InfoGreedyStrategy(int chains, int stepsPerRay, int maxRays, double maxExpectedWrong) {
+        this.chains = chains;
+        this.stepsPerRay = stepsPerRay;
+        this.maxRays = maxRays;
+        this.maxExpectedWrong = maxExpectedWrong;
+    }
+
+    /**
+     * @param openingBook Book to take the first rays from, ignored if it's for a different number of atoms
+     */
+    public InfoGreedyStrategy setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return "info-greedy";
+    }
+
+    @Override
+    public Player newPlayer(int numAtoms, RandomGenerator random) {
+        return new Player() {
+            private LayoutSampler sampler;
+            private final OpeningBook book = openingBook != null && openingBook.getNumAtoms() == numAtoms ? openingBook : null;
+            private int bookRays = 0; // rays taken from the book, the sampler catches up on their steps once the game leaves it
+            private final int[] outcomeCounts = new int[RayTracer.NUM_EXITS + 3]; // indexed by outcome + 2 (LOOPED, ABSORBED, exits)
+
+            @Override
+            public int nextRay(Observations observations) {
+                if (book != null && bookRays == observations.size() && observations.size() < maxRays) {
+                    int entry = book.nextRay(observations);
+                    if (entry != 0 && !observations.isUsed(entry)) {
+                        bookRays++;
+                        return entry;
+                    }
+                }
+                if (sampler == null) sampler = new LayoutSampler(RayTracer.getInstance(), observations, numAtoms, chains, random);
+                if (observations.size() >= maxRays) return 0;
+                sampler.update();
+                sampler.run(stepsPerRay * bookRays);
+                bookRays = 0;
+                sampler.run(stepsPerRay / 2);
+                sampler.resample();
+                sampler.run(stepsPerRay - stepsPerRay / 2);
+                double[] marginals = sampler.marginals();
+                long likely = LayoutSampler.topCells(marginals, numAtoms);
+                double expectedWrong = 0;
+                for (long rest = likely; rest != 0; rest &= rest - 1) expectedWrong += 1 - marginals[Long.numberOfTrailingZeros(rest)];
+                // a lone matching chain is overconfident, so a few have to match every ray before stopping
+                if (expectedWrong < maxExpectedWrong && sampler.countConsistent() >= Math.max(2, sampler.getNumChains() / 4)) return 0;
+
+                int bestEntry = 0;
+                double bestBits = -1; // some ray is always shot until the stopping rule says otherwise
+                for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                    if (observations.isUsed(entry)) continue;
+                    Arrays.fill(outcomeCounts, 0);
+                    for (int chain = 0; chain < sampler.getNumChains(); chain++) { // every chain, the ones still getting rays wrong hint at where else the atoms could be
+                        outcomeCounts[RayTracer.getInstance().trace(sampler.getChain(chain), entry) + 2]++;
+                    }
+                    double bits = entropy(outcomeCounts, sampler.getNumChains());
+                    if (bits > bestBits) {
+                        bestBits = bits;
+                        bestEntry = entry;
+                    }
+                }
+                return bestEntry;
+            }
+
+            @Override
+            public long guess(Observations observations) {
+                if (sampler == null) sampler = new LayoutSampler(RayTracer.getInstance(), observations, numAtoms, chains, random);
+                sampler.update();
+                sampler.run(stepsPerRay * bookRays);
+                bookRays = 0;
+                sampler.resample();
+                sampler.run(stepsPerRay * 4);
+                return sampler.mostLikelyLayout();
+            }
+        };
+    }
+
+    private static double entropy(int[] counts, int total) {
+        double bits = 0;
+        for (int count : counts) {
+            if (count == 0) continue;
+            double p = (double) count / total;
+            bits -= p * Math.log(p);
+        }
+        return bits / Math.log(2);
+    }
+}
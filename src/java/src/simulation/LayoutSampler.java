@@ -0,0 +1,162 @@
+package simulation;
+
+import computations.RayTracer;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples atom layouts that agree with the rays seen so far, using several Metropolis chains.
+ * A chain's energy is the number of observed rays its layout gets wrong, and each step moves one atom to an empty box.
+ * Chains carry on from where they were when a new ray is observed, so each observation only needs a few more steps.
+ */
+public class LayoutSampler {
+    private static final double BETA = 2.0; // each extra wrong ray makes a layout e^2 times less likely
+    private static final int GIVE_UP_MARGIN = 3; // proposals this much worse are rejected without tracing the remaining rays
+
+    private final RayTracer tracer;
+    private final RandomGenerator random;
+    private final int numAtoms;
+    private final long[] chains;
+    private final int[] energies;
+    private final Observations observations;
+    private final double[] acceptance = new double[GIVE_UP_MARGIN + 1]; // exp(-BETA * increase)
+
+    public LayoutSampler(RayTracer tracer, Observations observations, int numAtoms, int numChains, RandomGenerator random) {
+        this.tracer = tracer;
+        this.observations = observations;
+        this.numAtoms = numAtoms;
+        this.random = random;
+        this.chains = new long[numChains];
+        this.energies = new int[numChains];
+        for (int i = 0; i <= GIVE_UP_MARGIN; i++) acceptance[i] = Math.exp(-BETA * i);
+        for (int chain = 0; chain < numChains; chain++) {
+            long atoms = 0;
+            while (Long.bitCount(atoms) < numAtoms) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            chains[chain] = atoms;
+        }
+    }
+
+    /**
+     * Recomputes every chain's energy, call after adding observations
+     */
+    public void update() {
+        for (int chain = 0; chain < chains.length; chain++) energies[chain] = energy(chains[chain], Integer.MAX_VALUE);
+    }
+
+    /**
+     * Restarts every chain that's worse than the best ones from a copy of a random best chain,
+     * the copies spread out again over the next few steps (like a particle filter)
+     */
+    public void resample() {
+        int bestEnergy = Integer.MAX_VALUE;
+        for (int energy : energies) bestEnergy = Math.min(bestEnergy, energy);
+        int[] best = new int[chains.length];
+        int numBest = 0;
+        for (int chain = 0; chain < chains.length; chain++) if (energies[chain] == bestEnergy) best[numBest++] = chain;
+        for (int chain = 0; chain < chains.length; chain++) {
+            if (energies[chain] == bestEnergy) continue;
+            int source = best[random.nextInt(numBest)];
+            chains[chain] = chains[source];
+            energies[chain] = bestEnergy;
+        }
+    }
+
+    /**
+     * Advances every chain
+     * @param steps Proposed moves per chain
+     */
+    public void run(int steps) {
+        for (int chain = 0; chain < chains.length; chain++) {
+            long atoms = chains[chain];
+            int energy = energies[chain];
+            for (int step = 0; step < steps; step++) {
+                int from = nthSetBit(atoms, random.nextInt(numAtoms));
+                int to = random.nextInt(RayTracer.NUM_CELLS);
+                if (RayTracer.hasAtom(atoms, to)) continue;
+                long proposal = atoms & ~(1L << from) | 1L << to;
+                int proposed = energy(proposal, energy + GIVE_UP_MARGIN);
+                int increase = proposed - energy;
+                if (increase <= 0 || (increase <= GIVE_UP_MARGIN && random.nextDouble() < acceptance[increase])) {
+                    atoms = proposal;
+                    energy = proposed;
+                }
+            }
+            chains[chain] = atoms;
+            energies[chain] = energy;
+        }
+    }
+
+    /**
+     * @return For each box, the share of chains with an atom there, counting only chains that match every ray if there are any
+     */
+    public double[] marginals() {
+        double[] marginals = new double[RayTracer.NUM_CELLS];
+        int bestEnergy = Integer.MAX_VALUE;
+        for (int energy : energies) bestEnergy = Math.min(bestEnergy, energy);
+        int counted = 0;
+        for (int chain = 0; chain < chains.length; chain++) {
+            if (energies[chain] != bestEnergy) continue;
+            counted++;
+            for (long rest = chains[chain]; rest != 0; rest &= rest - 1) marginals[Long.numberOfTrailingZeros(rest)]++;
+        }
+        for (int cell = 0; cell < marginals.length; cell++) marginals[cell] /= counted;
+        return marginals;
+    }
+
+    /**
+     * @return The numAtoms most likely boxes as a layout mask
+     */
+    public long mostLikelyLayout() {
+        return topCells(marginals(), numAtoms);
+    }
+
+    /**
+     * @return Current layout of each chain, only meaningful alongside {@link #getEnergy(int)}
+     */
+    public long getChain(int chain) {
+        return chains[chain];
+    }
+
+    public int getEnergy(int chain) {
+        return energies[chain];
+    }
+
+    /**
+     * @return Chains whose layout matches every observed ray
+     */
+    public int countConsistent() {
+        int consistent = 0;
+        for (int energy : energies) if (energy == 0) consistent++;
+        return consistent;
+    }
+
+    public int getNumChains() {
+        return chains.length;
+    }
+
+    static long topCells(double[] weights, int count) {
+        long picked = 0;
+        for (int i = 0; i < count; i++) {
+            int best = -1;
+            for (int cell = 0; cell < weights.length; cell++) {
+                if (!RayTracer.hasAtom(picked, cell) && (best < 0 || weights[cell] > weights[best])) best = cell;
+            }
+            picked |= 1L << best;
+        }
+        return picked;
+    }
+
+    // counts the observed rays a layout gets wrong, stopping early once it's past the limit
+    private int energy(long atoms, int limit) {
+        int wrong = 0;
+        for (int i = 0; i < observations.size() && wrong <= limit; i++) {
+            if (tracer.trace(atoms, observations.getEntry(i)) != observations.getExit(i)) wrong++;
+        }
+        return wrong;
+    }
+
+    private static int nthSetBit(long bits, int n) {
+        for (int i = 0; i < n; i++) bits &= bits - 1;
+        return Long.numberOfTrailingZeros(bits);
+    }
+}
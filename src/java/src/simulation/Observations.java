@@ -0,0 +1,60 @@
+package simulation;
+
+import computations.RayTracer;
+
+/**
+ * The rays fired so far in one simulated game and where they came out
+ */
+public class Observations {
+    private final int[] entries = new int[RayTracer.NUM_EXITS];
+    private final int[] exits = new int[RayTracer.NUM_EXITS];
+    private int size = 0;
+    private long used = 0; // bit n is set once exit number n has been fired from or a ray has left through it
+
+    public void add(int entry, int exit) {
+        entries[size] = entry;
+        exits[size] = exit;
+        size++;
+        used |= 1L << entry;
+        if (exit > 0) used |= 1L << exit;
+    }
+
+    /**
+     * Goes back to the first observations, or forward again to a size it had before, provided nothing was added since going back
+     */
+    public void setSize(int observations) {
+        size = observations;
+        used = 0; // at most 54 rays, so working it out again is as cheap as keeping track
+        for (int i = 0; i < size; i++) used |= 1L << entries[i] | (exits[i] > 0 ? 1L << exits[i] : 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getEntry(int i) {
+        return entries[i];
+    }
+
+    /**
+     * @return Exit number of observation i, or RayTracer.ABSORBED
+     */
+    public int getExit(int i) {
+        return exits[i];
+    }
+
+    /**
+     * @return Whether the game would refuse a ray from this exit number (same rule as GameWindow's visited boxes)
+     */
+    public boolean isUsed(int entry) {
+        return (used >>> entry & 1L) != 0;
+    }
+
+    /**
+     * @return Whether a layout gives exactly the same outcomes for every ray observed
+     */
+    public boolean isConsistent(RayTracer tracer, long atoms) {
+        for (int i = 0; i < size; i++) if (tracer.trace(atoms, entries[i]) != exits[i]) return false;
+        return true;
+    }
+}
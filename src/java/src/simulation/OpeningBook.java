@@ -0,0 +1,340 @@
+package simulation;
+
+import computations.RayTracer;
+import computations.Replayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The best first few rays of a game, worked out once offline so players don't have to at the start of every game.
+ * The first rays are fired knowing nothing about the layout, so the choice only depends on the outcomes seen so far
+ * and can be stored as a tree: each node holds the ray to fire next and one child for each outcome it can have.
+ * The file is a 14 byte header followed by the nodes breadth first, so a node's children sit next to each other sorted by outcome
+ * and a lookup reads a handful of records straight out of the mapped file:
+ * <pre>
+ *   HEADER [i32 magic "BBOB"][u16 version][u16 atoms][u16 depth][i32 node count]
+ *   NODE   [i8 outcome that led here][u8 entry to fire, 0 if none][u16 child count][i32 index of first child]
+ * </pre>
+ * Players use the book named by -Dblackbox.openings=book.bbo if its atom count matches.
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x42424F42; // "BBOB"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 14;
+    public static final int NODE_SIZE = 8;
+
+    private static volatile OpeningBook requested;
+    private static volatile boolean requestedLoaded = false;
+
+    private final ByteBuffer buffer;
+    private final int numAtoms;
+    private final int depth;
+    private final int size;
+
+    private OpeningBook(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IllegalStateException("Not an opening book");
+        if (buffer.getShort(4) != VERSION) throw new IllegalStateException("Unsupported opening book version " + buffer.getShort(4));
+        this.numAtoms = buffer.getShort(6) & 0xFFFF;
+        this.depth = buffer.getShort(8) & 0xFFFF;
+        this.size = buffer.getInt(10);
+        if (size < 1 || (long) HEADER_SIZE + (long) size * NODE_SIZE > buffer.limit()) throw new IllegalStateException("Opening book is truncated");
+    }
+
+    /**
+     * Maps a book file into memory
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The book named by -Dblackbox.openings, or null if there isn't one or it can't be read
+     */
+    public static OpeningBook requested() {
+        if (!requestedLoaded) {
+            synchronized (OpeningBook.class) {
+                if (!requestedLoaded) {
+                    String file = System.getProperty("blackbox.openings");
+                    if (file != null && !file.isBlank()) {
+                        try {
+                            requested = open(Path.of(file));
+                        } catch (IOException | RuntimeException e) { // players work the rays out themselves instead
+                            System.err.println("Could not load opening book " + file + ": " + e.getMessage());
+                        }
+                    }
+                    requestedLoaded = true;
+                }
+            }
+        }
+        return requested;
+    }
+
+    public int getNumAtoms() {
+        return numAtoms;
+    }
+
+    /**
+     * @return Most rays the book covers
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The book's next ray for a game that has gone this way so far, or 0 if the game has left the book
+     */
+    public int nextRay(Observations observations) {
+        int node = 0;
+        for (int i = 0; i < observations.size(); i++) {
+            if (entry(node) != observations.getEntry(i)) return 0;
+            node = child(node, observations.getExit(i));
+            if (node < 0) return 0;
+        }
+        return entry(node);
+    }
+
+    private int entry(int node) {
+        return buffer.get(HEADER_SIZE + node * NODE_SIZE + 1) & 0xFF;
+    }
+
+    // binary search of the node's children by outcome, -1 if the book didn't expect this one
+    private int child(int node, int outcome) {
+        int offset = HEADER_SIZE + node * NODE_SIZE;
+        int low = buffer.getInt(offset + 4);
+        int high = low + (buffer.getShort(offset + 2) & 0xFFFF) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = buffer.get(HEADER_SIZE + middle * NODE_SIZE);
+            if (found < outcome) low = middle + 1;
+            else if (found > outcome) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the tree of openings against a sample of random layouts.
+     * Each ray is worth the information its outcome gives about the layout (in bits), less what it costs under the standard
+     * scoring (markers) at pointPrice bits a point. At each node the width rays that look best on their own are searched
+     * further, and the one with the best expected total over the rest of the opening is kept.
+     */
+    public static class Builder {
+        private final RayTracer tracer;
+        private int numAtoms = 6;
+        private int depth = 3;
+        private int width = 4;
+        private int samples = 50_000;
+        private int minSamples = 200; // outcomes seen less often than this are left out of the book, too few layouts to judge by
+        private double pointPrice = 1.0;
+        private long seed = 1;
+        private byte[] outcomes; // outcomes[sample * NUM_EXITS + entry - 1] for every sampled layout
+
+        public Builder(RayTracer tracer) {
+            this.tracer = tracer;
+        }
+
+        public Builder setNumAtoms(int numAtoms) {
+            this.numAtoms = numAtoms;
+            return this;
+        }
+
+        public Builder setDepth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        public Builder setWidth(int width) {
+            this.width = width;
+            return this;
+        }
+
+        public Builder setSamples(int samples, int minSamples) {
+            this.samples = samples;
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public Builder setPointPrice(double pointPrice) {
+            this.pointPrice = pointPrice;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Builds the book and writes it, replacing any file already there only once the new one is complete
+         * @return Nodes written
+         */
+        public int write(Path file) throws IOException {
+            Node root = build();
+            List<Node> order = new ArrayList<>(); // breadth first, so each node's children end up together
+            ArrayDeque<Node> queue = new ArrayDeque<>(List.of(root));
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                order.add(node);
+                queue.addAll(node.children);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + order.size() * NODE_SIZE).order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) numAtoms).putShort((short) depth).putInt(order.size());
+            int nextChild = 1;
+            for (Node node : order) {
+                buffer.put((byte) node.outcome).put((byte) node.entry).putShort((short) node.children.size()).putInt(nextChild);
+                nextChild += node.children.size();
+            }
+            Path absolute = file.toAbsolutePath();
+            Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, buffer.array());
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return order.size();
+        }
+
+        Node build() {
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] traced = new int[RayTracer.NUM_EXITS];
+            outcomes = new byte[samples * RayTracer.NUM_EXITS];
+            for (int sample = 0; sample < samples; sample++) {
+                boolean loops;
+                do { // layouts the real game would hang on never happen
+                    long atoms = 0;
+                    while (Long.bitCount(atoms) < numAtoms) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+                    tracer.traceAll(atoms, traced);
+                    loops = false;
+                    for (int outcome : traced) loops |= outcome == RayTracer.LOOPED;
+                } while (loops);
+                for (int entry = 0; entry < RayTracer.NUM_EXITS; entry++) outcomes[sample * RayTracer.NUM_EXITS + entry] = (byte) traced[entry];
+            }
+            int[] all = new int[samples];
+            for (int sample = 0; sample < samples; sample++) all[sample] = sample;
+            return search(all, depth, 0, 0);
+        }
+
+        // the best opening for the samples that got here, used has bit n set for exit numbers already fired or marked
+        private Node search(int[] here, int raysLeft, long used, int outcome) {
+            Node best = new Node(outcome);
+            if (raysLeft == 0 || here.length < minSamples) return best;
+            double[] values = new double[RayTracer.NUM_EXITS + 1];
+            int[] counts = new int[RayTracer.NUM_EXITS + 3]; // indexed by outcome + 2 (LOOPED, ABSORBED, exits)
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                values[entry] = Double.NEGATIVE_INFINITY;
+                if ((used >>> entry & 1L) != 0) continue;
+                values[entry] = rayValue(here, entry, counts);
+            }
+            best.value = Double.NEGATIVE_INFINITY;
+            for (int candidate = 0; candidate < width; candidate++) {
+                int entry = 0;
+                for (int e = 1; e <= RayTracer.NUM_EXITS; e++) if (values[e] > Double.NEGATIVE_INFINITY && (entry == 0 || values[e] > values[entry])) entry = e;
+                if (entry == 0) break;
+                Node node = expand(here, entry, values[entry], raysLeft, used, outcome, counts);
+                values[entry] = Double.NEGATIVE_INFINITY;
+                if (node.value > best.value) best = node;
+            }
+            return best;
+        }
+
+        private Node expand(int[] here, int entry, double value, int raysLeft, long used, int outcome, int[] counts) {
+            Node node = new Node(outcome);
+            node.entry = entry;
+            node.value = value;
+            if (raysLeft == 1) return node;
+            // split the samples by this ray's outcome, counting sort so each child's samples are together
+            Arrays.fill(counts, 0);
+            for (int sample : here) counts[outcomes[sample * RayTracer.NUM_EXITS + entry - 1] + 2]++;
+            int[] starts = new int[counts.length + 1];
+            for (int i = 0; i < counts.length; i++) starts[i + 1] = starts[i] + counts[i];
+            int[] sorted = new int[here.length];
+            int[] next = starts.clone();
+            for (int sample : here) sorted[next[outcomes[sample * RayTracer.NUM_EXITS + entry - 1] + 2]++] = sample;
+            for (int i = 0; i < counts.length; i++) {
+                int count = starts[i + 1] - starts[i];
+                if (count < minSamples) continue;
+                int exit = i - 2;
+                long marked = used | 1L << entry | (exit > 0 ? 1L << exit : 0);
+                Node child = search(Arrays.copyOfRange(sorted, starts[i], starts[i + 1]), raysLeft - 1, marked, exit);
+                if (child.entry == 0) continue;
+                node.children.add(child);
+                node.value += child.value * count / here.length;
+            }
+            return node;
+        }
+
+        // bits of information in the ray's outcome, less its expected cost in points
+        private double rayValue(int[] here, int entry, int[] counts) {
+            Arrays.fill(counts, 0);
+            int singleMarker = 0;
+            for (int sample : here) {
+                int exit = outcomes[sample * RayTracer.NUM_EXITS + entry - 1];
+                counts[exit + 2]++;
+                if (exit == RayTracer.ABSORBED || exit == entry) singleMarker++;
+            }
+            double bits = 0;
+            for (int count : counts) {
+                if (count == 0) continue;
+                double p = (double) count / here.length;
+                bits -= p * Math.log(p);
+            }
+            bits /= Math.log(2);
+            double points = (singleMarker * (double) Replayer.STANDARD_SCORING.score(1, 0, 1)
+                    + (here.length - singleMarker) * (double) Replayer.STANDARD_SCORING.score(2, 0, 1)) / here.length;
+            return bits - pointPrice * points;
+        }
+    }
+
+    static class Node {
+        final int outcome;
+        int entry = 0;
+        double value = 0;
+        final List<Node> children = new ArrayList<>(); // sorted by outcome, the order expand finds them in
+
+        Node(int outcome) {
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * Builds a book file: OpeningBook out.bbo [depth] [samples] [seed] [atoms]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OpeningBook out.bbo [depth] [samples] [seed] [atoms]");
+            System.exit(1);
+        }
+        Builder builder = new Builder(RayTracer.getInstance());
+        if (args.length > 1) builder.setDepth(Integer.parseInt(args[1]));
+        if (args.length > 2) {
+            int samples = Integer.parseInt(args[2]);
+            builder.setSamples(samples, Math.max(1, samples / 250));
+        }
+        if (args.length > 3) builder.setSeed(Long.parseLong(args[3]));
+        if (args.length > 4) builder.setNumAtoms(Integer.parseInt(args[4]));
+
+        long start = System.nanoTime();
+        int nodes = builder.write(Path.of(args[0]));
+        System.out.printf("Wrote %d openings to %s in %.1fs%n", nodes, args[0], (System.nanoTime() - start) / 1e9);
+    }
+}
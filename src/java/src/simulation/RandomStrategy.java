@@ -0,0 +1,49 @@
+package simulation;
+
+import computations.RayTracer;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Baseline: shoots rays from random unused exits and guesses random boxes, it never learns anything from the rays
+ */
+public class RandomStrategy implements Strategy {
+    private final int rays;
+
+    /**
+     * @param rays Number of rays to shoot before guessing
+     */
+    public RandomStrategy(int rays) {
+        this.rays = rays;
+    }
+
+    @Override
+    public String getName() {
+        return "random-" + rays;
+    }
+
+    @Override
+    public Player newPlayer(int numAtoms, RandomGenerator random) {
+        return new Player() {
+            @Override
+            public int nextRay(Observations observations) {
+                if (observations.size() >= rays) return 0;
+                int unused = 0;
+                for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) if (!observations.isUsed(entry)) unused++;
+                if (unused == 0) return 0;
+                int pick = random.nextInt(unused);
+                for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                    if (!observations.isUsed(entry) && pick-- == 0) return entry;
+                }
+                return 0;
+            }
+
+            @Override
+            public long guess(Observations observations) {
+                long guesses = 0;
+                while (Long.bitCount(guesses) < numAtoms) guesses |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+                return guesses;
+            }
+        };
+    }
+}
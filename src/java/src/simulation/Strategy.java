@@ -0,0 +1,32 @@
+package simulation;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A way of playing Blackbox, used by the tournament harness.
+ * A strategy is shared by every thread, and hands out a separate Player for each game it plays.
+ */
+public interface Strategy {
+    String getName();
+
+    /**
+     * @param numAtoms Atoms hidden on the board
+     * @param random Generator for this game only, so every game can be reproduced from its seed
+     */
+    Player newPlayer(int numAtoms, RandomGenerator random);
+
+    /**
+     * Plays a single game
+     */
+    interface Player {
+        /**
+         * @return The next exit number to shoot a ray from (never one already used), or 0 to stop and start guessing
+         */
+        int nextRay(Observations observations);
+
+        /**
+         * @return The boxes guessed to hold atoms as a RayTracer layout mask with one bit per guess
+         */
+        long guess(Observations observations);
+    }
+}
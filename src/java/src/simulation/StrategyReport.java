@@ -0,0 +1,103 @@
+package simulation;
+
+import diagnostics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals for one strategy over a tournament, safe to record into from many threads at once
+ */
+public class StrategyReport {
+    public static final int MAX_SCORE = 255; // higher scores are counted as this
+
+    private final String strategyName;
+    private final LongAdder games = new LongAdder();
+    private final LongAdder rays = new LongAdder();
+    private final LongAdder markers = new LongAdder();
+    private final LongAdder incorrectGuesses = new LongAdder();
+    private final LongAdder totalScore = new LongAdder();
+    private final LongAdder[] scoreCounts = new LongAdder[MAX_SCORE + 1];
+    private final LatencyHistogram gameTime;
+    private volatile long wallNanos;
+
+    public StrategyReport(String strategyName) {
+        this.strategyName = strategyName;
+        this.gameTime = new LatencyHistogram(strategyName + " game");
+        for (int i = 0; i <= MAX_SCORE; i++) scoreCounts[i] = new LongAdder();
+    }
+
+    void record(int raysFired, int markersUsed, int incorrect, int score, long nanos) {
+        games.increment();
+        rays.add(raysFired);
+        markers.add(markersUsed);
+        incorrectGuesses.add(incorrect);
+        totalScore.add(score);
+        scoreCounts[Math.min(score, MAX_SCORE)].increment();
+        gameTime.record(nanos);
+    }
+
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    public String getStrategyName() {
+        return strategyName;
+    }
+
+    public long getGames() {
+        return games.sum();
+    }
+
+    public double getMeanScore() {
+        return (double) totalScore.sum() / Math.max(1, games.sum());
+    }
+
+    public double getMeanRays() {
+        return (double) rays.sum() / Math.max(1, games.sum());
+    }
+
+    public double getMeanIncorrectGuesses() {
+        return (double) incorrectGuesses.sum() / Math.max(1, games.sum());
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     */
+    public int getScorePercentile(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * games.sum()));
+        long seen = 0;
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            seen += scoreCounts[score].sum();
+            if (seen >= rank) return score;
+        }
+        return MAX_SCORE;
+    }
+
+    /**
+     * @return How many games ended on each score (index), the last entry also holds anything higher
+     */
+    public long[] getScoreCounts() {
+        long[] counts = new long[MAX_SCORE + 1];
+        for (int i = 0; i <= MAX_SCORE; i++) counts[i] = scoreCounts[i].sum();
+        return counts;
+    }
+
+    /**
+     * @return Time taken by each game, strategy and ray tracing included
+     */
+    public LatencyHistogram getGameTime() {
+        return gameTime;
+    }
+
+    public double getGamesPerSecond() {
+        return wallNanos == 0 ? 0 : games.sum() / (wallNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s games=%d score mean=%.2f p10=%d p50=%d p90=%d rays=%.1f wrong=%.2f | %.0f games/s, game p50=%.1fus p99=%.1fus",
+                strategyName, getGames(), getMeanScore(), getScorePercentile(10), getScorePercentile(50), getScorePercentile(90),
+                getMeanRays(), getMeanIncorrectGuesses(), getGamesPerSecond(),
+                gameTime.getPercentileNanos(50) / 1e3, gameTime.getPercentileNanos(99) / 1e3);
+    }
+}
@@ -0,0 +1,56 @@
+package simulation;
+
+import computations.RayTracer;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Shoots a fixed sweep of exits (every stride-th one, skipping any already used) and then guesses the layout the sampler finds most likely
+ */
+public class SweepStrategy implements Strategy {
+    private final int stride;
+    private final int chains;
+    private final int steps;
+
+    /**
+     * @param stride Gap between exit numbers in the sweep
+     * @param chains Sampler chains used for the guess
+     * @param steps Sampler steps per chain used for the guess
+     */
+    public SweepStrategy(int stride, int chains, int steps) {
+        this.stride = stride;
+        this.chains = chains;
+        this.steps = steps;
+    }
+
+    @Override
+    public String getName() {
+        return "sweep-" + stride;
+    }
+
+    @Override
+    public Player newPlayer(int numAtoms, RandomGenerator random) {
+        return new Player() {
+            private int next = 1;
+
+            @Override
+            public int nextRay(Observations observations) {
+                while (next <= RayTracer.NUM_EXITS && observations.isUsed(next)) next += stride;
+                if (next > RayTracer.NUM_EXITS) return 0;
+                int entry = next;
+                next += stride;
+                return entry;
+            }
+
+            @Override
+            public long guess(Observations observations) {
+                LayoutSampler sampler = new LayoutSampler(RayTracer.getInstance(), observations, numAtoms, chains, random);
+                sampler.update();
+                sampler.run(steps / 2);
+                sampler.resample();
+                sampler.run(steps - steps / 2);
+                return sampler.mostLikelyLayout();
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package simulation;
+
+import computations.GameSeed;
+import computations.PuzzlePack;
+import computations.RayTracer;
+import computations.Replayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+/**
+ * Plays strategies against generated layouts without any windows, scoring each game like Game.getScore (markers + 5 x incorrect guesses).
+ * Games run on a work-stealing pool, every strategy plays the same layouts, and each game is reproducible from the tournament seed.
+ */
+public class Tournament {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+    private static final long STRATEGY_SALT = 0x5851F42D4C957F2DL; // keeps a strategy's choices independent of the layout
+
+    private final RayTracer tracer = RayTracer.getInstance();
+    private final long seed;
+    private int numAtoms = 6;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private PuzzlePack puzzlePack;
+
+    public Tournament(long seed) {
+        this.seed = seed;
+    }
+
+    public Tournament setNumAtoms(int numAtoms) {
+        this.numAtoms = numAtoms;
+        return this;
+    }
+
+    public Tournament setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Plays puzzles from a pack (in order, wrapping round) instead of random layouts
+     */
+    public Tournament setPuzzlePack(PuzzlePack puzzlePack) {
+        this.puzzlePack = puzzlePack;
+        this.numAtoms = puzzlePack.getNumAtoms();
+        return this;
+    }
+
+    /**
+     * Plays every strategy in turn
+     * @param games Games per strategy
+     */
+    public List<StrategyReport> run(List<Strategy> strategies, long games) {
+        List<StrategyReport> reports = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Strategy strategy : strategies) {
+                StrategyReport report = new StrategyReport(strategy.getName());
+                long start = System.nanoTime();
+                pool.submit(() -> LongStream.range(0, games).parallel().forEach(game -> play(strategy, game, report))).join();
+                report.setWallNanos(System.nanoTime() - start);
+                reports.add(report);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return reports;
+    }
+
+    /**
+     * @return The layout played in game number i
+     */
+    public long layout(long game) {
+        if (puzzlePack != null) return puzzlePack.get((int) (game % puzzlePack.size())).getAtoms();
+        GameSeed gameSeed = new GameSeed(gameSeed(game));
+        int[] outcomes = new int[RayTracer.NUM_EXITS];
+        while (true) {
+            long atoms = gameSeed.randomLayout(numAtoms);
+            // only the outcomes are needed to spot a loop: RayPathCache would serve reverse rays from stored paths,
+            // but storing them costs more than tracing every ray again, and this doesn't allocate
+            tracer.traceAll(atoms, outcomes);
+            boolean loops = false;
+            for (int outcome : outcomes) loops |= outcome == RayTracer.LOOPED;
+            if (!loops) return atoms; // the real game would hang on a ray that never comes out
+        }
+    }
+
+    /**
+     * Plays one game and records it in the report
+     * @return The game's score
+     */
+    public int play(Strategy strategy, long game, StrategyReport report) {
+        long start = System.nanoTime();
+        long atoms = layout(game);
+        Strategy.Player player = strategy.newPlayer(numAtoms, new SplittableRandom(gameSeed(game) ^ STRATEGY_SALT));
+        Observations observations = new Observations();
+        int markers = 0;
+        for (int entry = player.nextRay(observations); entry != 0; entry = player.nextRay(observations)) {
+            if (entry < 1 || entry > RayTracer.NUM_EXITS || observations.isUsed(entry)) {
+                throw new IllegalStateException(strategy.getName() + " shot from exit " + entry + ", which isn't allowed");
+            }
+            int exit = tracer.trace(atoms, entry);
+            observations.add(entry, exit);
+            markers += (exit == RayTracer.ABSORBED || exit == entry) ? 1 : 2; // same markers as Game.shootRay places
+        }
+        long guesses = player.guess(observations);
+        if (Long.bitCount(guesses) != numAtoms) throw new IllegalStateException(strategy.getName() + " made " + Long.bitCount(guesses) + " guesses");
+        int incorrect = numAtoms - Long.bitCount(guesses & atoms);
+        int score = Replayer.STANDARD_SCORING.score(markers, incorrect, observations.size());
+        report.record(observations.size(), markers, incorrect, score, System.nanoTime() - start);
+        return score;
+    }
+
+    private long gameSeed(long game) {
+        return seed + game * SEED_STEP;
+    }
+
+    /**
+     * Runs the standard strategies: Tournament games [seed] [threads] [pack.bbp]
+     * The info-greedy player takes its first rays from the opening book given with -Dblackbox.openings
+     */
+    public static void main(String[] args) throws IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        Tournament tournament = new Tournament(args.length > 1 ? Long.parseLong(args[1]) : 1);
+        if (args.length > 2) tournament.setParallelism(Integer.parseInt(args[2]));
+        if (args.length > 3) tournament.setPuzzlePack(PuzzlePack.open(Path.of(args[3])));
+
+        List<Strategy> strategies = List.of(
+                new RandomStrategy(10),
+                new SweepStrategy(3, 16, 400),
+                new InfoGreedyStrategy(16, 120, 30, 0.5).setOpeningBook(OpeningBook.requested()));
+        for (StrategyReport report : tournament.run(strategies, games)) System.out.println(report);
+    }
+}
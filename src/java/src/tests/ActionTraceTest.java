@@ -0,0 +1,79 @@
+package tests;
+
+import diagnostics.ActionTrace;
+import diagnostics.LatencyHistogram;
+import diagnostics.Metrics;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActionTraceTest {
+    @Test
+    public void playerWaitIsLeftOutOfTheResponse() throws Exception {
+        String action = "testWait"; // its own histograms, whatever else has run
+        Metrics.inputToRepaintTime().reset(); // shared by every action
+        ActionTrace.begin(action, System.currentTimeMillis());
+        ActionTrace.stage("validated");
+        ActionTrace.playerWaitStarted();
+        Thread.sleep(60); // the player choosing a colour
+        ActionTrace.playerWaitEnded();
+        ActionTrace.stage("shot");
+        ActionTrace.handled();
+        assertEquals(0, ActionTrace.histogram(action, "response").getCount(), "Nothing is finished until a paint");
+        ActionTrace.painted();
+
+        for (String stage : new String[]{"queued", "validated", "shot", "repaintRequested", "painted", "response"}) {
+            assertEquals(1, ActionTrace.histogram(action, stage).getCount(), stage);
+        }
+        assertTrue(ActionTrace.histogram(action, "shot").getMaxNanos() < 30_000_000L, "The wait was counted in the stage");
+        assertTrue(ActionTrace.histogram(action, "response").getMaxNanos() < 30_000_000L, "The wait was counted in the response");
+        assertTrue(Metrics.inputToRepaintTime().getMaxNanos() < 30_000_000L, "The wait was counted in input to repaint");
+    }
+
+    @Test
+    public void onePaintFinishesEveryActionBeforeIt() {
+        String action = "testCoalesced";
+        for (int i = 0; i < 3; i++) {
+            ActionTrace.begin(action, System.currentTimeMillis());
+            ActionTrace.handled();
+        }
+        ActionTrace.painted();
+        ActionTrace.painted(); // nothing left for the second
+        LatencyHistogram response = ActionTrace.histogram(action, "response");
+        assertEquals(3, response.getCount());
+    }
+
+    @Test
+    public void actionsAreRecordedAsSpansWithTheirStages() throws Exception {
+        Path file = Files.createTempFile("actions", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("blackbox.PlayerAction").withThreshold(java.time.Duration.ZERO);
+            recording.enable("blackbox.ActionStage").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            ActionTrace.begin("testJfr", System.currentTimeMillis());
+            ActionTrace.stage("validated");
+            ActionTrace.handled();
+            ActionTrace.painted();
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream().filter(event -> "testJfr".equals(event.getString("action"))).toList();
+            List<RecordedEvent> actions = events.stream().filter(event -> event.getEventType().getName().equals("blackbox.PlayerAction")).toList();
+            List<RecordedEvent> stages = events.stream().filter(event -> event.getEventType().getName().equals("blackbox.ActionStage")).toList();
+            assertEquals(1, actions.size());
+            assertEquals(List.of("queued", "validated", "repaintRequested", "painted"), stages.stream().map(event -> event.getString("stage")).toList());
+            long id = actions.getFirst().getLong("actionId");
+            for (RecordedEvent stage : stages) assertEquals(id, stage.getLong("actionId"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package tests;
 
+import computations.Autosave;
 import entities.ExitPoint;
 import entities.HexagonalBox;
 import main.Game;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 
 import static main.Game.loadHexagonalBoxes;
@@ -12,6 +17,20 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 public class ArrayListTest {
+    @TempDir
+    Path autosaves;
+
+    @BeforeEach
+    public void saveGamesAside() { // a game autosaves as soon as it's built
+        System.setProperty("blackbox.autosave", autosaves.toString());
+    }
+
+    @AfterEach
+    public void stopSavingGamesAside() throws Exception {
+        Autosave.awaitWrites(); // before the directory goes
+        System.clearProperty("blackbox.autosave");
+    }
+
     @Test
     public void LoadExitPointsTest() {
         Game game = new Game();
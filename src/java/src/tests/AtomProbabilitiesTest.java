@@ -0,0 +1,76 @@
+package tests;
+
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+import simulation.AtomProbabilities;
+import simulation.Observations;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AtomProbabilitiesTest {
+    private static final RayTracer tracer = RayTracer.getInstance();
+    private static final long ATOMS = 1L << 12 | 1L << 30 | 1L << 47; // boxes 13, 31 and 48
+    private static final int[] ENTRIES = {1, 7, 15, 22, 30, 41};
+
+    // every 3 atom layout, kept if it matches the rays
+    private static double[] bruteForce(Observations observations) {
+        double[] counts = new double[RayTracer.NUM_CELLS];
+        int layouts = 0;
+        for (int a = 0; a < RayTracer.NUM_CELLS; a++) {
+            for (int b = a + 1; b < RayTracer.NUM_CELLS; b++) {
+                for (int c = b + 1; c < RayTracer.NUM_CELLS; c++) {
+                    if (!observations.isConsistent(tracer, 1L << a | 1L << b | 1L << c)) continue;
+                    layouts++;
+                    counts[a]++;
+                    counts[b]++;
+                    counts[c]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < counts.length; cell++) counts[cell] /= layouts;
+        return counts;
+    }
+
+    @Test
+    public void enumerationMatchesCheckingEveryLayout() {
+        Observations observations = new Observations();
+        for (int entry : ENTRIES) {
+            observations.add(entry, tracer.trace(ATOMS, entry));
+            assertArrayEquals(bruteForce(observations), AtomProbabilities.enumerate(tracer, observations, 3, () -> false), 1e-12);
+        }
+    }
+
+    @Test
+    public void backgroundEstimateEndsExact() throws InterruptedException {
+        Observations observations = new Observations();
+        for (int entry : ENTRIES) observations.add(entry, tracer.trace(ATOMS, entry));
+        double[] expected = bruteForce(observations);
+
+        CountDownLatch exact = new CountDownLatch(1);
+        AtomicReference<double[]> result = new AtomicReference<>();
+        AtomicBoolean everySumRight = new AtomicBoolean(true); // the listener runs in the background, where a failed assertion would go unnoticed
+        AtomProbabilities probabilities = new AtomProbabilities(tracer, 3, 2, 38, (estimate, isExact) -> {
+            if (Math.abs(Arrays.stream(estimate).sum() - 3) > 1e-9) everySumRight.set(false);
+            if (isExact) {
+                result.set(estimate);
+                exact.countDown();
+            }
+        });
+        try {
+            for (int entry : ENTRIES) probabilities.rayFired(entry, tracer.trace(ATOMS, entry));
+            assertTrue(exact.await(30, TimeUnit.SECONDS));
+            assertArrayEquals(expected, result.get(), 1e-12);
+            assertTrue(probabilities.isExact());
+            assertTrue(everySumRight.get(), "Every estimate should add up to the number of atoms");
+        } finally {
+            probabilities.shutdown();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package tests;
+
+import computations.Autosave;
+import computations.GameSeed;
+import computations.RayTracer;
+import computations.ReplayWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutosaveTest {
+    private static final long SEED = 0x5EED;
+
+    private final RayTracer tracer = RayTracer.getInstance();
+    private final long atoms = new GameSeed(SEED).randomLayout(6);
+    private long usedExits = 0;
+
+    // fires the next ray from an exit nothing has gone in or out of yet, as the game would
+    private void fireRay(ReplayWriter replay, Autosave autosave) {
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+            if ((usedExits >>> entry & 1L) != 0) continue;
+            int exit = tracer.trace(atoms, entry);
+            if (exit != RayTracer.ABSORBED && (usedExits >>> exit & 1L) != 0) continue;
+            usedExits |= 1L << entry;
+            if (exit != RayTracer.ABSORBED) usedExits |= 1L << exit;
+            replay.rayFired(entry, exit, 0x00FF00);
+            autosave.actionRecorded(replay);
+            return;
+        }
+        fail("No exits left");
+    }
+
+    @Test
+    public void actionsInTheLogAreRecoveredUpToATornRecord(@TempDir Path dir) throws Exception {
+        ReplayWriter replay = new ReplayWriter(SEED, atoms, 6, ReplayWriter.SOURCE_SEED);
+        Autosave autosave = new Autosave(dir, replay, true);
+        for (int i = 0; i < 3; i++) fireRay(replay, autosave);
+        Autosave.awaitWrites();
+
+        Autosave.Saved saved = Autosave.load(dir);
+        assertNotNull(saved);
+        assertTrue(saved.isPractice());
+        assertEquals(3, saved.getResult().getRaysFired());
+        assertArrayEquals(replay.toByteArray(), saved.getReplay());
+        for (int i = 0; i < 3; i++) { // rays that came back out carry the colour their markers were given
+            int colour = saved.getResult().getRayColour(i);
+            if (colour != ReplayWriter.NO_COLOUR) assertEquals(0x00FF00, colour);
+        }
+
+        try (FileChannel log = FileChannel.open(dir.resolve(Autosave.LOG_FILE), StandardOpenOption.WRITE)) {
+            log.truncate(log.size() - 2); // the crash came part way through writing the last ray
+        }
+        assertEquals(2, Autosave.load(dir).getResult().getRaysFired());
+    }
+
+    @Test
+    public void snapshotsEmptyTheLogAndAnOlderLogIsIgnored(@TempDir Path dir) throws Exception {
+        ReplayWriter replay = new ReplayWriter(SEED, atoms, 6, ReplayWriter.SOURCE_SEED);
+        Autosave autosave = new Autosave(dir, replay, false);
+        for (int i = 0; i < 2; i++) fireRay(replay, autosave);
+        Autosave.awaitWrites();
+        byte[] olderLog = Files.readAllBytes(dir.resolve(Autosave.LOG_FILE));
+
+        for (int i = 2; i < Autosave.SNAPSHOT_EVERY; i++) fireRay(replay, autosave);
+        Autosave.awaitWrites();
+        assertEquals(12, Files.size(dir.resolve(Autosave.LOG_FILE))); // only the header is left
+        assertEquals(Autosave.SNAPSHOT_EVERY, Autosave.load(dir).getResult().getRaysFired());
+
+        Files.write(dir.resolve(Autosave.LOG_FILE), olderLog); // left over from before the snapshot, its rays are already in it
+        assertArrayEquals(replay.toByteArray(), Autosave.load(dir).getReplay());
+    }
+
+    @Test
+    public void undoIsSavedAndFinishedGamesAreRemoved(@TempDir Path dir) throws Exception {
+        ReplayWriter replay = new ReplayWriter(SEED, atoms, 6, ReplayWriter.SOURCE_SEED);
+        Autosave autosave = new Autosave(dir, replay, true);
+        fireRay(replay, autosave);
+        int afterFirstRay = replay.size();
+        fireRay(replay, autosave);
+        replay.setSize(afterFirstRay);
+        autosave.rewound(replay);
+        Autosave.awaitWrites();
+        assertEquals(1, Autosave.load(dir).getResult().getRaysFired());
+
+        replay.gameEnded(1, "nobody");
+        autosave.finished();
+        Autosave.awaitWrites();
+        assertNull(Autosave.load(dir));
+        assertFalse(Files.exists(dir.resolve(Autosave.SNAPSHOT_FILE)));
+    }
+
+    @Test
+    public void aNewGameStartedBeforeTheOfferIsAnsweredDoesNotReplaceTheSave(@TempDir Path dir) throws Exception {
+        ReplayWriter unfinished = new ReplayWriter(SEED, atoms, 6, ReplayWriter.SOURCE_SEED);
+        Autosave earlier = new Autosave(dir, unfinished, false);
+        for (int i = 0; i < 3; i++) fireRay(unfinished, earlier);
+        Autosave.awaitWrites();
+
+        Autosave.hold(); // the start screen is up and about to ask
+        usedExits = 0;
+        ReplayWriter started = new ReplayWriter(SEED, atoms, 6, ReplayWriter.SOURCE_SEED);
+        Autosave newGame = new Autosave(dir, started, false);
+        fireRay(started, newGame);
+        Autosave.awaitWrites();
+        assertArrayEquals(unfinished.toByteArray(), Autosave.load(dir).getReplay(), "The saved game was replaced before the player answered");
+
+        Autosave.discard(dir); // turned down
+        Autosave.release();
+        Autosave.awaitWrites();
+        assertArrayEquals(started.toByteArray(), Autosave.load(dir).getReplay());
+        fireRay(started, newGame); // saves as usual from here
+        Autosave.awaitWrites();
+        assertEquals(2, Autosave.load(dir).getResult().getRaysFired());
+    }
+}
@@ -0,0 +1,77 @@
+package tests;
+
+import computations.AtomGrid;
+import computations.ContinuousTracer;
+import computations.RayTracer;
+import entities.Ray;
+import main.Game;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContinuousTracerTest {
+    private static final ContinuousTracer tracer = new ContinuousTracer(RayTracer.getInstance(), Game.loadHexagonalBoxes(), 0.9, ContinuousTracer.mirror(0.3));
+
+    @Test
+    public void emptyBoardMatchesHexRules() {
+        AtomGrid empty = tracer.gridFor(0);
+        for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+            List<Ray> segments = new ArrayList<>();
+            assertEquals(RayTracer.getInstance().trace(0, entry), tracer.shoot(empty, entry, segments), "Entry " + entry);
+            assertEquals(1, segments.size());
+        }
+    }
+
+    @Test
+    public void headOnAtomAbsorbsAndGlancingAtomDeflects() {
+        RayTracer hex = RayTracer.getInstance();
+        int cell = hex.entryCell(1);
+        List<Ray> segments = new ArrayList<>();
+        assertEquals(RayTracer.ABSORBED, tracer.shoot(tracer.gridFor(1L << cell), 1, segments));
+        assertEquals(2, segments.size()); // up to the circle, then into the atom
+
+        int beside = hex.neighbour(cell, (hex.entryDirection(1) + 1) % 6); // next to the ray's first box, so the ray only grazes it
+        int exit = tracer.shoot(tracer.gridFor(1L << beside), 1, null);
+        assertTrue(exit > 0 && exit != hex.trace(0, 1), "Expected a deflection but got " + exit);
+    }
+
+    @Test
+    public void gridFindsTheSameHitsAsCheckingEveryAtom() {
+        SplittableRandom random = new SplittableRandom(36);
+        double radius = 12;
+        double[] xs = new double[500];
+        double[] ys = new double[500];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble(2000);
+            ys[i] = random.nextDouble(2000);
+        }
+        AtomGrid grid = new AtomGrid(xs, ys, radius);
+        double[] hit = new double[1];
+        for (int ray = 0; ray < 2000; ray++) {
+            double x = random.nextDouble(-200, 2200), y = random.nextDouble(-200, 2200);
+            double angle = random.nextDouble(2 * Math.PI);
+            double dx = Math.cos(angle), dy = Math.sin(angle);
+
+            int expected = -1;
+            double expectedDistance = Double.MAX_VALUE;
+            for (int atom = 0; atom < xs.length; atom++) {
+                double ox = x - xs[atom], oy = y - ys[atom];
+                double b = ox * dx + oy * dy, c = ox * ox + oy * oy - radius * radius;
+                if (c <= 0 || b >= 0 || b * b < c) continue;
+                double distance = -b - Math.sqrt(b * b - c);
+                if (distance < expectedDistance) {
+                    expectedDistance = distance;
+                    expected = atom;
+                }
+            }
+            int found = grid.firstHit(x, y, dx, dy, Double.MAX_VALUE, hit);
+            assertEquals(expected, found, "Ray " + ray);
+            if (found >= 0) assertEquals(expectedDistance, hit[0], 1e-9);
+        }
+    }
+}
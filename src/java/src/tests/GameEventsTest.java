@@ -0,0 +1,57 @@
+package tests;
+
+import main.CoalescedUpdate;
+import main.GameEvents;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GameEventsTest {
+    @Test
+    public void listenersOnlyHearTheirOwnType() {
+        GameEvents events = new GameEvents();
+        List<Object> rays = new ArrayList<>();
+        List<Object> everything = new ArrayList<>();
+        events.subscribe(GameEvents.RayFired.class, rays::add);
+        events.subscribe(GameEvents.RayFired.class, everything::add);
+        events.subscribe(GameEvents.MarkerPlaced.class, everything::add);
+        events.subscribe(GameEvents.GuessMade.class, everything::add);
+
+        events.publish(new GameEvents.RayFired(3, 40, "normal/deflected", 2));
+        events.publish(new GameEvents.MarkerPlaced(3, Color.CYAN));
+        events.publish(new GameEvents.MarkerPlaced(40, Color.CYAN));
+        events.publish(new GameEvents.GameEnded("nobody", 2)); // nothing subscribed
+
+        assertEquals(List.of(new GameEvents.RayFired(3, 40, "normal/deflected", 2)), rays);
+        assertEquals(3, everything.size());
+        assertEquals(new GameEvents.MarkerPlaced(40, Color.CYAN), everything.getLast());
+    }
+
+    @Test
+    public void aBurstOfRequestsRunsTheUpdateOnce() throws Exception {
+        GameEvents events = new GameEvents();
+        CoalescedUpdate update = new CoalescedUpdate(() -> {});
+        events.subscribe(GameEvents.RayFired.class, rayFired -> update.request());
+        events.subscribe(GameEvents.MarkerPlaced.class, markerPlaced -> update.request());
+
+        EventQueue.invokeAndWait(() -> { // a scripted game firing every ray in one go
+            for (int entry = 1; entry <= 54; entry++) {
+                events.publish(new GameEvents.RayFired(entry, entry, "reflected", entry));
+                events.publish(new GameEvents.MarkerPlaced(entry, Color.WHITE));
+            }
+        });
+        EventQueue.invokeAndWait(() -> {}); // after the update
+        int[] runs = new int[1];
+        EventQueue.invokeAndWait(() -> runs[0] = update.getRuns());
+        assertEquals(1, runs[0]);
+
+        update.request(); // from another thread, once the last one has run
+        EventQueue.invokeAndWait(() -> {});
+        EventQueue.invokeAndWait(() -> runs[0] = update.getRuns());
+        assertEquals(2, runs[0]);
+    }
+}
@@ -0,0 +1,157 @@
+package tests;
+
+import computations.Autosave;
+import computations.RayTracer;
+import entities.MarkerBatches;
+import entities.RayPaths;
+import entities.SegmentGrid;
+import main.Game;
+import main.GameEvents;
+import main.GameHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import simulation.Observations;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameHistoryTest {
+    private static final Color[] COLOURS = {Color.GRAY, Color.WHITE, Color.CYAN, Color.ORANGE};
+
+    // the parts of a game that undo winds back, stepped through the way Game.restoreHistory sets them, without the game's events and autosaves
+    private static class Session {
+        final RayPaths paths = new RayPaths();
+        final SegmentGrid grid = new SegmentGrid(1280, 720, 32, 8);
+        final MarkerBatches markers = new MarkerBatches();
+        final Observations rays = new Observations();
+        final GameHistory history = new GameHistory();
+
+        Session() {
+            record();
+        }
+
+        void fire(int entry, SplittableRandom random) {
+            paths.beginPath();
+            int x = random.nextInt(1280), y = random.nextInt(720);
+            for (int i = 1 + random.nextInt(6); i > 0; i--) {
+                int nx = random.nextInt(1280), ny = random.nextInt(720);
+                paths.addSegment(x, y, nx, ny);
+                x = nx;
+                y = ny;
+            }
+            grid.addPath(paths, paths.size() - 1);
+            int exit = random.nextInt(3) == 0 ? RayTracer.ABSORBED : entry;
+            rays.add(entry, exit);
+            for (int i = 1 + random.nextInt(2); i > 0; i--) markers.add(x, y, COLOURS[random.nextInt(COLOURS.length)]);
+            record();
+        }
+
+        void record() {
+            history.record(paths.size(), markers.size(), 0, markers.size(), 0, 0);
+        }
+
+        void restore() {
+            paths.setSize(history.get(GameHistory.RAYS));
+            grid.setSize(paths, history.get(GameHistory.RAYS));
+            rays.setSize(history.get(GameHistory.RAYS));
+            markers.setSize(history.get(GameHistory.MARKERS));
+        }
+    }
+
+    // everything a player can see of a game, to compare before and after going back
+    private static String describe(Game game) {
+        StringBuilder state = new StringBuilder();
+        state.append(game.getScore()).append(' ').append(game.getNumMarkersUsed()).append(' ').append(game.getNumIncorrectGuesses())
+                .append(' ').append(game.getNumGuesses()).append(' ').append(game.getLastRayStatus()).append(" exits");
+        for (int exit = 1; exit <= RayTracer.NUM_EXITS; exit++) if (game.isExitUsed(exit)) state.append(' ').append(exit);
+        state.append(" guessed");
+        for (int box = 1; box <= 61; box++) if (game.hasGuessed(box)) state.append(' ').append(box);
+        return state.toString();
+    }
+
+    @Test
+    public void undoingAndRedoingPutsTheGameBackAsItWas(@TempDir Path dir) throws Exception {
+        System.setProperty("blackbox.autosave", dir.toString());
+        try {
+            Game game = new Game(true);
+            game.setMarkerColours(() -> null);
+            List<GameEvents.StateRestored> restored = new ArrayList<>();
+            game.getEvents().subscribe(GameEvents.StateRestored.class, restored::add);
+
+            List<String> states = new ArrayList<>();
+            List<Integer> rays = new ArrayList<>();
+            states.add(describe(game));
+            rays.add(0);
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS && rays.size() <= 12; entry++) {
+                if (game.isExitUsed(entry)) continue;
+                game.shootRay(entry);
+                states.add(describe(game));
+                rays.add(rays.getLast() + 1);
+            }
+            for (int box = 1; box <= 3; box++) {
+                game.makeGuess(box);
+                states.add(describe(game));
+                rays.add(rays.getLast());
+            }
+
+            for (int step = states.size() - 2; step >= 0; step--) {
+                assertTrue(game.undo());
+                assertEquals(states.get(step), describe(game), "After undoing back to step " + step);
+                assertEquals(rays.get(step), restored.getLast().rays());
+                assertEquals(game.getScore(), restored.getLast().score());
+            }
+            assertFalse(game.undo());
+            Autosave.awaitWrites();
+            assertEquals(0, Autosave.load(dir).getResult().getRaysFired());
+
+            for (int step = 1; step < states.size(); step++) {
+                assertTrue(game.redo());
+                assertEquals(states.get(step), describe(game), "After redoing to step " + step);
+            }
+            Autosave.awaitWrites();
+            assertEquals(rays.getLast(), Autosave.load(dir).getResult().getRaysFired());
+            assertEquals(3, Autosave.load(dir).getResult().getGuesses());
+
+            // going back and then doing something new drops what could have been redone
+            for (int i = 0; i < 5; i++) game.undo();
+            game.makeGuess(61);
+            assertFalse(game.canRedo());
+            assertTrue(game.hasGuessed(61));
+            assertEquals(1, game.getNumGuesses());
+        } finally {
+            Autosave.awaitWrites(); // before the directory goes
+            System.clearProperty("blackbox.autosave");
+        }
+    }
+
+    @Test
+    public void steppingBackAndForthDoesNotAllocate() {
+        Session session = new Session();
+        for (int entry = 1; entry <= 54; entry++) session.fire(entry, new SplittableRandom(entry));
+        for (int i = 0; i < 1000; i++) { // warm up
+            session.history.undo();
+            session.restore();
+            session.history.redo();
+            session.restore();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            session.history.undo();
+            session.restore();
+            session.history.redo();
+            session.restore();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 100_000, allocated + " bytes allocated for 20000 steps");
+        assertTrue(session.history.canUndo());
+    }
+}
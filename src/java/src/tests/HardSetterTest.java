@@ -0,0 +1,46 @@
+package tests;
+
+import computations.GameSeed;
+import computations.HardSetter;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HardSetterTest {
+    @Test
+    public void picksHarderLayoutsThanChanceWithinTheBudget() {
+        HardSetter setter = new HardSetter(6).setBudgetMillis(500).setParallelism(2);
+
+        double randomScore = 0;
+        int usable = 0;
+        for (long seed = 0; seed < 200; seed++) {
+            double score = setter.score(new GameSeed(seed).randomLayout(6));
+            if (score < 0) continue;
+            randomScore += score;
+            usable++;
+        }
+        randomScore /= usable;
+
+        long start = System.nanoTime();
+        long layout = setter.pick(new SplittableRandom(39));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 1500, "Took " + elapsedMillis + " ms");
+        assertEquals(6, Long.bitCount(layout));
+        assertTrue(setter.score(layout) >= 0, "Layouts that loop or hide an atom shouldn't be picked");
+        assertTrue(setter.score(layout) > randomScore, setter.score(layout) + " should beat the average of " + randomScore);
+        assertTrue(setter.getEvaluations() > 0);
+    }
+
+    @Test
+    public void aLayoutThatCanBePlayedIsPickedEvenWithNoTime() {
+        HardSetter setter = new HardSetter(6).setBudgetMillis(0).setParallelism(1);
+        for (long seed = 0; seed < 1000; seed++) { // from seed 463 on, some of the first draws hide an atom
+            long layout = setter.pick(new SplittableRandom(seed));
+            assertEquals(6, Long.bitCount(layout));
+            assertTrue(setter.score(layout) >= 0, "Seed " + seed + " picked a layout that loops or hides an atom");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package tests;
+
+import computations.IncrementalTracer;
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalTracerTest {
+    @Test
+    public void editsMatchAFullRetrace() {
+        RayTracer rayTracer = RayTracer.getInstance();
+        IncrementalTracer tracer = new IncrementalTracer(rayTracer);
+        SplittableRandom random = new SplittableRandom(17);
+        int[] expected = new int[RayTracer.NUM_EXITS];
+        long retraced = 0;
+        for (int edit = 0; edit < 5000; edit++) {
+            int[] before = new int[RayTracer.NUM_EXITS];
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) before[entry - 1] = tracer.getOutcome(entry);
+
+            long changed;
+            if (Long.bitCount(tracer.getAtoms()) >= 6) { // drag an atom somewhere else
+                int from = Long.numberOfTrailingZeros(tracer.getAtoms());
+                int to = random.nextInt(RayTracer.NUM_CELLS);
+                if (tracer.hasAtom(to)) continue;
+                changed = tracer.move(from, to);
+            } else {
+                changed = tracer.toggle(random.nextInt(RayTracer.NUM_CELLS));
+            }
+            retraced += tracer.getLastRetraced();
+
+            rayTracer.traceAll(tracer.getAtoms(), expected);
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                assertEquals(expected[entry - 1], tracer.getOutcome(entry), "Entry " + entry + " after edit " + edit);
+                boolean reported = (changed >>> (entry - 1) & 1L) != 0;
+                assertEquals(before[entry - 1] != expected[entry - 1], reported, "Change of entry " + entry + " after edit " + edit);
+            }
+        }
+        assertTrue(retraced < 5000L * RayTracer.NUM_EXITS / 2, "Edits should only retrace the rays near them, retraced " + retraced);
+    }
+}
@@ -0,0 +1,153 @@
+package tests;
+
+import computations.GameSeed;
+import computations.RayTracer;
+import network.MatchClient;
+import network.MatchProtocol;
+import network.MatchServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchServerTest {
+    private static final String LOOPBACK = InetAddress.getLoopbackAddress().getHostAddress();
+
+    private final RayTracer tracer = RayTracer.getInstance();
+    private MatchServer server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new MatchServer(0, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    // the guesser's side of a whole match: a few rays, then a guess at every atom plus one wrong box
+    private int playMatch(long atoms, MatchClient guesser) throws IOException {
+        int markers = 0;
+        long usedExits = 0;
+        for (int entry = 1; entry <= 10; entry++) {
+            if ((usedExits >>> entry & 1L) != 0) continue;
+            MatchProtocol.Outcome outcome = guesser.fireRay(entry);
+            int exit = tracer.trace(atoms, entry);
+            assertEquals(exit, outcome.exit());
+            usedExits |= 1L << entry;
+            if (exit != RayTracer.ABSORBED) usedExits |= 1L << exit;
+            markers += exit == RayTracer.ABSORBED || exit == entry ? 1 : 2;
+            assertEquals(markers, outcome.markersUsed());
+        }
+        int wrongBox = Long.numberOfTrailingZeros(~atoms) + 1;
+        assertFalse(guesser.guess(wrongBox).correct());
+        int left = Long.bitCount(atoms) - 1;
+        MatchProtocol.Guessed last = null;
+        for (long remaining = atoms; left > 0; remaining &= remaining - 1, left--) {
+            last = guesser.guess(Long.numberOfTrailingZeros(remaining) + 1);
+        }
+        assertEquals(markers + 5, last.score());
+        MatchProtocol.Over over = (MatchProtocol.Over) guesser.next();
+        assertEquals(atoms, over.atoms()); // only shown once it's over
+        return over.score();
+    }
+
+    @Test
+    public void theSetterSeesEveryRayTheGuesserFires() throws Exception {
+        long atoms = new GameSeed(50).randomLayout(6);
+        try (MatchClient setter = new MatchClient(LOOPBACK, server.getPort());
+             MatchClient guesser = new MatchClient(LOOPBACK, server.getPort())) {
+            int code = setter.host(atoms);
+            assertEquals(1, server.getMatchCount());
+            assertEquals(6, guesser.join(code));
+            assertEquals(new MatchProtocol.Joined(6), setter.next());
+
+            MatchProtocol.Outcome first = guesser.fireRay(1);
+            assertEquals(first, setter.next());
+            IOException used = assertThrows(IOException.class, () -> guesser.fireRay(1));
+            assertEquals(MatchProtocol.describe(MatchProtocol.EXIT_USED), used.getMessage());
+            assertThrows(IOException.class, () -> setter.fireRay(2)); // the setter only watches
+            try (MatchClient late = new MatchClient(LOOPBACK, server.getPort())) {
+                assertThrows(IOException.class, () -> late.join(code)); // no longer waiting
+            }
+        }
+        for (int i = 0; i < 100 && server.getMatchCount() > 0; i++) Thread.sleep(10); // the server ends the match once it sees the sockets close
+        assertEquals(0, server.getMatchCount());
+    }
+
+    @Test
+    public void badLayoutsAndCodesAreRefused() throws Exception {
+        try (MatchClient client = new MatchClient(LOOPBACK, server.getPort())) {
+            assertThrows(IOException.class, () -> client.host(0));
+            assertThrows(IOException.class, () -> client.host(1L << RayTracer.NUM_CELLS));
+            IOException noMatch = assertThrows(IOException.class, () -> client.join(123));
+            assertEquals(MatchProtocol.describe(MatchProtocol.NO_MATCH), noMatch.getMessage());
+        }
+    }
+
+    @Test
+    public void theGuesserIsToldWhenTheSetterLeaves() throws Exception {
+        try (MatchClient guesser = new MatchClient(LOOPBACK, server.getPort())) {
+            MatchClient setter = new MatchClient(LOOPBACK, server.getPort());
+            guesser.join(setter.host(new GameSeed(7).randomLayout(6)));
+            setter.close();
+            assertEquals(new MatchProtocol.Failed(MatchProtocol.OPPONENT_LEFT), guesser.next());
+        }
+    }
+
+    @Test
+    public void aGuesserWhoNeverReadsIsDisconnected() throws Exception {
+        try (MatchClient setter = new MatchClient(LOOPBACK, server.getPort());
+             Socket guesser = new Socket(LOOPBACK, server.getPort())) {
+            int code = setter.host(new GameSeed(3).randomLayout(6));
+            OutputStream out = guesser.getOutputStream();
+            out.write(MatchProtocol.join(code));
+            byte[] rays = new byte[64 * 1024];
+            for (int i = 0; i < rays.length; i += 2) System.arraycopy(MatchProtocol.ray(1), 0, rays, i, 2); // every one after the first is refused
+            assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 100_000; i++) out.write(rays); // the replies back up until the server gives up on them
+            });
+            assertEquals(new MatchProtocol.Joined(6), setter.next());
+            assertInstanceOf(MatchProtocol.Outcome.class, setter.next());
+            assertEquals(new MatchProtocol.Failed(MatchProtocol.OPPONENT_LEFT), setter.next());
+        }
+    }
+
+    @Test
+    public void oneServerHostsManyMatchesAtOnce() throws Exception {
+        int numMatches = 500;
+        List<Future<Integer>> scores = new ArrayList<>();
+        try (ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < numMatches; i++) {
+                long atoms = new GameSeed(i).randomLayout(6);
+                scores.add(players.submit(() -> {
+                    try (MatchClient setter = new MatchClient(LOOPBACK, server.getPort());
+                         MatchClient guesser = new MatchClient(LOOPBACK, server.getPort())) {
+                        guesser.join(setter.host(atoms));
+                        int score = playMatch(atoms, guesser);
+                        MatchProtocol.Message message;
+                        do {
+                            message = setter.next(); // the setter was sent everything the guesser was
+                        } while (!(message instanceof MatchProtocol.Over));
+                        assertEquals(score, ((MatchProtocol.Over) message).score());
+                        return score;
+                    }
+                }));
+            }
+            for (Future<Integer> score : scores) assertTrue(score.get() > 5);
+        }
+        assertEquals(0, server.getMatchCount());
+    }
+}
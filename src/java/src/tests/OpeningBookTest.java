@@ -0,0 +1,68 @@
+package tests;
+
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import simulation.InfoGreedyStrategy;
+import simulation.Observations;
+import simulation.OpeningBook;
+import simulation.StrategyReport;
+import simulation.Tournament;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpeningBookTest {
+    private static final RayTracer tracer = RayTracer.getInstance();
+
+    private static OpeningBook build(Path dir) throws IOException {
+        Path file = dir.resolve("book.bbo");
+        int nodes = new OpeningBook.Builder(tracer).setDepth(3).setSamples(5000, 10).write(file);
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(nodes, book.size());
+        assertEquals(6, book.getNumAtoms());
+        assertEquals(3, book.getDepth());
+        return book;
+    }
+
+    @Test
+    public void gamesFollowTheBookUntilItRunsOut(@TempDir Path dir) throws IOException {
+        OpeningBook book = build(dir);
+        SplittableRandom random = new SplittableRandom(40);
+        int fullOpenings = 0;
+        for (int game = 0; game < 200; game++) {
+            long atoms = 0;
+            while (Long.bitCount(atoms) < 6) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            Observations observations = new Observations();
+            for (int entry = book.nextRay(observations); entry != 0; entry = book.nextRay(observations)) {
+                assertTrue(entry >= 1 && entry <= RayTracer.NUM_EXITS && !observations.isUsed(entry), "Book fired from exit " + entry);
+                observations.add(entry, tracer.trace(atoms, entry));
+                assertTrue(observations.size() <= book.getDepth());
+            }
+            if (observations.size() == book.getDepth()) fullOpenings++;
+
+            if (observations.size() > 0) { // firing anything else leaves the book
+                Observations elsewhere = new Observations();
+                int other = observations.getEntry(0) % RayTracer.NUM_EXITS + 1;
+                elsewhere.add(other, tracer.trace(atoms, other));
+                assertEquals(0, book.nextRay(elsewhere));
+            }
+        }
+        assertTrue(fullOpenings > 150, "Only " + fullOpenings + " games played the whole opening");
+    }
+
+    @Test
+    public void bookedPlayerStillPlaysWell(@TempDir Path dir) throws IOException {
+        OpeningBook book = build(dir);
+        List<StrategyReport> reports = new Tournament(40).run(List.of(
+                new InfoGreedyStrategy(16, 120, 30, 0.5),
+                new InfoGreedyStrategy(16, 120, 30, 0.5).setOpeningBook(book)), 40);
+        assertTrue(reports.get(1).getMeanIncorrectGuesses() < 2, reports.get(1).toString());
+        assertTrue(reports.get(1).getMeanScore() < reports.get(0).getMeanScore() * 1.25, reports.toString());
+    }
+}
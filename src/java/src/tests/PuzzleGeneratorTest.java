@@ -0,0 +1,67 @@
+package tests;
+
+import computations.Board;
+import computations.Lists;
+import computations.PuzzleGenerator;
+import computations.PuzzlePack;
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class PuzzleGeneratorTest {
+    @Test
+    public void tracerMatchesBoardIterate() {
+        RayTracer tracer = RayTracer.getInstance();
+        SplittableRandom random = new SplittableRandom(31);
+        int[] path = new int[RayTracer.MAX_PATH];
+        for (int layout = 0; layout < 300; layout++) {
+            Board board = new Lists().createboard();
+            long atoms = 0;
+            while (Long.bitCount(atoms) < 6) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) if (RayTracer.hasAtom(atoms, cell)) board.setrandom(board, cell + 1);
+
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                if (tracer.trace(atoms, entry) == RayTracer.LOOPED) continue; // Board.iterate would never return
+                int length = tracer.tracePath(atoms, entry, path);
+                List<Integer> traced = new ArrayList<>();
+                for (int i = 0; i < length; i++) traced.add(path[i]);
+                assertEquals(board.iterate(entry), traced, "Layout " + Long.toHexString(atoms) + " entry " + entry);
+                assertEquals(path[length - 1], tracer.trace(atoms, entry));
+            }
+        }
+    }
+
+    @Test
+    public void packsAreReproducibleAndRoundTrip() throws Exception {
+        PuzzleGenerator generator = new PuzzleGenerator(2024).setRayRange(3, 5);
+        List<PuzzlePack.Puzzle> puzzles = generator.build(200, 100_000);
+        assertEquals(200, puzzles.size());
+        for (PuzzlePack.Puzzle puzzle : puzzles) {
+            assertEquals(6, Long.bitCount(puzzle.getAtoms()));
+            assertEquals(generator.layout(puzzle.getSeed()), puzzle.getAtoms(), "A puzzle should be rebuilt from its seed");
+            assertFalse(puzzle.hasHiddenAtoms());
+            assertFalse(puzzle.isAmbiguous());
+        }
+        List<PuzzlePack.Puzzle> again = new PuzzleGenerator(2024).setRayRange(3, 5).build(200, 100_000);
+        for (int i = 0; i < puzzles.size(); i++) assertEquals(puzzles.get(i).getAtoms(), again.get(i).getAtoms());
+
+        Path file = Files.createTempDirectory("puzzles").resolve("pack.bbp");
+        PuzzlePack.write(file, 6, puzzles);
+        PuzzlePack pack = PuzzlePack.open(file);
+        assertEquals(200, pack.size());
+        for (int i = 0; i < puzzles.size(); i++) {
+            assertEquals(puzzles.get(i).getSeed(), pack.get(i).getSeed());
+            assertEquals(puzzles.get(i).getAtoms(), pack.get(i).getAtoms());
+            assertEquals(puzzles.get(i).getNeighbourCoverRays(), pack.get(i).getNeighbourCoverRays());
+            assertEquals(puzzles.get(i).getFlags(), pack.get(i).getFlags());
+        }
+    }
+}
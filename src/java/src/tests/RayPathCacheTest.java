@@ -0,0 +1,48 @@
+package tests;
+
+import computations.Board;
+import computations.Lists;
+import computations.RayPathCache;
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RayPathCacheTest {
+    @Test
+    public void cachedPathsMatchBoardIterate() {
+        RayTracer tracer = RayTracer.getInstance();
+        SplittableRandom random = new SplittableRandom(35);
+        RayPathCache cache = new RayPathCache(tracer, 0).setSelfCheck(true); // every reversed path is checked against Board.iterate
+        int passingThrough = 0;
+        int reversed = 0;
+        int layouts = 0;
+        while (layouts < 2000) {
+            long atoms = 0;
+            while (Long.bitCount(atoms) < 4 + random.nextInt(5)) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            boolean loops = false;
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) loops |= tracer.trace(atoms, entry) == RayTracer.LOOPED;
+            if (loops) continue; // Board.iterate would never return
+            layouts++;
+
+            cache.setLayout(atoms);
+            int[] outcomes = new int[RayTracer.NUM_EXITS];
+            cache.traceAll(outcomes);
+            reversed += cache.getReversed();
+            assertEquals(RayTracer.NUM_EXITS, cache.getTraced() + cache.getReversed());
+
+            Board board = new Lists().createboard();
+            for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) if (RayTracer.hasAtom(atoms, cell)) board.setrandom(board, cell + 1);
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                assertEquals(board.iterate(entry), cache.getPathList(entry), "Layout " + Long.toHexString(atoms) + " entry " + entry);
+                assertEquals(tracer.trace(atoms, entry), outcomes[entry - 1]);
+                if (outcomes[entry - 1] > 0 && outcomes[entry - 1] != entry) passingThrough++;
+            }
+        }
+        // absorbed and reflected rays have no other end, but nearly every ray that comes out elsewhere is known from that end
+        assertTrue(reversed > passingThrough * 0.49, reversed + " of " + passingThrough + " rays passing through were reversed");
+    }
+}
@@ -0,0 +1,85 @@
+package tests;
+
+import entities.MarkerBatches;
+import entities.RayPaths;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RayPathsTest {
+    @Test
+    public void segmentsThatMeetShareTheirPoint() {
+        RayPaths paths = new RayPaths();
+        paths.beginPath();
+        paths.addSegment(0, 0, 10, 0);
+        paths.addSegment(10, 0, 10, 10);
+        paths.addSegment(10, 10, 10, 10); // an absorbed ray ends with a segment into the atom's own box
+        paths.addSegment(50, 50, 60, 60); // doesn't carry on from the last one
+        assertEquals(1, paths.size());
+        assertEquals(4, paths.getNumSegments(0));
+        assertEquals(6, paths.getNumPoints());
+        assertTrue(paths.isMove(0));
+        assertFalse(paths.isMove(1));
+        assertTrue(paths.isMove(4));
+
+        float[] coords = new float[6];
+        int moves = 0;
+        int lines = 0;
+        for (PathIterator it = paths.getShape(0).getPathIterator(null); !it.isDone(); it.next()) {
+            if (it.currentSegment(coords) == PathIterator.SEG_MOVETO) moves++;
+            else lines++;
+        }
+        assertEquals(2, moves);
+        assertEquals(4, lines);
+    }
+
+    @Test
+    public void shapesAreKeptUntilThePathChanges() {
+        RayPaths paths = new RayPaths();
+        SplittableRandom random = new SplittableRandom(43);
+        int[] segments = new int[500];
+        for (int path = 0; path < segments.length; path++) { // enough to grow every array a few times
+            paths.beginPath();
+            segments[path] = 1 + random.nextInt(12);
+            int x = random.nextInt(1280), y = random.nextInt(720);
+            for (int i = 0; i < segments[path]; i++) {
+                int nx = random.nextInt(1280), ny = random.nextInt(720);
+                paths.addSegment(x, y, nx, ny);
+                x = nx;
+                y = ny;
+            }
+        }
+        for (int path = 0; path < segments.length; path++) {
+            assertEquals(segments[path], paths.getNumSegments(path));
+            int end = path + 1 < segments.length ? paths.getStart(path + 1) : paths.getNumPoints();
+            assertEquals(segments[path] + 1, end - paths.getStart(path), "Joined segments should share their points");
+        }
+        Path2D last = paths.getShape(segments.length - 1);
+        assertSame(last, paths.getShape(segments.length - 1));
+        paths.addSegment(1, 1, 2, 2);
+        assertFalse(last == paths.getShape(segments.length - 1), "Adding to a path should rebuild its shape");
+    }
+
+    @Test
+    public void markersAreGroupedByColour() {
+        MarkerBatches markers = new MarkerBatches();
+        Color[] colours = {Color.WHITE, Color.GRAY, Color.MAGENTA, Color.CYAN, Color.ORANGE, new Color(1, 2, 3)};
+        for (int i = 0; i < 60; i++) markers.add(100 + i, 200 + i, colours[i % colours.length]);
+        assertEquals(60, markers.size());
+        assertEquals(colours.length, markers.getNumColours());
+        for (int batch = 0; batch < markers.getNumColours(); batch++) {
+            assertEquals(colours[batch], markers.getColour(batch));
+            assertEquals(10, markers.getCount(batch));
+            assertArrayEquals(new int[]{95 + batch, 195 + batch}, new int[]{markers.getPositions(batch)[0], markers.getPositions(batch)[1]});
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package tests;
+
+import computations.GameSeed;
+import computations.RayTracer;
+import computations.Replayer;
+import computations.ReplayWriter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayTest {
+    // plays a game the way Game does: a few rays, then one guess per atom
+    private static byte[] playGame(long seed, int[] entries, int[] guesses) {
+        RayTracer tracer = RayTracer.getInstance();
+        GameSeed gameSeed = new GameSeed(seed);
+        long atoms = gameSeed.randomLayout(6);
+        ReplayWriter writer = new ReplayWriter(seed, atoms, 6, ReplayWriter.SOURCE_SEED);
+        int markers = 0;
+        int incorrect = 0;
+        for (int entry : entries) {
+            int exit = tracer.trace(atoms, entry);
+            writer.rayFired(entry, exit, 0xFF00FF);
+            markers += (exit == RayTracer.ABSORBED || exit == entry) ? 1 : 2;
+        }
+        for (int boxNumber : guesses) {
+            boolean correct = RayTracer.hasAtom(atoms, boxNumber - 1);
+            if (!correct) incorrect++;
+            writer.guessMade(boxNumber, correct);
+        }
+        writer.gameEnded(markers + incorrect * 5, gameSeed.defaultPlayerName());
+        return writer.toByteArray();
+    }
+
+    @Test
+    public void seedReproducesTheGame() {
+        GameSeed first = new GameSeed(99);
+        GameSeed second = new GameSeed(99);
+        assertEquals(first.randomLayout(6), second.randomLayout(6));
+        assertEquals(first.defaultPlayerName(), second.defaultPlayerName());
+    }
+
+    @Test
+    public void recordedGamesReplayAndRescore() {
+        byte[] replay = playGame(7, new int[]{1, 10, 20}, new int[]{1, 2, 3, 4, 5, 6});
+        Replayer.Result result = new Replayer().replay(replay);
+        assertTrue(result.isValid(), result.getProblem());
+        assertTrue(result.isFinished());
+        assertEquals(3, result.getRaysFired());
+        assertEquals(result.getRecordedScore(), result.getScore());
+        assertEquals(new GameSeed(7).defaultPlayerName(), result.getPlayerName());
+
+        Replayer perRay = new Replayer(RayTracer.getInstance(), (markersUsed, incorrectGuesses, raysFired) -> raysFired + incorrectGuesses * 10);
+        Replayer.Result rescored = perRay.replay(replay);
+        assertEquals(3 + result.getIncorrectGuesses() * 10, rescored.getScore());
+    }
+
+    @Test
+    public void tamperedGamesAreRejected() {
+        byte[] replay = playGame(7, new int[]{1, 10, 20}, new int[]{1, 2, 3, 4, 5, 6});
+        byte[] otherSeed = replay.clone();
+        otherSeed[13] ^= 1; // low byte of the seed, the layout no longer matches it
+        assertFalse(new Replayer().replay(otherSeed).isValid());
+
+        byte[] truncated = java.util.Arrays.copyOf(replay, replay.length - 3);
+        assertEquals("Replay is truncated", new Replayer().replay(truncated).getProblem());
+
+        byte[] repeated = playGame(7, new int[]{1, 1}, new int[0]);
+        assertFalse(new Replayer().replay(repeated).isValid());
+    }
+}
@@ -0,0 +1,107 @@
+package tests;
+
+import computations.ScoreArchive;
+import computations.ScoreWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScoreWriterTest {
+    @Test
+    public void concurrentWritersDoNotLoseScores() throws Exception {
+        Path dir = Files.createTempDirectory("scores");
+        // two writers on the same file stand in for two game processes on one kiosk
+        ScoreWriter first = ScoreWriter.open(dir.resolve("scores.bin"), dir.resolve("scores.txt"));
+        ScoreWriter second = ScoreWriter.open(dir.resolve("scores.bin"), dir.resolve("scores.txt"));
+
+        List<Thread> threads = new ArrayList<>();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int threadNum = t;
+            ScoreWriter writer = (t % 2 == 0) ? first : second;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    CompletableFuture<Void> write = writer.append("player" + threadNum, i);
+                    synchronized (writes) { writes.add(write); }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+        ScoreArchive archive = ScoreArchive.open(dir.resolve("scores.bin"));
+        assertEquals(8 * 250, archive.getScoreCount());
+        assertEquals(8, archive.getNameCount(), "Each player name should only be stored once");
+        int[] latest = archive.latestScores();
+        for (int playerId = 0; playerId < 8; playerId++) assertEquals(249, latest[playerId]);
+        assertTrue(first.getGroupCommits() < first.getAppendsWritten(), "Appends were never grouped");
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void anotherWritersAppendsAndATornRecordAreCaughtUp() throws Exception {
+        Path dir = Files.createTempDirectory("scores");
+        Path file = dir.resolve("scores.bin");
+        ScoreWriter first = ScoreWriter.open(file, dir.resolve("scores.txt"));
+        ScoreWriter second = ScoreWriter.open(file, dir.resolve("scores.txt"));
+
+        first.append("amy", 5).join();
+        second.append("bob", 3).join(); // appended behind the first writer's back
+        Files.write(file, new byte[]{ScoreArchive.SCORE_RECORD, 0, 0}, StandardOpenOption.APPEND); // a crash part way through a record
+        first.append("bob", 2).join();
+        first.append("cat", 4).join();
+
+        ScoreArchive archive = ScoreArchive.open(file);
+        assertEquals(4, archive.getScoreCount());
+        assertEquals(3, archive.getNameCount(), "bob should only be stored once");
+        assertEquals(archive.getValidLength(), Files.size(file));
+        assertEquals(List.of(Map.entry("bob", 2), Map.entry("cat", 4), Map.entry("amy", 5)), archive.rankedScores());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void rewriteIsOrderedWithAppends() throws Exception {
+        Path dir = Files.createTempDirectory("scores");
+        ScoreWriter writer = ScoreWriter.open(dir.resolve("scores.bin"), dir.resolve("scores.txt"));
+
+        writer.append("a", 3);
+        writer.rewrite(archive -> new ArrayList<>(List.of(new AbstractMap.SimpleEntry<>("cleared", 100))));
+        writer.append("b", 7);
+        List<Map.Entry<String, Integer>> ranked = writer.read(ScoreArchive::rankedScores).join();
+
+        assertEquals(List.of(Map.entry("b", 7), Map.entry("cleared", 100)), ranked);
+        writer.close();
+    }
+
+    @Test
+    public void textScoresAreMigratedOnce() throws Exception {
+        Path dir = Files.createTempDirectory("scores");
+        Files.write(dir.resolve("scores.txt"), List.of("amy,12", "bob,4", "amy,9", "broken line"));
+        ScoreWriter writer = ScoreWriter.open(dir.resolve("scores.bin"), dir.resolve("scores.txt"));
+
+        List<Map.Entry<String, Integer>> ranked = writer.read(ScoreArchive::rankedScores).join();
+        assertEquals(List.of(Map.entry("bob", 4), Map.entry("amy", 9)), ranked);
+
+        // later edits to the text file are ignored now that the archive exists
+        Files.write(dir.resolve("scores.txt"), List.of("zed,1"));
+        writer.append("cat", 2).join();
+        ranked = writer.read(ScoreArchive::rankedScores).join();
+        assertEquals(List.of(Map.entry("cat", 2), Map.entry("bob", 4), Map.entry("amy", 9)), ranked);
+        writer.close();
+    }
+}
@@ -0,0 +1,106 @@
+package tests;
+
+import entities.RayPaths;
+import entities.SegmentGrid;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentGridTest {
+    private static final double RADIUS = 8;
+
+    // random paths of a few joined segments each, some of them zero length like an absorbed ray's last
+    private static RayPaths randomPaths(SegmentGrid grid, int numPaths, long seed) {
+        RayPaths paths = new RayPaths();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int path = 0; path < numPaths; path++) {
+            paths.beginPath();
+            int x = random.nextInt(1280), y = random.nextInt(720);
+            for (int i = 1 + random.nextInt(8); i > 0; i--) {
+                int nx = random.nextInt(8) == 0 ? x : Math.clamp(x + random.nextInt(-150, 151), 0, 1279);
+                int ny = random.nextInt(8) == 0 ? y : Math.clamp(y + random.nextInt(-150, 151), 0, 719);
+                paths.addSegment(x, y, nx, ny);
+                x = nx;
+                y = ny;
+            }
+            grid.addPath(paths, path);
+        }
+        return paths;
+    }
+
+    // how close the path comes to the point, checking every segment
+    private static double distanceSquared(RayPaths paths, int path, double x, double y) {
+        double nearest = Double.POSITIVE_INFINITY;
+        int end = path + 1 < paths.size() ? paths.getStart(path + 1) : paths.getNumPoints();
+        for (int point = paths.getStart(path) + 1; point < end; point++) {
+            if (paths.isMove(point)) continue;
+            nearest = Math.min(nearest, Line2D.ptSegDistSq(paths.getX(point - 1), paths.getY(point - 1), paths.getX(point), paths.getY(point), x, y));
+        }
+        return nearest;
+    }
+
+    @Test
+    public void picksTheSameRayAsCheckingEverySegment() {
+        SegmentGrid grid = new SegmentGrid(1280, 720, 32, RADIUS);
+        RayPaths paths = randomPaths(grid, 300, 44);
+        SplittableRandom random = new SplittableRandom(7);
+        int hits = 0;
+        for (int i = 0; i < 20000; i++) {
+            double x = random.nextDouble(1280), y = random.nextDouble(720);
+            int best = -1;
+            double bestDistance = RADIUS * RADIUS;
+            for (int path = 0; path < paths.size(); path++) {
+                double distance = distanceSquared(paths, path, x, y);
+                if (distance <= bestDistance) {
+                    bestDistance = distance;
+                    best = path;
+                }
+            }
+            // paths along the same line, or right at the edge of the radius, only differ by rounding
+            int picked = grid.pick(paths, x, y);
+            if (picked == -1) assertTrue(best == -1 || bestDistance > RADIUS * RADIUS - 1e-6, "Missed at " + x + ", " + y);
+            else {
+                assertEquals(bestDistance, distanceSquared(paths, picked, x, y), 1e-6, "Pick at " + x + ", " + y);
+                hits++;
+            }
+        }
+        assertTrue(hits > 1000, "Most picks shouldn't miss everything, only " + hits + " hit");
+        assertEquals(-1, grid.pick(paths, -5, 100));
+        assertEquals(-1, grid.pick(paths, 100, 800));
+    }
+
+    @Test
+    public void laterRaysWinWhenTheyOverlap() {
+        SegmentGrid grid = new SegmentGrid(1280, 720, 32, RADIUS);
+        RayPaths paths = new RayPaths();
+        paths.beginPath();
+        paths.addSegment(100, 100, 400, 100);
+        grid.addPath(paths, 0);
+        paths.beginPath();
+        paths.addSegment(400, 100, 100, 100); // the same line the other way
+        grid.addPath(paths, 1);
+        assertEquals(1, grid.pick(paths, 250, 103));
+        assertEquals(-1, grid.pick(paths, 250, 110));
+        assertEquals(2, grid.getNumSegments());
+    }
+
+    @Test
+    public void picksAreFarUnderAMillisecond() {
+        SegmentGrid grid = new SegmentGrid(1280, 720, 32, RADIUS);
+        RayPaths paths = randomPaths(grid, 2000, 45); // several thousand segments, far more than a game ever fires
+        assertTrue(grid.getNumSegments() > 5000);
+        SplittableRandom random = new SplittableRandom(8);
+        int found = 0;
+        for (int i = 0; i < 20000; i++) if (grid.pick(paths, random.nextDouble(1280), random.nextDouble(720)) != -1) found++; // warm up
+        int picks = 100000;
+        long start = System.nanoTime();
+        for (int i = 0; i < picks; i++) if (grid.pick(paths, random.nextDouble(1280), random.nextDouble(720)) != -1) found++;
+        double microsPerPick = (System.nanoTime() - start) / 1000.0 / picks;
+        assertTrue(found > 0);
+        assertTrue(microsPerPick < 100, "A pick took " + microsPerPick + " µs on average");
+    }
+}
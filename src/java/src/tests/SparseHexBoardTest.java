@@ -0,0 +1,85 @@
+package tests;
+
+import computations.RayTracer;
+import computations.SparseHexBoard;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SparseHexBoardTest {
+    private static final int[] CELL_Q = new int[RayTracer.NUM_CELLS];
+    private static final int[] CELL_R = new int[RayTracer.NUM_CELLS];
+
+    static { // box numbers go along each row from the top, the same as axial coordinates read row by row
+        int cell = 0;
+        for (int r = -4; r <= 4; r++) {
+            for (int q = Math.max(-4, -4 - r); q <= Math.min(4, 4 - r); q++) {
+                CELL_Q[cell] = q;
+                CELL_R[cell++] = r;
+            }
+        }
+    }
+
+    private static int cellAt(int q, int r) {
+        for (int cell = 0; cell < RayTracer.NUM_CELLS; cell++) if (CELL_Q[cell] == q && CELL_R[cell] == r) return cell;
+        throw new IllegalArgumentException();
+    }
+
+    @Test
+    public void radiusFourMatchesTheStandardBoard() {
+        RayTracer tracer = RayTracer.getInstance();
+        SplittableRandom random = new SplittableRandom(37);
+        for (int layout = 0; layout < 2000; layout++) {
+            long atoms = 0;
+            while (Long.bitCount(atoms) < 3 + random.nextInt(8)) atoms |= 1L << random.nextInt(RayTracer.NUM_CELLS);
+            SparseHexBoard board = new SparseHexBoard(4);
+            for (long rest = atoms; rest != 0; rest &= rest - 1) {
+                int cell = Long.numberOfTrailingZeros(rest);
+                board.addAtom(CELL_Q[cell], CELL_R[cell]);
+            }
+            for (int entry = 1; entry <= RayTracer.NUM_EXITS; entry++) {
+                int cell = tracer.entryCell(entry);
+                SparseHexBoard.Trace trace = board.trace(CELL_Q[cell], CELL_R[cell], tracer.entryDirection(entry));
+                int outcome = trace.isAbsorbed() ? RayTracer.ABSORBED : trace.isLooped() ? RayTracer.LOOPED
+                        : -tracer.neighbour(cellAt(trace.getQ(), trace.getR()), trace.getSide());
+                assertEquals(tracer.trace(atoms, entry), outcome, "Layout " + Long.toHexString(atoms) + " entry " + entry);
+            }
+        }
+    }
+
+    @Test
+    public void hugeBoardsOnlyPayForDeflections() {
+        int radius = 20_000; // 1.2 billion boxes
+        SparseHexBoard board = new SparseHexBoard(radius);
+        SparseHexBoard.Trace straight = board.trace(-radius, 0, 2);
+        assertEquals(0, straight.getInteractions());
+        assertEquals(2L * radius + 1, straight.getBoxesPassed());
+        assertEquals(radius, straight.getQ());
+        assertEquals(2, straight.getSide());
+
+        board.addAtom(5000, 0); // head on
+        SparseHexBoard.Trace absorbed = board.trace(-radius, 0, 2);
+        assertTrue(absorbed.isAbsorbed());
+        assertEquals(1, absorbed.getInteractions());
+
+        board.removeAtom(5000, 0);
+        board.addAtom(5000, -1); // up and to the right of the box before it, so the ray turns down to the right there
+        SparseHexBoard.Trace deflected = board.trace(-radius, 0, 2);
+        assertEquals(1, deflected.getInteractions());
+        assertEquals(3, deflected.getSide());
+        assertEquals(4999, deflected.getQ());
+        assertEquals(radius - 4999, deflected.getR());
+
+        SplittableRandom random = new SplittableRandom(370);
+        for (int i = 0; i < 1000; i++) board.addAtom(random.nextInt(-100, 100), random.nextInt(-100, 100));
+        for (int i = 0; i < 1000; i++) {
+            int q = random.nextInt(-radius, radius + 1);
+            SparseHexBoard.Trace trace = board.trace(q, Math.max(-radius, -radius - q), 3); // down from the top edge
+            assertTrue(trace.getInteractions() <= 6 * 1000 * 7);
+            if (trace.getInteractions() == 0) assertEquals(radius, Math.max(trace.getR(), trace.getR() + trace.getQ()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package tests;
+
+import main.SpriteAtlas;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SpriteAtlasTest {
+    private static BufferedImage solid(int width, int height, Color colour) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(colour);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    // draws a frame the way Game.render does, with the view scaled and moved like GameScreen's layout transform
+    private static BufferedImage paint(SpriteAtlas sprites, double scale, int offset) {
+        BufferedImage screen = new BufferedImage((int) (1280 * scale) + 2 * offset, (int) (720 * scale) + 2 * offset, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = screen.createGraphics();
+        g.translate(offset, offset);
+        g.scale(scale, scale);
+        sprites.begin(g);
+        sprites.drawLayer(0);
+        sprites.drawAtom(600, 300);
+        for (int i = 0; i < 20; i++) sprites.drawMarker(new Color(i * 12, 0, 255), 100 + 20 * i, 50);
+        sprites.end();
+        assertEquals(scale, g.getTransform().getScaleX(), "end() should put the transform back");
+        g.dispose();
+        return screen;
+    }
+
+    @Test
+    public void spritesAreRasterisedOncePerScale() {
+        SpriteAtlas sprites = new SpriteAtlas(new Image[]{solid(1280, 720, Color.YELLOW)}, solid(250, 250, Color.RED));
+        paint(sprites, 1, 0);
+        paint(sprites, 1, 0);
+        assertEquals(1, sprites.getRasterisations());
+        paint(sprites, 3, 0); // a 4K window
+        paint(sprites, 3, 7);
+        assertEquals(2, sprites.getRasterisations());
+        assertEquals(3, sprites.getScale());
+    }
+
+    @Test
+    public void spritesLandWhereTheTransformPutsThem() {
+        SpriteAtlas sprites = new SpriteAtlas(new Image[]{solid(1280, 720, Color.YELLOW)}, solid(250, 250, Color.RED));
+        for (double scale : new double[]{1, 1.5, 2, 3}) {
+            int offset = 10;
+            BufferedImage screen = paint(sprites, scale, offset);
+            int atomCentre = (int) Math.round(offset + (600 + 25) * scale);
+            assertEquals(Color.RED.getRGB(), screen.getRGB(atomCentre, (int) Math.round(offset + 325 * scale)), "Atom at scale " + scale);
+            assertEquals(Color.YELLOW.getRGB(), screen.getRGB((int) Math.round(offset + 590 * scale), (int) Math.round(offset + 325 * scale)), "Board at scale " + scale);
+            assertEquals(0, screen.getRGB(offset / 2, offset / 2), "Nothing outside the board at scale " + scale);
+            for (int i = 0; i < 20; i++) {
+                int x = (int) Math.round(offset + (100 + 20 * i + 6) * scale);
+                int y = (int) Math.round(offset + (50 + 6) * scale);
+                assertEquals(new Color(i * 12, 0, 255).getRGB(), screen.getRGB(x, y), "Marker " + i + " at scale " + scale);
+            }
+        }
+    }
+}
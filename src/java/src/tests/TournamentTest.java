@@ -0,0 +1,49 @@
+package tests;
+
+import computations.RayTracer;
+import org.junit.jupiter.api.Test;
+import simulation.InfoGreedyStrategy;
+import simulation.RandomStrategy;
+import simulation.Strategy;
+import simulation.StrategyReport;
+import simulation.SweepStrategy;
+import simulation.Tournament;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TournamentTest {
+    @Test
+    public void gamesAreScoredLikeTheRealGame() {
+        Tournament tournament = new Tournament(5).setParallelism(2);
+        StrategyReport report = tournament.run(List.of(new RandomStrategy(54)), 200).getFirst();
+        assertEquals(200, report.getGames());
+        long[] counts = report.getScoreCounts();
+        long total = 0;
+        for (long count : counts) total += count;
+        assertEquals(200, total);
+        // shooting until no exit is left marks every exit exactly once
+        assertEquals(RayTracer.NUM_EXITS, report.getMeanScore() - 5 * report.getMeanIncorrectGuesses(), 1e-9);
+    }
+
+    @Test
+    public void tournamentsAreReproducible() {
+        List<Strategy> strategies = List.of(new RandomStrategy(8), new SweepStrategy(4, 8, 100));
+        List<StrategyReport> first = new Tournament(11).run(strategies, 100);
+        List<StrategyReport> second = new Tournament(11).setParallelism(1).run(strategies, 100);
+        for (int i = 0; i < strategies.size(); i++) {
+            assertEquals(first.get(i).getMeanScore(), second.get(i).getMeanScore());
+            assertEquals(first.get(i).getMeanRays(), second.get(i).getMeanRays());
+        }
+    }
+
+    @Test
+    public void informationBeatsGuessing() {
+        Tournament tournament = new Tournament(3);
+        List<StrategyReport> reports = tournament.run(List.of(new RandomStrategy(10), new InfoGreedyStrategy(16, 120, 30, 0.5)), 40);
+        assertTrue(reports.get(1).getMeanScore() < reports.get(0).getMeanScore(), reports.toString());
+        assertTrue(reports.get(1).getMeanIncorrectGuesses() < 2, reports.get(1).toString());
+    }
+}